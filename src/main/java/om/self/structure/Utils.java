@@ -1,5 +1,8 @@
 package om.self.structure;
 
+import java.util.Collection;
+import java.util.Map;
+
 public class Utils {
     /**
      * A check that can be applied to a value. This is used by Structures to check if a child or parent can be attached or detached.
@@ -31,6 +34,67 @@ public class Utils {
         boolean apply(K key, V value, Action action);
     }
 
+    /**
+     * A {@link Check} that can also check a whole batch of values at once (used when attaching or detaching many children). Checks that don't implement this are applied to each value of a batch one at a time.
+     * @param <T> The type of value being checked
+     */
+    public interface BatchCheck<T> extends Check<T>{
+        /**
+         * Applies the check to a batch of values by removing every value that doesn't pass.
+         * @param values The values being checked (a mutable copy that only contains values that passed the previous checks)
+         * @param action The action being performed
+         */
+        default void applyAll(Collection<T> values, Action action){
+            values.removeIf(value -> !apply(value, action));
+        }
+    }
+
+    /**
+     * A {@link KeyedCheck} that can also check a whole batch of values at once (used when attaching or detaching many children). Checks that don't implement this are applied to each value of a batch one at a time.
+     * @param <K> The type of key being checked
+     * @param <V> The type of value being checked
+     */
+    public interface KeyedBatchCheck<K,V> extends KeyedCheck<K,V>{
+        /**
+         * Applies the check to a batch of values by removing every entry that doesn't pass.
+         * @param values The keys and values being checked (a mutable copy that only contains entries that passed the previous checks)
+         * @param action The action being performed
+         */
+        default void applyAll(Map<K,V> values, Action action){
+            values.entrySet().removeIf(entry -> !apply(entry.getKey(), entry.getValue(), action));
+        }
+    }
+
+    /**
+     * A {@link KeyedCheck} for structures with primitive int keys so the key doesn't have to be boxed.
+     * @param <V> The type of value being checked
+     */
+    public interface IntKeyedCheck<V>{
+        /**
+         * Applies the check to a value.
+         * @param key The key of the value being checked
+         * @param value The value being checked
+         * @param action The action being performed
+         * @return true if the check passes, false if the check fails
+         */
+        boolean apply(int key, V value, Action action);
+    }
+
+    /**
+     * A {@link KeyedCheck} for structures with primitive long keys so the key doesn't have to be boxed.
+     * @param <V> The type of value being checked
+     */
+    public interface LongKeyedCheck<V>{
+        /**
+         * Applies the check to a value.
+         * @param key The key of the value being checked
+         * @param value The value being checked
+         * @param action The action being performed
+         * @return true if the check passes, false if the check fails
+         */
+        boolean apply(long key, V value, Action action);
+    }
+
     /**
      * An action that can be performed on a parent/child in a structure.
      */
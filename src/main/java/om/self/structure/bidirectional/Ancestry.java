@@ -0,0 +1,250 @@
+package om.self.structure.bidirectional;
+
+import om.self.structure.child.ChildContainer;
+import om.self.structure.parent.ParentContainer;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Ancestor queries for trees of {@link BidirectionalStructure} and {@link KeyedBidirectionalStructure} nodes that don't walk the parent chain.
+ * <br>
+ * Each node can hold an index made of its depth and a binary lifting table (the ancestor 1, 2, 4, 8, ... levels up). A node is indexed the first time it is queried or gets a child that has children of its own, and indexing a node also indexes every ancestor, so each node is indexed once (O(depth) the first time, amortized O(1) per node) and trees that are only built top-down never pay for it. Once a node is indexed it stays up to date: when it is reparented or detached, its index and the index of its indexed descendants are updated in place (O(log depth) per indexed node in the moved subtree, descendants that were never indexed are skipped). {@link #isAncestor(Object, Object)} and {@link #lowestCommonAncestor(Object, Object)} then take O(log depth) time.
+ * <br>
+ * The bidirectional structures use the index to reject links that would create a cycle in O(log depth) time (constant time for children without children).
+ * <br>
+ * The chain of ancestors only follows links where the parent stores the node as a child and the node has the parent attached (a link that a check vetoed on one side isn't followed). It ends at the first parent that isn't a bidirectional structure. That parent still counts as an ancestor of the chain but it isn't indexed itself.
+ */
+public final class Ancestry {
+    private static final Object[] NO_JUMPS = new Object[0];
+
+    private Ancestry() {
+    }
+
+    /**
+     * Checks if a node is an ancestor (parent, grandparent, ...) of another node.
+     * @param ancestor the possible ancestor
+     * @param node the node
+     * @return if ancestor is above node (a node is not its own ancestor)
+     */
+    public static boolean isAncestor(Object ancestor, Object node){
+        if(ancestor == null || ancestor == node || !isIndexed(node)) return false;
+
+        index(node);
+        int depth = depth(node);
+        if(!isIndexed(ancestor)) return parentOf(lift(node, depth)) == ancestor;
+
+        index(ancestor);
+        int ancestorDepth = depth(ancestor);
+        return ancestorDepth < depth && lift(node, depth - ancestorDepth) == ancestor;
+    }
+
+    /**
+     * Finds the deepest node that is an ancestor of (or the same as) both nodes.
+     * @param a the first node
+     * @param b the second node
+     * @return the lowest common ancestor or null if the nodes are in different trees
+     */
+    public static Object lowestCommonAncestor(Object a, Object b){
+        if(a == b) return a;
+        if(!isIndexed(a) || !isIndexed(b)) return isAncestor(a, b) ? a : isAncestor(b, a) ? b : null;
+
+        index(a);
+        index(b);
+        int depthA = depth(a);
+        int depthB = depth(b);
+        if(depthA > depthB) a = lift(a, depthA - depthB);
+        else b = lift(b, depthB - depthA);
+        if(a == b) return a;
+
+        for (int k = jumpsOf(a).length - 1; k >= 0; k--) {
+            Object[] jumpsA = jumpsOf(a);
+            Object[] jumpsB = jumpsOf(b);
+            if(k < jumpsA.length && jumpsA[k] != jumpsB[k]) {
+                a = jumpsA[k];
+                b = jumpsB[k];
+            }
+        }
+
+        //a and b are now children of the lowest common ancestor or the (different) tops of their chains
+        if(jumpsOf(a).length > 0) return jumpsOf(a)[0];
+        Object parent = parentOf(a);
+        return parent != null && parent == parentOf(b) ? parent : null;
+    }
+
+    /**
+     * Gets the depth of a node (the amount of bidirectional ancestors it has).
+     * @param node the node
+     * @return the depth (0 for a node without a bidirectional parent and for nodes that aren't bidirectional structures)
+     */
+    public static int depth(Object node){
+        if(!isIndexed(node)) return 0;
+        index(node);
+        return depthOf(node);
+    }
+
+    /**
+     * Checks if linking a child to a parent would create a cycle (the child is the parent or one of its ancestors). A child without children (or that can't have any) can only create a cycle if it is the parent, so most links are checked in constant time. Otherwise the parent is indexed and the child can only be one of its ancestors if it is indexed too, so the check takes O(log depth) time.
+     * @param parent the new parent
+     * @param child the new child
+     * @return if the link would create a cycle
+     */
+    static boolean createsCycle(Object parent, Object child){
+        if(parent == child) return true;
+        if(isLeaf(child) || !isIndexed(parent)) return false;
+
+        index(parent);
+        if(isIndexed(child) && jumpsOf(child) == null) return false; //indexing the parent indexed every ancestor that is a bidirectional structure
+        return isAncestor(child, parent);
+    }
+
+    /**
+     * Checks if a node has no children without loading children that are attached lazily.
+     */
+    private static boolean isLeaf(Object node){
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure) return structure.isLeaf();
+        return !(node instanceof ChildContainer<?> container) || container.getChildren().isEmpty();
+    }
+
+    /**
+     * Gets the parent of a node if the parent also stores the node as a child.
+     * @param node the node
+     * @return the linked parent or null if there is no parent, the parent isn't a bidirectional structure, or the parent doesn't store the node
+     */
+    static Object linkedParent(Object node){
+        Object parent = parentOf(node);
+        if(parent instanceof BidirectionalStructure<?,?> structure)
+            return structure.getChildren().contains(node) ? parent : null;
+        if(parent instanceof KeyedBidirectionalStructure<?,?,?> structure) {
+            if(node instanceof KeyedBidirectionalStructure<?,?,?> keyed)
+                return keyed.getChildKey() != null && structure.getChildrenAndKeys().get(keyed.getChildKey()) == node ? parent : null;
+            return structure.getChildrenAndKeys().containsValue(node) ? parent : null;
+        }
+        return null;
+    }
+
+    /**
+     * Updates the ancestry index of a node and its descendants, clears the {@link KeyPath} caches, and hands the {@link StructureListener} of the new tree to a keyed node. This is called whenever a node gets a new parent or is added to or removed from the children of a parent, and returns right away if the node isn't indexed and doesn't have a cached path or a listener.
+     * @param node the node whose link changed
+     */
+    static void linkChanged(Object node){
+        reindex(node);
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure) {
+            structure.invalidatePath();
+            structure.inheritListener();
+        }
+    }
+
+    /**
+     * Called by a parent right after it stores a child or right after a removed child was told to detach the parent. The link of the child only changed here if the child has this parent (it was already attached on the child side, or the child kept the parent because it couldn't detach it). Otherwise the child updates its caches itself when it attaches or detaches the parent, so each link change is only handled once.
+     * @param parent the parent that stored or removed the child
+     * @param child the child
+     */
+    static void childLinkChanged(Object parent, Object child){
+        if(parentOf(child) == parent) linkChanged(child);
+    }
+
+    /**
+     * Updates the index of a node that was reparented or detached and then the index of its descendants (parents before their children). Descendants that aren't indexed are skipped because their own descendants can't be indexed either, and nothing is allocated unless an indexed node has indexed children.
+     * @param node the node that was reparented or detached
+     */
+    private static void reindex(Object node){
+        if(jumpsOf(node) == null) return;
+
+        Object parent = linkedParent(node);
+        if(isIndexed(parent)) index(parent);
+        ArrayDeque<Object> stack = null;
+        Object current = node;
+        while (true) {
+            link(current);
+            for (Object child : loadedChildren(current))
+                if(jumpsOf(child) != null && parentOf(child) == current && linkedParent(child) == current) {
+                    if(stack == null) stack = new ArrayDeque<>();
+                    stack.push(child);
+                }
+            if(stack == null || stack.isEmpty()) return;
+            current = stack.pop();
+        }
+    }
+
+    /**
+     * Gets the children of a node without loading children that are attached lazily (they can't have caches yet).
+     */
+    private static Iterable<?> loadedChildren(Object node){
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure && !structure.areChildrenLoaded()) return List.of();
+        return ((ChildContainer<?>) node).getChildren();
+    }
+
+    /**
+     * Builds the index of a node and all of its ancestors that aren't indexed yet.
+     */
+    private static void index(Object node){
+        if(jumpsOf(node) != null) return;
+
+        ArrayDeque<Object> unindexed = new ArrayDeque<>();
+        for (Object current = node; isIndexed(current) && jumpsOf(current) == null; current = linkedParent(current))
+            unindexed.push(current);
+
+        while (!unindexed.isEmpty())
+            link(unindexed.pop());
+    }
+
+    /**
+     * Sets the depth and lifting table of a node from its linked parent, which has to be indexed already if it is a bidirectional structure. The table of the node is reused if its size didn't change.
+     */
+    private static void link(Object node){
+        Object parent = linkedParent(node);
+        if(!isIndexed(parent)) {
+            store(node, 0, NO_JUMPS);
+            return;
+        }
+
+        int depth = depthOf(parent) + 1;
+        int size = 32 - Integer.numberOfLeadingZeros(depth);
+        Object[] jumps = jumpsOf(node);
+        if(jumps == null || jumps.length != size) jumps = new Object[size];
+        jumps[0] = parent;
+        for (int k = 1; k < jumps.length; k++)
+            jumps[k] = jumpsOf(jumps[k - 1])[k - 1];
+        store(node, depth, jumps);
+    }
+
+    /**
+     * Moves up a number of levels using the lifting table.
+     */
+    private static Object lift(Object node, int levels){
+        for (int k = 0; levels > 0; k++, levels >>>= 1)
+            if((levels & 1) != 0) node = jumpsOf(node)[k];
+        return node;
+    }
+
+    private static boolean isIndexed(Object node){
+        return node instanceof BidirectionalStructure<?,?> || node instanceof KeyedBidirectionalStructure<?,?,?>;
+    }
+
+    private static Object parentOf(Object node){
+        return node instanceof ParentContainer<?> container ? container.getParent() : null;
+    }
+
+    private static int depthOf(Object node){
+        if(node instanceof BidirectionalStructure<?,?> structure) return structure.ancestryDepth;
+        return ((KeyedBidirectionalStructure<?,?,?>) node).ancestryDepth;
+    }
+
+    private static Object[] jumpsOf(Object node){
+        if(node instanceof BidirectionalStructure<?,?> structure) return structure.ancestryJumps;
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure) return structure.ancestryJumps;
+        return null;
+    }
+
+    private static void store(Object node, int depth, Object[] jumps){
+        if(node instanceof BidirectionalStructure<?,?> structure) {
+            structure.ancestryDepth = depth;
+            structure.ancestryJumps = jumps;
+        } else {
+            KeyedBidirectionalStructure<?,?,?> structure = (KeyedBidirectionalStructure<?,?,?>) node;
+            structure.ancestryDepth = depth;
+            structure.ancestryJumps = jumps;
+        }
+    }
+}
@@ -1,27 +1,57 @@
 package om.self.structure.bidirectional;
 
 import om.self.structure.child.ChildStructure;
-import om.self.structure.parent.ParentContainer;
 import om.self.structure.parent.ParentStructure;
+import om.self.structure.snapshot.Snapshot;
+import om.self.structure.storage.ChildStorage;
+import om.self.structure.storage.InlineSet;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * An advanced implementation of both {@link ChildStructure} and {@link ParentStructure} that allows for bidirectional relationships where children and parents can be automatically attached and detached when the structure changes.
+ * <br>
+ * By default, children are stored using {@link ChildStorage#inline()} so nodes without children (or with only a few) stay small.
  * @param <PARENT> The type of the parent
  * @param <CHILD> The type of the child
  */
 public class BidirectionalStructure<PARENT, CHILD> implements ChildStructure<CHILD>, ParentStructure<PARENT> {
     
     private PARENT parent;
-    private final Set<CHILD> children = new HashSet<>();
+    private final Set<CHILD> children;
+    /**
+     * The depth and binary lifting table used by {@link Ancestry} (the table is null until this node is queried)
+     */
+    int ancestryDepth;
+    Object[] ancestryJumps;
+    /**
+     * The subtree size and height used by {@link SubtreeMetrics} (the size is 0 until this node is tracked)
+     */
+    int subtreeSize;
+    int height;
+    /**
+     * The cached values of each {@link SubtreeAggregate} (null until one is computed)
+     */
+    Object[] aggregates;
 
     /**
      * Default constructor that creates a bidirectional node without children or a parent
      */
     public BidirectionalStructure() {
+        this(ChildStorage.inline());
+    }
+
+    /**
+     * Creates a bidirectional node without children or a parent that stores its children in a custom storage
+     * @param storage the storage used to create the set of children
+     */
+    public BidirectionalStructure(ChildStorage storage) {
+        children = storage.createSet(0);
     }
 
     /**
@@ -29,6 +59,7 @@ public class BidirectionalStructure<PARENT, CHILD> implements ChildStructure<CHI
      * @param parent the parent of this node
      */
     public BidirectionalStructure(PARENT parent) {
+        this();
         attachParent(parent);
     }
 
@@ -37,37 +68,118 @@ public class BidirectionalStructure<PARENT, CHILD> implements ChildStructure<CHI
      * @param children the children to attach to this node
      */
     public BidirectionalStructure(Iterable<CHILD> children) {
+        this();
         attachChildren(children);
     }
 
     /**
-     * If the child is not already attached, it attaches the child then attaches itself as a parent to the child if it's the right type.
+     * If the child is not already attached, it attaches the child then attaches itself as a parent to the child if it's the right type. Nothing happens if the child is this node or one of its ancestors (that would create a cycle).
      * @param child The child being attached
+     * @see #tryAttachChild(Object)
      */
     @Override
     public void attachChild(CHILD child) {
-        if(!children.add(child)) return;
+        tryAttachChild(child);
+    }
+
+    /**
+     * Attaches a child like {@link #attachChild(Object)} and reports what happened.
+     * @param child The child being attached
+     * @return {@link LinkResult#ATTACHED} if the child was attached and linked back, {@link LinkResult#PEER_FAILED} if the child didn't link back, or why nothing happened
+     */
+    public LinkResult tryAttachChild(CHILD child) {
+        if(Ancestry.createsCycle(this, child)) return LinkResult.WOULD_CYCLE;
+        if(!children.add(child)) return LinkResult.ALREADY_PRESENT;
+        SubtreeMetrics.childAttached(this, child);
+        SubtreeAggregate.childrenChanged(this);
+        Ancestry.childLinkChanged(this, child);
 
-        try{
-            if(child instanceof ParentStructure structure) structure.attachParent(this);
-        } catch(Exception e){}
+        LinkResult result = LinkProtocol.of(child).attachParent(child, this, null, null);
         onChildAttach(child);
+        return result;
+    }
+
+    /**
+     * Attaches multiple children in one pass (with {@link ChildStorage#copyOnWrite()} the array is only copied once), then attaches itself as a parent to each child if it's the right type, then calls {@link #onChildrenAttach(Collection)} once with the children that were attached. Children that are already attached or would create a cycle are skipped.
+     * @param children The children being attached
+     */
+    @Override
+    public void attachChildren(Iterable<CHILD> children) {
+        if(children instanceof Collection<?> collection && this.children instanceof InlineSet<?> inline)
+            inline.ensureCapacity(this.children.size() + collection.size());
+
+        ArrayList<CHILD> attached = new ArrayList<>();
+        if(this.children instanceof CopyOnWriteArraySet<CHILD> copyOnWrite) {
+            LinkedHashSet<CHILD> batch = new LinkedHashSet<>();
+            for (CHILD child : children)
+                if(!Ancestry.createsCycle(this, child) && !copyOnWrite.contains(child)) batch.add(child);
+            copyOnWrite.addAll(batch);
+            attached.addAll(batch);
+        } else for (CHILD child : children)
+            if(!Ancestry.createsCycle(this, child) && this.children.add(child)) attached.add(child);
+        if(attached.isEmpty()) return;
+
+        SubtreeMetrics.childrenAttached(this, attached);
+        SubtreeAggregate.childrenChanged(this);
+        for (CHILD child : attached) {
+            Ancestry.childLinkChanged(this, child);
+            LinkProtocol.of(child).attachParent(child, this, null, null);
+        }
+        onChildrenAttach(attached);
     }
 
     /**
      * If the child is already attached, it detached the child then detaches itself as a parent from the child if it's the right type.
      * @param child The child being detached
+     * @see #tryDetachChild(Object)
      */
     @Override
     public void detachChild(CHILD child) {
-        if(!children.remove(child)) return;
+        tryDetachChild(child);
+    }
 
-        if(child instanceof ParentContainer<?> container) {
-            if (container.getParent() == this)
-                container.detachParent();
-        }
+    /**
+     * Detaches a child like {@link #detachChild(Object)} and reports what happened.
+     * @param child The child being detached
+     * @return {@link LinkResult#DETACHED} if the child was detached and unlinked, {@link LinkResult#PEER_FAILED} if the child kept this node as its parent, or why nothing happened
+     */
+    public LinkResult tryDetachChild(CHILD child) {
+        if(!children.remove(child)) return LinkResult.NOT_PRESENT;
+        SubtreeMetrics.childDetached(this, child);
+        SubtreeAggregate.childrenChanged(this);
 
+        LinkResult result = LinkProtocol.of(child).detachParent(child, this);
+        Ancestry.childLinkChanged(this, child);
         onChildDetach(child);
+        return result;
+    }
+
+    /**
+     * Detaches the children that are attached when this is called in one step, then detaches itself as a parent from each child if it's the right type, then calls {@link #onChildrenDetach(Collection)} once. A child attached by another thread while this runs stays attached.
+     */
+    @Override
+    public void detachChildren() {
+        detachAll(new ArrayList<>(children));
+    }
+
+    /**
+     * Removes a batch of attached children, then detaches itself as a parent from each child if it's the right type, then calls {@link #onChildrenDetach(Collection)} once. Only the children in the batch are removed from the set storing the children (with {@link ChildStorage#copyOnWrite()} the array is only copied once).
+     * @param detached the children being detached (each one must be attached and only be in the batch once)
+     */
+    protected void detachAll(Collection<CHILD> detached) {
+        if(detached.isEmpty()) return;
+
+        if(children instanceof CopyOnWriteArraySet<CHILD>) children.removeAll(new HashSet<>(detached)); //one copy of the array
+        else for (CHILD child : detached)
+            children.remove(child);
+        SubtreeMetrics.childrenDetached(this, detached);
+        SubtreeAggregate.childrenChanged(this);
+
+        for (CHILD child : detached) {
+            LinkProtocol.of(child).detachParent(child, this);
+            Ancestry.childLinkChanged(this, child);
+        }
+        onChildrenDetach(detached);
     }
 
     /**
@@ -80,34 +192,56 @@ public class BidirectionalStructure<PARENT, CHILD> implements ChildStructure<CHI
     }
 
     /**
-     * Detaches the previous parent, then attaches the new parent and itself as a child to the parent if it is the right type.
+     * Detaches the previous parent, then attaches the new parent and itself as a child to the parent if it is the right type. Nothing happens if the parent is this node or one of its descendants (that would create a cycle).
      * @param parent the parent being attached
+     * @see #tryAttachParent(Object)
      */
     @Override
     public void attachParent(PARENT parent) {
-        if(this.parent == parent) return;
+        tryAttachParent(parent);
+    }
 
-        detachParent();
-        if(isParentAttached()) return; //in case the parent didn't detach itself
+    /**
+     * Attaches a parent like {@link #attachParent(Object)} and reports what happened.
+     * @param parent the parent being attached
+     * @return {@link LinkResult#ATTACHED} if the parent was attached and linked back, {@link LinkResult#PEER_FAILED} if the parent didn't store this node as a child, or why nothing happened
+     */
+    public LinkResult tryAttachParent(PARENT parent) {
+        if(this.parent == parent) return LinkResult.ALREADY_PRESENT;
+        if(Ancestry.createsCycle(parent, this)) return LinkResult.WOULD_CYCLE;
+
+        tryDetachParent();
+        if(isParentAttached()) return LinkResult.VETOED_BY_CHECK; //in case the parent didn't detach itself
 
         this.parent = parent;
-        try{
-            if(parent instanceof ChildStructure structure) structure.attachChild(this);
-        } catch(Exception e){}
+        Ancestry.linkChanged(this);
+        LinkResult result = LinkProtocol.of(parent).attachChild(parent, this, null, null);
         onParentAttach(parent);
+        return result;
     }
 
     /**
      * Detaches the parent then detaches itself from the parents children if it is the right type.
+     * @see #tryDetachParent()
      */
     @Override
     public void detachParent() {
-        if(!isParentAttached()) return;
+        tryDetachParent();
+    }
+
+    /**
+     * Detaches the parent like {@link #detachParent()} and reports what happened.
+     * @return {@link LinkResult#DETACHED} if the parent was detached and unlinked, {@link LinkResult#PEER_FAILED} if the parent still stores this node as a child, or why nothing happened
+     */
+    public LinkResult tryDetachParent() {
+        if(!isParentAttached()) return LinkResult.NOT_PRESENT;
 
         PARENT parent = this.parent;
         this.parent = null;
-        if(parent instanceof ChildStructure structure && structure.isChildAttached(this)) structure.detachChild(this);
+        Ancestry.linkChanged(this);
+        LinkResult result = LinkProtocol.of(parent).detachChild(parent, this, null);
         onParentDetach(parent);
+        return result;
     }
 
     /**
@@ -118,4 +252,60 @@ public class BidirectionalStructure<PARENT, CHILD> implements ChildStructure<CHI
     public PARENT getParent() {
         return parent;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the amount of bidirectional ancestors this node has.
+     * @return the depth of this node
+     * @see Ancestry#depth(Object)
+     */
+    public int getDepth() {
+        return Ancestry.depth(this);
+    }
+
+    /**
+     * Checks if this node is an ancestor (parent, grandparent, ...) of another node.
+     * @param node the node
+     * @return if this node is above node
+     * @see Ancestry#isAncestor(Object, Object)
+     */
+    public boolean isAncestorOf(Object node) {
+        return Ancestry.isAncestor(this, node);
+    }
+
+    /**
+     * Finds the deepest node that is an ancestor of (or the same as) both this node and another node.
+     * @param node the other node
+     * @return the lowest common ancestor or null if the nodes are in different trees
+     * @see Ancestry#lowestCommonAncestor(Object, Object)
+     */
+    public Object lowestCommonAncestor(Object node) {
+        return Ancestry.lowestCommonAncestor(this, node);
+    }
+
+    /**
+     * Gets the amount of nodes in the subtree of this node (including this node). The first call walks the subtree, after that the size is kept up to date as children are attached and detached.
+     * @return the size of the subtree
+     * @see SubtreeMetrics#subtreeSize(Object)
+     */
+    public int getSubtreeSize() {
+        return SubtreeMetrics.subtreeSize(this);
+    }
+
+    /**
+     * Gets the amount of links on the longest path from this node down to a leaf. The first call walks the subtree, after that the height is kept up to date as children are attached and detached.
+     * @return the height of this node
+     * @see SubtreeMetrics#height(Object)
+     */
+    public int getHeight() {
+        return SubtreeMetrics.height(this);
+    }
+
+    /**
+     * Takes an immutable snapshot of the subtree of this node in constant time. Every node in the subtree has to store its children with {@link ChildStorage#versioned()}, and the snapshot should be closed when it isn't needed anymore.
+     * @return the snapshot
+     * @see Snapshot
+     */
+    public Snapshot<BidirectionalStructure<PARENT, CHILD>> snapshot() {
+        return Snapshot.of(this);
+    }
+}
@@ -1,20 +1,21 @@
 package om.self.structure.bidirectional;
 
 import om.self.structure.Utils;
+import om.self.structure.check.CheckChain;
+import om.self.structure.storage.ChildStorage;
+
+import java.util.ArrayList;
 import om.self.structure.child.ChildStructure;
 import om.self.structure.parent.ParentStructure;
 
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * An extension of {@link BidirectionalStructure} that adds the ability to run checks before attaching or detaching anything
  * @param <PARENT> the type of the parent
  * @param <CHILD> the type of the child
  */
 public class BidirectionalStructureWithChecks<PARENT, CHILD> extends BidirectionalStructure<PARENT, CHILD> {
-    private final List<Utils.Check<PARENT>> parentChecks = new LinkedList<>();
-    private final List<Utils.Check<CHILD>> childChecks = new LinkedList<>();
+    private final CheckChain<PARENT> parentChecks = new CheckChain<>();
+    private final CheckChain<CHILD> childChecks = new CheckChain<>();
 
     /**
      * Default constructor that creates a bidirectional node with checks without children or a parent
@@ -22,6 +23,15 @@ public class BidirectionalStructureWithChecks<PARENT, CHILD> extends Bidirection
     public BidirectionalStructureWithChecks() {
     }
 
+    /**
+     * Creates a bidirectional node with checks without children or a parent that stores its children in a custom storage
+     *
+     * @param storage the storage used to create the set of children
+     */
+    public BidirectionalStructureWithChecks(ChildStorage storage) {
+        super(storage);
+    }
+
     /**
      * Creates a bidirectional node with checks with the specified parent attached
      *
@@ -48,11 +58,20 @@ public class BidirectionalStructureWithChecks<PARENT, CHILD> extends Bidirection
         parentChecks.add(check);
     }
 
+    /**
+     * add a check to preform only when one action is performed
+     * @param check the check to preform
+     * @param action the only action the check will run for
+     */
+    public void addParentCheck(Utils.Check<PARENT> check, Utils.Action action){
+        parentChecks.add(check, action);
+    }
+
     /**
      * get all parent checks
      * @return all parent checks
      */
-    public List<Utils.Check<PARENT>> getParentChecks(){
+    public CheckChain<PARENT> getParentChecks(){
         return parentChecks;
     }
 
@@ -87,11 +106,20 @@ public class BidirectionalStructureWithChecks<PARENT, CHILD> extends Bidirection
         childChecks.add(check);
     }
 
+    /**
+     * add a check to preform only when one action is performed
+     * @param check the check to preform
+     * @param action the only action the check will run for
+     */
+    public void addChildCheck(Utils.Check<CHILD> check, Utils.Action action){
+        childChecks.add(check, action);
+    }
+
     /**
      * get all child checks
      * @return all child checks
      */
-    public List<Utils.Check<CHILD>> getChildChecks(){
+    public CheckChain<CHILD> getChildChecks(){
         return childChecks;
     }
 
@@ -122,53 +150,77 @@ public class BidirectionalStructureWithChecks<PARENT, CHILD> extends Bidirection
      * If the child is not already attached, it attaches the child then attaches itself as a parent to the child if it's the right type.
      *
      * @param child The child being attached
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link BidirectionalStructure#tryAttachChild(Object)}
+     */
+    @Override
+    public LinkResult tryAttachChild(CHILD child) {
+        if(!childChecks.test(child, Utils.Action.ATTACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryAttachChild(child);
+    }
+
+    /**
+     * Runs the child checks on all children as one batch (see {@link CheckChain#testAll(java.util.Collection, Utils.Action)}) then attaches the children that passed using {@link BidirectionalStructure#attachChildren(Iterable)}.
+     * @param children The children being attached
      */
     @Override
-    public void attachChild(CHILD child) {
-        for(Utils.Check<CHILD> check : childChecks)
-            if(!check.apply(child, Utils.Action.ATTACH)) return;
+    public void attachChildren(Iterable<CHILD> children) {
+        ArrayList<CHILD> batch = new ArrayList<>();
+        children.forEach(batch::add);
+        childChecks.testAll(batch, Utils.Action.ATTACH);
 
-        super.attachChild(child);
+        super.attachChildren(batch);
     }
 
     /**
      * If the child is already attached, it detached the child then detaches itself as a parent from the child if it's the right type.
      *
      * @param child The child being detached
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link BidirectionalStructure#tryDetachChild(Object)}
      */
     @Override
-    public void detachChild(CHILD child) {
-        if(!isChildAttached(child)) return;
+    public LinkResult tryDetachChild(CHILD child) {
+        if(!isChildAttached(child)) return LinkResult.NOT_PRESENT;
+
+        if(!childChecks.test(child, Utils.Action.DETACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryDetachChild(child);
+    }
 
-        for(Utils.Check<CHILD> check : childChecks)
-            if(!check.apply(child, Utils.Action.DETACH)) return;
+    /**
+     * Runs the detach child checks on all children as one batch (see {@link CheckChain#testAll(java.util.Collection, Utils.Action)}) then detaches the children that passed in one step using {@link BidirectionalStructure#detachAll(java.util.Collection)}.
+     */
+    @Override
+    public void detachChildren() {
+        ArrayList<CHILD> batch = new ArrayList<>(getChildren());
+        childChecks.testAll(batch, Utils.Action.DETACH);
 
-        super.detachChild(child);
+        detachAll(batch);
     }
 
     /**
      * Detaches the previous parent, then attaches the new parent and itself as a child to the parent if it is the right type.
      *
      * @param parent the parent being attached
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link BidirectionalStructure#tryAttachParent(Object)}
      */
     @Override
-    public void attachParent(PARENT parent) {
-        for(Utils.Check<PARENT> check : parentChecks)
-            if(!check.apply(parent, Utils.Action.ATTACH)) return;
+    public LinkResult tryAttachParent(PARENT parent) {
+        if(!parentChecks.test(parent, Utils.Action.ATTACH)) return LinkResult.VETOED_BY_CHECK;
 
-        super.attachParent(parent);
+        return super.tryAttachParent(parent);
     }
 
     /**
      * Detaches the parent then detaches itself from the parents children if it is the right type.
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link BidirectionalStructure#tryDetachParent()}
      */
     @Override
-    public void detachParent() {
-        if(!isParentAttached()) return;
+    public LinkResult tryDetachParent() {
+        if(!isParentAttached()) return LinkResult.NOT_PRESENT;
 
-        for(Utils.Check<PARENT> check : parentChecks)
-            if(!check.apply(getParent(), Utils.Action.DETACH)) return;
+        if(!parentChecks.test(getParent(), Utils.Action.DETACH)) return LinkResult.VETOED_BY_CHECK;
 
-        super.detachParent();
+        return super.tryDetachParent();
     }
 }
@@ -0,0 +1,116 @@
+package om.self.structure.bidirectional;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of keys from the root of a tree down to a node. A path only stores its last key and a link to the path of the parent, so the path of a child is created in constant time and shares everything else with the path of its parent.
+ * <br>
+ * The keys are copied into an array the first time they are accessed by index, and {@link #join(CharSequence)} remembers the last string it created.
+ * @param <K> the type of the keys
+ * @see KeyedBidirectionalStructure#getPath()
+ */
+public final class KeyPath<K> extends AbstractList<K> implements RandomAccess {
+    private static final KeyPath<?> ROOT = new KeyPath<>(null, null, 0);
+
+    private final KeyPath<K> parent;
+    private final K key;
+    private final int size;
+
+    private Object[] keys;
+    private CharSequence joinedSeparator;
+    private String joined;
+
+    private KeyPath(KeyPath<K> parent, K key, int size) {
+        this.parent = parent;
+        this.key = key;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty path (the path of a root node).
+     * @return the empty path
+     * @param <K> the type of the keys
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> KeyPath<K> root(){
+        return (KeyPath<K>) ROOT;
+    }
+
+    /**
+     * Creates the path of a child.
+     * @param key the key of the child
+     * @return this path followed by key
+     */
+    public KeyPath<K> child(K key){
+        return new KeyPath<>(this, key, size + 1);
+    }
+
+    /**
+     * Gets the path without its last key.
+     * @return the parent path or null if this is the empty path
+     */
+    public KeyPath<K> getParent() {
+        return parent;
+    }
+
+    /**
+     * Gets the last key of the path.
+     * @return the last key or null if this is the empty path
+     */
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public K get(int index) {
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        if(index == size - 1) return key;
+        return (K) keys()[index];
+    }
+
+    @Override
+    public Object[] toArray() {
+        return keys().clone();
+    }
+
+    private Object[] keys(){
+        if(keys == null) {
+            Object[] array = new Object[size];
+            KeyPath<K> path = this;
+            for (int i = size - 1; i >= 0; i--) {
+                array[i] = path.key;
+                path = path.parent;
+            }
+            keys = array;
+        }
+        return keys;
+    }
+
+    /**
+     * Joins the keys of this path using {@link String#valueOf(Object)}. The result is cached until the path is joined with a different separator.
+     * @param separator the separator placed between keys
+     * @return the joined keys
+     */
+    public String join(CharSequence separator){
+        String result = joined;
+        if(result != null && joinedSeparator.equals(separator)) return result;
+
+        StringBuilder builder = new StringBuilder();
+        Object[] array = keys();
+        for (int i = 0; i < array.length; i++) {
+            if(i > 0) builder.append(separator);
+            builder.append(array[i]);
+        }
+        result = builder.toString();
+        joinedSeparator = separator;
+        joined = result;
+        return result;
+    }
+}
@@ -1,17 +1,21 @@
 package om.self.structure.bidirectional;
 
-import om.self.structure.child.ChildStructure;
 import om.self.structure.child.KeyedChildStructure;
 import om.self.structure.parent.KeyedParentStructure;
-import om.self.structure.parent.ParentContainer;
-import om.self.structure.parent.ParentStructure;
+import om.self.structure.snapshot.Snapshot;
+import om.self.structure.storage.ChildStorage;
+import om.self.structure.storage.CopyOnWriteMap;
 
-import java.util.Hashtable;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * An advanced implementation of both {@link KeyedChildStructure} and {@link KeyedParentStructure} that allows for bidirectional relationships where children and parents can be automatically attached and detached when the structure changes.
+ * <br>
+ * Each node remembers the key it is stored under in its parent, and {@link #getPath()} gives the keys from the root to the node. Paths are cached per node and are cleared for the whole subtree when the node is reparented, detached, or renamed.
  * @param <K> the type of the key (unique identifier)
  * @param <PARENT> The type of the parent
  * @param <CHILD> The type of the child
@@ -21,13 +25,52 @@ public class KeyedBidirectionalStructure<K, PARENT, CHILD> implements KeyedChild
      * Thy key associated with the attached parent
      */
     private K parentKey;
+    /**
+     * The key this node is stored under in the children of the parent
+     */
+    private K childKey;
     private PARENT parent;
-    private final Hashtable<K, CHILD> children = new Hashtable<>();
+    private final Map<K, CHILD> children;
+    /**
+     * Creates the children that haven't been loaded yet (null once they are loaded)
+     */
+    private Supplier<? extends Map<? extends K, ? extends CHILD>> childLoader;
+    /**
+     * The listener of the tree this node is in, shared by every node in the tree (null if the tree doesn't have one)
+     */
+    private ListenerScope scope;
+    /**
+     * The cached path of this node (if this is set, the path of the parent is also set)
+     */
+    private KeyPath<K> path;
+    /**
+     * The depth and binary lifting table used by {@link Ancestry} (the table is null until this node is queried)
+     */
+    int ancestryDepth;
+    Object[] ancestryJumps;
+    /**
+     * The subtree size and height used by {@link SubtreeMetrics} (the size is 0 until this node is tracked)
+     */
+    int subtreeSize;
+    int height;
+    /**
+     * The cached values of each {@link SubtreeAggregate} (null until one is computed)
+     */
+    Object[] aggregates;
 
     /**
-     * Creates a keyed bidirectional node without a parent or children
+     * Creates a keyed bidirectional node without a parent or children that stores children in a {@link java.util.Hashtable}
      */
     public KeyedBidirectionalStructure() {
+        this(ChildStorage.hashtable());
+    }
+
+    /**
+     * Creates a keyed bidirectional node without a parent or children
+     * @param storage the storage used to create the map of children
+     */
+    public KeyedBidirectionalStructure(ChildStorage storage) {
+        children = storage.createMap(0);
     }
 
     /**
@@ -39,54 +82,211 @@ public class KeyedBidirectionalStructure<K, PARENT, CHILD> implements KeyedChild
      */
     @Override
     public void attachChild(K key, CHILD child){
-        attachChild(key, child, null);
+        tryAttachChild(key, child, null);
     }
 
     /**
-     * If the child is not already attached, it attaches the child then attaches itself as a parent to the child if it's the right type.
+     * If the child is not already attached, it attaches the child then attaches itself as a parent to the child if it's the right type. Nothing happens if the child is this node or one of its ancestors (that would create a cycle).
      * @param key the key associated with the child (used to identify the child)
      * @param child the child being attached
      * @param customParentKey if not null, it will try to use this parameter as the key when this object attaches itself as the parent to the child else it will just use the key parameter
+     * @see #tryAttachChild(Object, Object, Object)
      */
     public void attachChild(K key, CHILD child, K customParentKey) {
+        tryAttachChild(key, child, customParentKey);
+    }
+
+    /**
+     * Attaches a child like {@link #attachChild(Object, Object)} and reports what happened.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @return {@link LinkResult#ATTACHED} if the child was attached and linked back, {@link LinkResult#PEER_FAILED} if the child didn't link back, or why nothing happened
+     * @see #tryAttachChild(Object, Object, Object)
+     */
+    public LinkResult tryAttachChild(K key, CHILD child){
+        return tryAttachChild(key, child, null);
+    }
+
+    /**
+     * Attaches a child like {@link #attachChild(Object, Object, Object)} and reports what happened.
+     * @param key the key associated with the child (used to identify the child)
+     * @param child the child being attached
+     * @param customParentKey if not null, it will try to use this parameter as the key when this object attaches itself as the parent to the child else it will just use the key parameter
+     * @return {@link LinkResult#ATTACHED} if the child was attached and linked back, {@link LinkResult#PEER_FAILED} if the child didn't link back, or why nothing happened
+     */
+    public LinkResult tryAttachChild(K key, CHILD child, K customParentKey) {
         if(key == null) throw new IllegalArgumentException("the key argument can not be null!");
-        if(children.put(key, child) == child) return;
-
-        if(child instanceof KeyedBidirectionalStructure structure)
-            tryFunction(
-                    () -> structure.attachParent(
-                            Objects.requireNonNullElse(customParentKey, key),
-                            this,
-                            key
-                    )
-            );
-        else if(child instanceof KeyedParentStructure structure) {
-            tryFunction(
-                    () -> structure.attachParent(
-                            Objects.requireNonNullElse(customParentKey, key),
-                            this
-                    )
-            );
+        if(Ancestry.createsCycle(this, child)) return LinkResult.WOULD_CYCLE;
+        CHILD replaced = children().put(key, child);
+        if(replaced == child) return LinkResult.ALREADY_PRESENT;
+        if(replaced != null) {
+            SubtreeMetrics.childDetached(this, replaced);
+            Ancestry.childLinkChanged(this, replaced);
         }
-        else if(child instanceof ParentStructure structure) tryFunction(() -> structure.attachParent(this));
+        SubtreeMetrics.childAttached(this, child);
+        SubtreeAggregate.childrenChanged(this);
+        Ancestry.childLinkChanged(this, child);
+        StructureListener<K> listener = treeListener();
+        if(listener != null) listener.childAttached(this, key, child);
 
+        LinkResult result = LinkProtocol.of(child).attachParent(child, this, Objects.requireNonNullElse(customParentKey, key), key);
         onChildAttach(key, child);
+        return result;
+    }
+
+    /**
+     * Attaches multiple children with one {@link Map#putAll(Map)} (so the storage can resize once), then attaches itself as a parent to each child using its key if it's the right type, then calls {@link #onChildrenAttach(Map)} once with the children that were attached. Children that are already attached with the same key or would create a cycle are skipped.
+     * @param children the children being attached
+     */
+    @Override
+    public void attachChildren(Map<K, CHILD> children) {
+        Map<K, CHILD> attached = new LinkedHashMap<>(children.size() * 4 / 3 + 1);
+        for (Map.Entry<K, CHILD> entry : children.entrySet()) {
+            if(entry.getKey() == null) throw new IllegalArgumentException("the key argument can not be null!");
+            if(!Ancestry.createsCycle(this, entry.getValue()) && children().get(entry.getKey()) != entry.getValue())
+                attached.put(entry.getKey(), entry.getValue());
+        }
+        if(attached.isEmpty()) return;
+
+        for (K key : attached.keySet()) {
+            CHILD replaced = this.children.get(key);
+            if(replaced == null) continue;
+            SubtreeMetrics.childDetached(this, replaced);
+            Ancestry.childLinkChanged(this, replaced);
+        }
+        this.children.putAll(attached);
+        SubtreeMetrics.childrenAttached(this, attached.values());
+        SubtreeAggregate.childrenChanged(this);
+        StructureListener<K> listener = treeListener();
+        if(listener != null)
+            for (Map.Entry<K, CHILD> entry : attached.entrySet())
+                listener.childAttached(this, entry.getKey(), entry.getValue());
+
+        for (Map.Entry<K, CHILD> entry : attached.entrySet()) {
+            Ancestry.childLinkChanged(this, entry.getValue());
+            LinkProtocol.of(entry.getValue()).attachParent(entry.getValue(), this, entry.getKey(), entry.getKey());
+        }
+        onChildrenAttach(attached);
+    }
+
+    /**
+     * Attaches children that are only created the first time the children of this node are used (ex: by {@link #getChildrenAndKeys()}, {@link #getChild(Object)}, or attaching or detaching a child). This lets large trees be loaded one level at a time when they are read (see {@link om.self.structure.io.MappedStructureReader}).
+     * <br>
+     * The children are treated as if they were always attached, so when they are loaded they are put in the storage and linked to this node (using their key) without any checks, callbacks, or cycle checks. The loader must create new nodes that don't have a parent. Loading isn't thread safe, just like the rest of this class, and a {@link Snapshot} can't read children that weren't loaded before it was taken.
+     * <br>
+     * The {@link SubtreeMetrics} and {@link SubtreeAggregate} values of this node and its ancestors are dropped, so the next query loads the children and counts them.
+     * @param loader creates the children and their keys
+     * @throws IllegalStateException if this node already has children or children that aren't loaded yet
+     */
+    public void attachChildrenLazily(Supplier<? extends Map<? extends K, ? extends CHILD>> loader) {
+        if(loader == null) throw new IllegalArgumentException("the loader argument can not be null!");
+        if(childLoader != null || !children.isEmpty()) throw new IllegalStateException("the node already has children!");
+        childLoader = loader;
+        SubtreeMetrics.untrack(this);
+        SubtreeAggregate.childrenChanged(this);
+    }
+
+    /**
+     * Checks if the children attached with {@link #attachChildrenLazily(Supplier)} were created yet.
+     * @return false if there are children that will be created the next time the children are used
+     */
+    public boolean areChildrenLoaded() {
+        return childLoader == null;
+    }
+
+    /**
+     * Checks if this node has no children without loading the children attached with {@link #attachChildrenLazily(Supplier)}.
+     */
+    boolean isLeaf() {
+        return childLoader == null && children.isEmpty();
+    }
+
+    /**
+     * Gets the map storing the children after loading the children attached with {@link #attachChildrenLazily(Supplier)}. Subclasses must read the storage through this instead of keeping their own reference to it.
+     * @return the storage created by the {@link ChildStorage} of this node
+     */
+    protected Map<K, CHILD> children() {
+        if(childLoader == null) return children;
+
+        Supplier<? extends Map<? extends K, ? extends CHILD>> loader = childLoader;
+        childLoader = null;
+        Map<? extends K, ? extends CHILD> loaded = loader.get();
+        children.putAll(loaded);
+        for (Map.Entry<? extends K, ? extends CHILD> entry : loaded.entrySet()) {
+            if(entry.getValue() instanceof KeyedBidirectionalStructure<?,?,?> structure && structure.parent == null) {
+                @SuppressWarnings("unchecked")
+                KeyedBidirectionalStructure<K, Object, ?> node = (KeyedBidirectionalStructure<K, Object, ?>) structure;
+                node.parentKey = entry.getKey();
+                node.childKey = entry.getKey();
+                node.parent = this;
+                if(scope != null) node.setScope(scope);
+            } else {
+                LinkProtocol.of(entry.getValue()).attachParent(entry.getValue(), this, entry.getKey(), entry.getKey());
+            }
+        }
+        return children;
     }
 
     /**
      * If the child is already attached, it detached the child then detaches itself as a parent from the child if it's the right type.
      * @param key the key of the child being detached
+     * @see #tryDetachChild(Object)
      */
     @Override
     public void detachChild(K key) {
-        if(!isChildKeyAttached(key)) return;
+        tryDetachChild(key);
+    }
+
+    /**
+     * Detaches a child like {@link #detachChild(Object)} and reports what happened.
+     * @param key the key of the child being detached
+     * @return {@link LinkResult#DETACHED} if the child was detached and unlinked, {@link LinkResult#PEER_FAILED} if the child kept this node as its parent, or why nothing happened
+     */
+    public LinkResult tryDetachChild(K key) {
+        if(!isChildKeyAttached(key)) return LinkResult.NOT_PRESENT;
 
-        CHILD child = children.remove(key);
-        if(child instanceof ParentContainer<?> container)
-            if (container.getParent() == this)
-                container.detachParent();
+        CHILD child = this.children.remove(key);
+        SubtreeMetrics.childDetached(this, child);
+        SubtreeAggregate.childrenChanged(this);
+        StructureListener<K> listener = treeListener();
+        if(listener != null) listener.childDetached(this, key, child);
 
+        LinkResult result = LinkProtocol.of(child).detachParent(child, this);
+        Ancestry.childLinkChanged(this, child);
         onChildDetach(key, child);
+        return result;
+    }
+
+    /**
+     * Detaches the children that are attached when this is called in one step, then detaches itself as a parent from each child if it's the right type, then calls {@link #onChildrenDetach(Map)} once. A child attached by another thread while this runs stays attached.
+     */
+    @Override
+    public void detachChildren() {
+        detachAll(new LinkedHashMap<>(children()));
+    }
+
+    /**
+     * Removes a batch of attached children, then detaches itself as a parent from each child if it's the right type, then calls {@link #onChildrenDetach(Map)} once. Only the entries in the batch are removed from the map storing the children (with {@link ChildStorage#copyOnWrite()} the array is only copied once), so a child attached under one of the keys in the meantime stays attached.
+     * @param detached the children being detached and their keys (each one must be attached with that key)
+     */
+    protected void detachAll(Map<K, CHILD> detached) {
+        if(detached.isEmpty()) return;
+
+        if(children instanceof CopyOnWriteMap<K, CHILD> copyOnWrite) copyOnWrite.removeEntries(detached);
+        else for (Map.Entry<K, CHILD> entry : detached.entrySet())
+            children.remove(entry.getKey(), entry.getValue());
+        SubtreeMetrics.childrenDetached(this, detached.values());
+        SubtreeAggregate.childrenChanged(this);
+        StructureListener<K> listener = treeListener();
+        if(listener != null)
+            for (Map.Entry<K, CHILD> entry : detached.entrySet())
+                listener.childDetached(this, entry.getKey(), entry.getValue());
+
+        for (CHILD child : detached.values()) {
+            LinkProtocol.of(child).detachParent(child, this);
+            Ancestry.childLinkChanged(this, child);
+        }
+        onChildrenDetach(detached);
     }
 
     /**
@@ -95,7 +295,17 @@ public class KeyedBidirectionalStructure<K, PARENT, CHILD> implements KeyedChild
      */
     @Override
     public Map<K, CHILD> getChildrenAndKeys() {
-        return children;
+        return children();
+    }
+
+    /**
+     * Checks whether a child is attached based on the key
+     * @param key the key of the child you want to check
+     * @return if the child is attached
+     */
+    @Override
+    public boolean isChildKeyAttached(K key) {
+        return children().containsKey(key);
     }
 
     /**
@@ -107,82 +317,241 @@ public class KeyedBidirectionalStructure<K, PARENT, CHILD> implements KeyedChild
      */
     @Override
     public void attachParent(K key, PARENT parent) {
-        attachParent(key, parent, null);
+        tryAttachParent(key, parent, null);
+    }
+
+    /**
+     * Attaches a parent like {@link #attachParent(Object, Object)} and reports what happened.
+     * @param key the key associated with the parent
+     * @param parent the parent being attached
+     * @return what happened (see {@link #tryAttachParent(Object, Object, Object)})
+     */
+    public LinkResult tryAttachParent(K key, PARENT parent) {
+        return tryAttachParent(key, parent, null);
     }
 
     /**
-     * Detaches the previous parent, then attaches the new parent and itself as a child to the parent if it is the right type.
+     * Detaches the previous parent, then attaches the new parent and itself as a child to the parent if it is the right type. Nothing happens if the parent is this node or one of its descendants (that would create a cycle).
      * @param key the key associated with the parent
      * @param parent the parent being attached
      * @param customChildName if not null, it will try to use this parameter to attach this object as a child to the parent else it will just use the key parameter
-     *
-     * @implNote if you use a customChildKey, you will need to pass in the same key when detaching the parent in order to detach this object from the parents children
+     * @see #tryAttachParent(Object, Object, Object)
      */
     public void attachParent(K key, PARENT parent, K customChildName) {
+        tryAttachParent(key, parent, customChildName);
+    }
+
+    /**
+     * Attaches a parent like {@link #attachParent(Object, Object, Object)} and reports what happened.
+     * @param key the key associated with the parent
+     * @param parent the parent being attached
+     * @param customChildName if not null, it will try to use this parameter to attach this object as a child to the parent else it will just use the key parameter
+     * @return {@link LinkResult#ATTACHED} if the parent was attached and linked back, {@link LinkResult#PEER_FAILED} if the parent didn't store this node as a child, or why nothing happened
+     */
+    public LinkResult tryAttachParent(K key, PARENT parent, K customChildName) {
         if(key == null) throw new IllegalArgumentException("the key argument can not be null!");
-        if(key == parentKey && parent == this.parent) return;
+        if(key == parentKey && parent == this.parent) return LinkResult.ALREADY_PRESENT;
+        if(Ancestry.createsCycle(parent, this)) return LinkResult.WOULD_CYCLE;
 
-        detachParent();
-        if(isParentAttached()) return; //in case a check prevents parent from being detached
+        tryDetachParent(null);
+        if(isParentAttached()) return LinkResult.VETOED_BY_CHECK; //in case a check prevents parent from being detached
 
         this.parentKey = key;
+        this.childKey = Objects.requireNonNullElse(customChildName, key);
         this.parent = parent;
+        Ancestry.linkChanged(this);
 
-        if(parent instanceof KeyedBidirectionalStructure structure)
-            tryFunction(
-                    () -> structure.attachChild(
-                            Objects.requireNonNullElse(customChildName, key),
-                            this,
-                            key
-                    )
-            );
-        else if(parent instanceof KeyedChildStructure structure) {
-            tryFunction(
-                    () -> structure.attachChild(Objects.requireNonNullElse(customChildName, key), this)
-            );
-        }
-        else if(parent instanceof ChildStructure structure)
-            tryFunction(() -> structure.attachChild(this));
+        LinkResult result = LinkProtocol.of(parent).attachChild(parent, this, childKey, key);
 
         onParentAttach(key, parent);
+        return result;
     }
 
     /**
      * Detaches the parent then detaches itself from the parents children if it is the right type.
-     * @param customChildName if not null, it will try to use this parameter to detach this object as a child from the parent else it will just use the {@link #parentKey} variable
+     * @param customChildName if not null, it will try to use this parameter to detach this object as a child from the parent else it will just use the {@link #getChildKey() key this node was attached with}
+     * @see #tryDetachParent(Object)
      */
     public void detachParent(K customChildName) {
-        if(!isParentAttached()) return;
+        tryDetachParent(customChildName);
+    }
 
-        if(parent instanceof KeyedChildStructure structure) tryFunction(() -> structure.detachChild(Objects.requireNonNullElse(customChildName, parentKey)));
-        else if(parent instanceof ChildStructure structure) tryFunction(() -> structure.detachChild(this));
+    /**
+     * Detaches the parent like {@link #detachParent(Object)} and reports what happened. The parent is cleared on this side before the parent is told to detach this node, so {@link #onParentDetach(Object, Object)} is only called once.
+     * @param customChildName if not null, it will try to use this parameter to detach this object as a child from the parent else it will just use the {@link #getChildKey() key this node was attached with}
+     * @return {@link LinkResult#DETACHED} if the parent was detached and unlinked, {@link LinkResult#PEER_FAILED} if the parent still stores this node as a child, or why nothing happened
+     */
+    public LinkResult tryDetachParent(K customChildName) {
+        if(!isParentAttached()) return LinkResult.NOT_PRESENT;
 
-        onParentDetach(parentKey, parent);
+        K key = parentKey;
+        K name = Objects.requireNonNullElse(customChildName, childKey);
+        PARENT parent = this.parent;
         parentKey = null;
-        parent = null;
+        childKey = null;
+        this.parent = null;
+        Ancestry.linkChanged(this);
+
+        LinkResult result = LinkProtocol.of(parent).detachChild(parent, this, name);
+        onParentDetach(key, parent);
+        return result;
     }
 
     /**
-     * Detaches the parent then detaches itself from the parents children if it is the right type using the {@link #parentKey}.
+     * Detaches the parent then detaches itself from the parents children if it is the right type using the {@link #getChildKey() key this node was attached with}.
      *
      * @see #detachParent(Object)
      */
     @Override
     public void detachParent() {
-        detachParent(null);
+        tryDetachParent(null);
     }
 
-    private void tryFunction(Runnable action, Runnable onSuccess, Runnable onFail){
-        try{
-            action.run();
-            onSuccess.run();
-        } catch (Exception e){
-            onFail.run();
+    /**
+     * Detaches the parent like {@link #detachParent()} and reports what happened.
+     * @return what happened (see {@link #tryDetachParent(Object)})
+     */
+    public LinkResult tryDetachParent() {
+        return tryDetachParent(null);
+    }
+
+    /**
+     * Remaps a child key to a new key. If the child is attached to this node and the attach and detach methods aren't used, the key the child remembers is updated and the cached paths of its subtree are cleared.
+     * @param oldKey the key of the child you want to move to a new key
+     * @param newKey the new key you want to move the child to
+     * @param useAttachDetach whether to call the attach and detach methods which invoke onAttach and onDetach or could have custom logic
+     */
+    @Override
+    public void renameChild(K oldKey, K newKey, boolean useAttachDetach) {
+        CHILD child = children().get(oldKey);
+        boolean renamed = !useAttachDetach && children.containsKey(oldKey) && !children.containsKey(newKey);
+        KeyedChildStructure.super.renameChild(oldKey, newKey, useAttachDetach);
+        if(renamed) {
+            StructureListener<K> listener = treeListener();
+            if(listener != null) listener.childRenamed(this, oldKey, newKey);
         }
+
+        if(!useAttachDetach && child instanceof KeyedBidirectionalStructure<?,?,?> structure && structure.parent == this && children.get(newKey) == child) {
+            @SuppressWarnings("unchecked")
+            KeyedBidirectionalStructure<K,?,?> node = (KeyedBidirectionalStructure<K,?,?>) structure;
+            if(Objects.equals(node.childKey, oldKey)) node.childKey = newKey;
+            Ancestry.linkChanged(node); //even if the child remembers another key, moving it can link or unlink it
+        }
+    }
+
+    /**
+     * Sets the listener that is told about every change to the children of the nodes in the tree this node is the root of (ex: a {@link om.self.structure.io.StructureJournal}). The listener is handed to every node in the subtree (O(size) once) and to nodes when they are attached to the tree, so looking it up is O(1) and trees without a listener don't pay anything. The listener is dropped when this node gets a parent.
+     * @param listener the listener or null to remove it
+     * @throws IllegalStateException if this node is stored by a parent that is a {@link KeyedBidirectionalStructure}
+     */
+    public void setListener(StructureListener<K> listener) {
+        if(Ancestry.linkedParent(this) instanceof KeyedBidirectionalStructure<?,?,?>) throw new IllegalStateException("the listener can only be set on the root of a tree!");
+        setScope(listener == null ? null : new ListenerScope(this, listener));
+    }
+
+    /**
+     * Gets the listener set with {@link #setListener(StructureListener)}.
+     * @return the listener or null if there isn't one (the listener of the tree is only returned by its root)
+     */
+    @SuppressWarnings("unchecked")
+    public StructureListener<K> getListener() {
+        return scope != null && scope.owner == this ? (StructureListener<K>) scope.listener : null;
+    }
+
+    /**
+     * Gets the listener of the tree this node is in.
+     */
+    @SuppressWarnings("unchecked")
+    private StructureListener<K> treeListener() {
+        return scope == null ? null : (StructureListener<K>) scope.listener;
     }
 
-    private void tryFunction(Runnable action){
-        tryFunction(action, () -> {}, () -> {});
+    /**
+     * Takes the listener of the parent after the link of this node changed, or keeps the listener set on this node if it is the root now. Returns right away if neither this node nor its parent have a listener.
+     */
+    void inheritListener(){
+        ListenerScope parentScope = parent instanceof KeyedBidirectionalStructure<?,?,?> structure ? structure.scope : null;
+        if(scope == null && parentScope == null) return;
+
+        ListenerScope inherited;
+        if(Ancestry.linkedParent(this) instanceof KeyedBidirectionalStructure<?,?,?>) inherited = parentScope;
+        else inherited = scope != null && scope.owner == this ? scope : null;
+        if(inherited != scope) setScope(inherited);
+    }
+
+    /**
+     * Sets the listener of this node and its descendants. Descendants that already have it are skipped because their own descendants have it too.
+     */
+    private void setScope(ListenerScope scope){
+        ArrayDeque<KeyedBidirectionalStructure<?,?,?>> stack = null;
+        KeyedBidirectionalStructure<?,?,?> node = this;
+        while (true) {
+            node.scope = scope;
+            if(node.childLoader == null)
+                for (Object child : node.children.values())
+                    if(child instanceof KeyedBidirectionalStructure<?,?,?> structure && structure.parent == node && structure.scope != scope) {
+                        if(stack == null) stack = new ArrayDeque<>();
+                        stack.push(structure);
+                    }
+            if(stack == null || stack.isEmpty()) return;
+            node = stack.pop();
+        }
+    }
+
+    /**
+     * A listener and the root it was set on.
+     */
+    private record ListenerScope(Object owner, StructureListener<?> listener){}
+
+    /**
+     * Gets the keys from the root of the tree to this node. The path is built from the {@link #getChildKey() child keys} of this node and its ancestors (stopping at the first ancestor that isn't a {@link KeyedBidirectionalStructure} or doesn't store its child) and is cached until this node or one of its ancestors is reparented, detached, or renamed.
+     * @return the path of this node (empty if there is no parent)
+     */
+    @SuppressWarnings("unchecked")
+    public KeyPath<K> getPath() {
+        if(path != null) return path;
+
+        //walk up until a cached path or the root is found, then build the paths back down
+        ArrayDeque<KeyedBidirectionalStructure<K,?,?>> uncached = new ArrayDeque<>();
+        KeyPath<K> base = KeyPath.root();
+        KeyedBidirectionalStructure<K,?,?> node = this;
+        while (true) {
+            if(node.path != null) {
+                base = node.path;
+                break;
+            }
+            uncached.push(node);
+            if(!(Ancestry.linkedParent(node) instanceof KeyedBidirectionalStructure<?,?,?> structure)) break;
+            node = (KeyedBidirectionalStructure<K,?,?>) structure;
+        }
+
+        while (!uncached.isEmpty()) {
+            node = uncached.pop();
+            if(node.parent != null) base = base.child(node.childKey);
+            node.path = base;
+        }
+        return base;
+    }
+
+    /**
+     * Clears the cached path of this node and its descendants. Descendants without a cached path are skipped because their own descendants can't have one either, and nothing is allocated unless a child has a cached path.
+     */
+    void invalidatePath(){
+        if(path == null) return;
+
+        ArrayDeque<KeyedBidirectionalStructure<?,?,?>> stack = null;
+        KeyedBidirectionalStructure<?,?,?> node = this;
+        while (true) {
+            node.path = null;
+            if(node.childLoader == null)
+                for (Object child : node.children.values())
+                    if(child instanceof KeyedBidirectionalStructure<?,?,?> structure && structure.parent == node && structure.path != null) {
+                        if(stack == null) stack = new ArrayDeque<>();
+                        stack.push(structure);
+                    }
+            if(stack == null || stack.isEmpty()) return;
+            node = stack.pop();
+        }
     }
 
     /**
@@ -202,4 +571,68 @@ public class KeyedBidirectionalStructure<K, PARENT, CHILD> implements KeyedChild
     public K getParentKey() {
         return parentKey;
     }
+
+    /**
+     * Gets the key this node is stored under in the children of the attached parent.
+     * @return the key used by the parent or null if there is no parent
+     */
+    public K getChildKey() {
+        return childKey;
+    }
+
+    /**
+     * Gets the amount of bidirectional ancestors this node has.
+     * @return the depth of this node
+     * @see Ancestry#depth(Object)
+     */
+    public int getDepth() {
+        return Ancestry.depth(this);
+    }
+
+    /**
+     * Checks if this node is an ancestor (parent, grandparent, ...) of another node.
+     * @param node the node
+     * @return if this node is above node
+     * @see Ancestry#isAncestor(Object, Object)
+     */
+    public boolean isAncestorOf(Object node) {
+        return Ancestry.isAncestor(this, node);
+    }
+
+    /**
+     * Finds the deepest node that is an ancestor of (or the same as) both this node and another node.
+     * @param node the other node
+     * @return the lowest common ancestor or null if the nodes are in different trees
+     * @see Ancestry#lowestCommonAncestor(Object, Object)
+     */
+    public Object lowestCommonAncestor(Object node) {
+        return Ancestry.lowestCommonAncestor(this, node);
+    }
+
+    /**
+     * Gets the amount of nodes in the subtree of this node (including this node). The first call walks the subtree, after that the size is kept up to date as children are attached and detached.
+     * @return the size of the subtree
+     * @see SubtreeMetrics#subtreeSize(Object)
+     */
+    public int getSubtreeSize() {
+        return SubtreeMetrics.subtreeSize(this);
+    }
+
+    /**
+     * Gets the amount of links on the longest path from this node down to a leaf. The first call walks the subtree, after that the height is kept up to date as children are attached and detached.
+     * @return the height of this node
+     * @see SubtreeMetrics#height(Object)
+     */
+    public int getHeight() {
+        return SubtreeMetrics.height(this);
+    }
+
+    /**
+     * Takes an immutable snapshot of the subtree of this node in constant time. Every node in the subtree has to store its children with {@link ChildStorage#versioned()} and have its children loaded (see {@link #attachChildrenLazily(Supplier)}), and the snapshot should be closed when it isn't needed anymore.
+     * @return the snapshot
+     * @see Snapshot
+     */
+    public Snapshot<KeyedBidirectionalStructure<K, PARENT, CHILD>> snapshot() {
+        return Snapshot.of(this);
+    }
 }
@@ -1,9 +1,11 @@
 package om.self.structure.bidirectional;
 
 import om.self.structure.Utils;
+import om.self.structure.check.KeyedCheckChain;
+import om.self.structure.storage.ChildStorage;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * An extension of {@link KeyedBidirectionalStructure} that adds the ability to run checks before attaching or detaching anything
@@ -13,9 +15,9 @@ import java.util.List;
  */
 public class KeyedBidirectionalStructureWithChecks<K, PARENT, CHILD> extends KeyedBidirectionalStructure<K, PARENT, CHILD> {
     //A list of all the checks that must be passed before a parent can be attached
-    private final List<Utils.KeyedCheck<K,PARENT>> parentChecks = new LinkedList<>();
+    private final KeyedCheckChain<K,PARENT> parentChecks = new KeyedCheckChain<>();
     //A list of all the checks that must be passed before a child can be attached
-    private final List<Utils.KeyedCheck<K,CHILD>> childChecks = new LinkedList<>();
+    private final KeyedCheckChain<K,CHILD> childChecks = new KeyedCheckChain<>();
 
     /**
      * Creates a keyed bidirectional node without a patent, children, or checks
@@ -23,6 +25,14 @@ public class KeyedBidirectionalStructureWithChecks<K, PARENT, CHILD> extends Key
     public KeyedBidirectionalStructureWithChecks() {
     }
 
+    /**
+     * Creates a keyed bidirectional node without a patent, children, or checks
+     * @param storage the storage used to create the map of children
+     */
+    public KeyedBidirectionalStructureWithChecks(ChildStorage storage) {
+        super(storage);
+    }
+
     /**
      * add a check to preform when the parent is edited
      * @param check the check to preform
@@ -31,11 +41,20 @@ public class KeyedBidirectionalStructureWithChecks<K, PARENT, CHILD> extends Key
         parentChecks.add(check);
     }
 
+    /**
+     * add a check to preform only when one action is performed
+     * @param check the check to preform
+     * @param action the only action the check will run for
+     */
+    public void addParentCheck(Utils.KeyedCheck<K,PARENT> check, Utils.Action action){
+        parentChecks.add(check, action);
+    }
+
     /**
      * get all parent checks
      * @return all parent checks
      */
-    public List<Utils.KeyedCheck<K,PARENT>> getParentChecks(){
+    public KeyedCheckChain<K,PARENT> getParentChecks(){
         return parentChecks;
     }
 
@@ -70,11 +89,20 @@ public class KeyedBidirectionalStructureWithChecks<K, PARENT, CHILD> extends Key
         childChecks.add(check);
     }
 
+    /**
+     * add a check to preform only when one action is performed
+     * @param check the check to preform
+     * @param action the only action the check will run for
+     */
+    public void addChildCheck(Utils.KeyedCheck<K,CHILD> check, Utils.Action action){
+        childChecks.add(check, action);
+    }
+
     /**
      * get all child checks
      * @return all child checks
      */
-    public List<Utils.KeyedCheck<K,CHILD>> getChildChecks(){
+    public KeyedCheckChain<K,CHILD> getChildChecks(){
         return childChecks;
     }
 
@@ -102,63 +130,84 @@ public class KeyedBidirectionalStructureWithChecks<K, PARENT, CHILD> extends Key
     }
 
     /**
-     * Makes sure all {@link KeyedBidirectionalStructureWithChecks#childChecks} pass before attaching the child using {@link KeyedBidirectionalStructure#attachChild(Object, Object)}.
+     * Makes sure all {@link KeyedBidirectionalStructureWithChecks#childChecks} pass before attaching the child using {@link KeyedBidirectionalStructure#tryAttachChild(Object, Object, Object)}.
      * @param child The child being attached
      * @param customParentKey if not null, it will try to use this parameter as the key for attaching this object as the parent to the child else it will just use the key parameter
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryAttachChild(Object, Object, Object)}
+     */
+    @Override
+    public LinkResult tryAttachChild(K key, CHILD child, K customParentKey){
+        if(!childChecks.test(key, child, Utils.Action.ATTACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryAttachChild(key, child, customParentKey);
+    }
+
+    /**
+     * Runs the child checks on all children as one batch (see {@link KeyedCheckChain#testAll(Map, Utils.Action)}) then attaches the children that passed using {@link KeyedBidirectionalStructure#attachChildren(Map)}.
+     * @param children the children being attached
      */
     @Override
-    public void attachChild(K key, CHILD child, K customParentKey){
-        for(Utils.KeyedCheck<K,CHILD> check : childChecks)
-            if(!check.apply(key, child, Utils.Action.ATTACH)) return;
+    public void attachChildren(Map<K, CHILD> children) {
+        Map<K, CHILD> batch = new LinkedHashMap<>(children);
+        childChecks.testAll(batch, Utils.Action.ATTACH);
 
-        super.attachChild(key, child, customParentKey);
+        super.attachChildren(batch);
     }
 
     /**
      * If the child is already attached, it detached the child then detaches itself as a parent from the child if it's the right type.
      *
      * @param key The key of the child being detached
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryDetachChild(Object)}
      */
     @Override
-    public void detachChild(K key) {
-        if(!isChildKeyAttached(key)) return;
+    public LinkResult tryDetachChild(K key) {
+        if(!isChildKeyAttached(key)) return LinkResult.NOT_PRESENT;
 
         CHILD c = getChild(key);
-        for(Utils.KeyedCheck<K,CHILD> check : childChecks)
-            if(!check.apply(key, c, Utils.Action.DETACH)) return;
+        if(!childChecks.test(key, c, Utils.Action.DETACH)) return LinkResult.VETOED_BY_CHECK;
 
-        super.detachChild(key);
+        return super.tryDetachChild(key);
     }
 
     /**
-     * Makes sure all {@link KeyedBidirectionalStructureWithChecks#parentChecks} pass before attaching the parent using {@link KeyedBidirectionalStructure#attachParent(Object, Object, Object)}
+     * Runs the detach child checks on all children as one batch (see {@link KeyedCheckChain#testAll(Map, Utils.Action)}) then detaches the children that passed in one step using {@link KeyedBidirectionalStructure#detachAll(Map)}.
+     */
+    @Override
+    public void detachChildren() {
+        Map<K, CHILD> batch = new LinkedHashMap<>(getChildrenAndKeys());
+        childChecks.testAll(batch, Utils.Action.DETACH);
+
+        detachAll(batch);
+    }
+
+    /**
+     * Makes sure all {@link KeyedBidirectionalStructureWithChecks#parentChecks} pass before attaching the parent using {@link KeyedBidirectionalStructure#tryAttachParent(Object, Object, Object)}
      * @param key the key associated with the parent
      * @param parent the parent being attached
      * @param customChildKey if not null, it will try to use this parameter as the key for attaching this object as the child to the parent else it will just use the key parameter
-     *
-     * @implNote if you use a customChildKey, you will need to pass in the same key when detaching the parent in order to detach this object from the parents children
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryAttachParent(Object, Object, Object)}
      */
     @Override
-    public void attachParent(K key, PARENT parent, K customChildKey) {
-        for(Utils.KeyedCheck<K,PARENT> check : parentChecks)
-            if(!check.apply(key, parent, Utils.Action.ATTACH)) return;
+    public LinkResult tryAttachParent(K key, PARENT parent, K customChildKey) {
+        if(!parentChecks.test(key, parent, Utils.Action.ATTACH)) return LinkResult.VETOED_BY_CHECK;
 
-        super.attachParent(key, parent, customChildKey);
+        return super.tryAttachParent(key, parent, customChildKey);
     }
 
     /**
      * Check to make sure all parent checks are good them detaches the parent then detaches itself from the parent if it is the right type.
-     * @param customChildName if not null, it will try to use this parameter to detach this object as a child from the parent else it will just use the parentKey variable
+     * @param customChildName if not null, it will try to use this parameter to detach this object as a child from the parent else it will just use the key this node was attached with
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryDetachParent(Object)}
      */
     @Override
-    public void detachParent(K customChildName) {
-        if(!isParentAttached()) return;
+    public LinkResult tryDetachParent(K customChildName) {
+        if(!isParentAttached()) return LinkResult.NOT_PRESENT;
 
         K k = getParentKey();
         PARENT p = getParent();
-        for(Utils.KeyedCheck<K,PARENT> check : parentChecks)
-            if(!check.apply(k, p, Utils.Action.DETACH)) return;
+        if(!parentChecks.test(k, p, Utils.Action.DETACH)) return LinkResult.VETOED_BY_CHECK;
 
-        super.detachParent(customChildName);
+        return super.tryDetachParent(customChildName);
     }
 }
@@ -0,0 +1,164 @@
+package om.self.structure.bidirectional;
+
+import om.self.structure.child.ChildContainer;
+import om.self.structure.child.ChildStructure;
+import om.self.structure.child.KeyedChildStructure;
+import om.self.structure.parent.KeyedParentStructure;
+import om.self.structure.parent.ParentContainer;
+import om.self.structure.parent.ParentStructure;
+
+/**
+ * How the other side of a link is told to follow a change, resolved once per class (see {@link #of(Object)}) instead of testing every peer against each structure interface.
+ * <br>
+ * Bidirectional nodes are called directly through their try methods so their {@link LinkResult} is passed back. Other structures are called through their interfaces (ignoring any exception they throw) and the result is read back from them, and anything else can't store a link.
+ */
+enum LinkProtocol {
+    KEYED_BIDIRECTIONAL,
+    BIDIRECTIONAL,
+    STRUCTURE,
+    NONE;
+
+    private static final ClassValue<LinkProtocol> PROTOCOLS = new ClassValue<>() {
+        @Override
+        protected LinkProtocol computeValue(Class<?> type) {
+            if(KeyedBidirectionalStructure.class.isAssignableFrom(type)) return KEYED_BIDIRECTIONAL;
+            if(BidirectionalStructure.class.isAssignableFrom(type)) return BIDIRECTIONAL;
+            if(ParentContainer.class.isAssignableFrom(type) || ChildContainer.class.isAssignableFrom(type)) return STRUCTURE;
+            return NONE;
+        }
+    };
+
+    /**
+     * Gets the protocol of a node.
+     * @param node the node (can be null)
+     * @return the protocol of the class of the node
+     */
+    static LinkProtocol of(Object node){
+        return node == null ? NONE : PROTOCOLS.get(node.getClass());
+    }
+
+    /**
+     * Makes a node that was just stored as a child attach the parent that stored it.
+     * @param node the child
+     * @param parent the parent that stored the child
+     * @param parentKey the key the child should use for the parent (null if the parent isn't keyed)
+     * @param childKey the key the child is stored under (null if the parent isn't keyed)
+     * @return {@link LinkResult#ATTACHED} if the child has the parent now (or can't have one), else {@link LinkResult#PEER_FAILED}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LinkResult attachParent(Object node, Object parent, Object parentKey, Object childKey){
+        return switch (this) {
+            case KEYED_BIDIRECTIONAL -> parentKey == null
+                    ? LinkResult.ATTACHED
+                    : ((KeyedBidirectionalStructure) node).tryAttachParent(parentKey, parent, childKey).asPeer(LinkResult.ATTACHED);
+            case BIDIRECTIONAL -> ((BidirectionalStructure) node).tryAttachParent(parent).asPeer(LinkResult.ATTACHED);
+            case STRUCTURE -> {
+                try{
+                    if(parentKey != null && node instanceof KeyedParentStructure structure) structure.attachParent(parentKey, parent);
+                    else if(node instanceof ParentStructure structure) structure.attachParent(parent);
+                    else yield LinkResult.ATTACHED;
+                } catch(Exception e){}
+                yield ((ParentContainer<?>) node).getParent() == parent ? LinkResult.ATTACHED : LinkResult.PEER_FAILED;
+            }
+            case NONE -> LinkResult.ATTACHED;
+        };
+    }
+
+    /**
+     * Makes a node that was just attached as a parent store the child that attached it.
+     * @param node the parent
+     * @param child the child that attached the parent
+     * @param childKey the key the parent should store the child under (null if the child isn't keyed)
+     * @param parentKey the key the child uses for the parent (null if the child isn't keyed)
+     * @return {@link LinkResult#ATTACHED} if the parent stores the child now (or can't store it), else {@link LinkResult#PEER_FAILED}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LinkResult attachChild(Object node, Object child, Object childKey, Object parentKey){
+        return switch (this) {
+            case KEYED_BIDIRECTIONAL -> childKey == null
+                    ? LinkResult.ATTACHED
+                    : ((KeyedBidirectionalStructure) node).tryAttachChild(childKey, child, parentKey).asPeer(LinkResult.ATTACHED);
+            case BIDIRECTIONAL -> ((BidirectionalStructure) node).tryAttachChild(child).asPeer(LinkResult.ATTACHED);
+            case STRUCTURE -> {
+                if(childKey != null && node instanceof KeyedChildStructure structure) {
+                    try{
+                        structure.attachChild(childKey, child);
+                    } catch(Exception e){}
+                    yield structure.getChild(childKey) == child ? LinkResult.ATTACHED : LinkResult.PEER_FAILED;
+                }
+                if(node instanceof ChildStructure structure) {
+                    try{
+                        structure.attachChild(child);
+                    } catch(Exception e){}
+                    yield structure.isChildAttached(child) ? LinkResult.ATTACHED : LinkResult.PEER_FAILED;
+                }
+                yield LinkResult.ATTACHED;
+            }
+            case NONE -> LinkResult.ATTACHED;
+        };
+    }
+
+    /**
+     * Makes a node that was just removed from the children of a parent detach that parent (if it is still the parent of the node).
+     * @param node the child
+     * @param parent the parent that removed the child
+     * @return {@link LinkResult#DETACHED} if the child doesn't have the parent anymore, else {@link LinkResult#PEER_FAILED}
+     */
+    LinkResult detachParent(Object node, Object parent){
+        return switch (this) {
+            case KEYED_BIDIRECTIONAL -> {
+                KeyedBidirectionalStructure<?, ?, ?> structure = (KeyedBidirectionalStructure<?, ?, ?>) node;
+                yield structure.getParent() != parent ? LinkResult.DETACHED : structure.tryDetachParent(null).asPeer(LinkResult.DETACHED);
+            }
+            case BIDIRECTIONAL -> {
+                BidirectionalStructure<?, ?> structure = (BidirectionalStructure<?, ?>) node;
+                yield structure.getParent() != parent ? LinkResult.DETACHED : structure.tryDetachParent().asPeer(LinkResult.DETACHED);
+            }
+            case STRUCTURE -> {
+                if(node instanceof ParentContainer<?> container && container.getParent() == parent) {
+                    container.detachParent();
+                    if(container.getParent() == parent) yield LinkResult.PEER_FAILED;
+                }
+                yield LinkResult.DETACHED;
+            }
+            case NONE -> LinkResult.DETACHED;
+        };
+    }
+
+    /**
+     * Makes a node that was just detached as a parent remove the child that detached it (if it still stores the child).
+     * @param node the parent
+     * @param child the child that detached the parent
+     * @param childKey the key the child was stored under (null if the child isn't keyed)
+     * @return {@link LinkResult#DETACHED} if the parent doesn't store the child anymore, else {@link LinkResult#PEER_FAILED}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LinkResult detachChild(Object node, Object child, Object childKey){
+        return switch (this) {
+            case KEYED_BIDIRECTIONAL -> {
+                KeyedBidirectionalStructure structure = (KeyedBidirectionalStructure) node;
+                yield childKey == null || structure.getChild(childKey) != child
+                        ? LinkResult.DETACHED
+                        : structure.tryDetachChild(childKey).asPeer(LinkResult.DETACHED);
+            }
+            case BIDIRECTIONAL -> ((BidirectionalStructure) node).tryDetachChild(child).asPeer(LinkResult.DETACHED);
+            case STRUCTURE -> {
+                if(childKey != null && node instanceof KeyedChildStructure structure) {
+                    if(structure.getChild(childKey) != child) yield LinkResult.DETACHED;
+                    try{
+                        structure.detachChild(childKey);
+                    } catch(Exception e){}
+                    yield structure.getChild(childKey) == child ? LinkResult.PEER_FAILED : LinkResult.DETACHED;
+                }
+                if(node instanceof ChildStructure structure && structure.isChildAttached(child)) {
+                    try{
+                        structure.detachChild(child);
+                    } catch(Exception e){}
+                    if(structure.isChildAttached(child)) yield LinkResult.PEER_FAILED;
+                }
+                yield LinkResult.DETACHED;
+            }
+            case NONE -> LinkResult.DETACHED;
+        };
+    }
+}
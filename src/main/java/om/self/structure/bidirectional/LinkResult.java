@@ -0,0 +1,62 @@
+package om.self.structure.bidirectional;
+
+/**
+ * What happened when a bidirectional node tried to attach or detach a child or parent (returned by methods like {@link BidirectionalStructure#tryAttachChild(Object)} and {@link KeyedBidirectionalStructure#tryDetachParent(Object)}).
+ * <br>
+ * The result of the other side of the link is passed back through the handshake, so a single call tells you if both sides of the link changed without checking {@link om.self.structure.child.KeyedChildStructure#isChildKeyAttached(Object)} or {@link om.self.structure.parent.ParentContainer#getParent()} afterwards.
+ */
+public enum LinkResult {
+    /**
+     * The link was added on both sides (or the other side doesn't store links)
+     */
+    ATTACHED,
+    /**
+     * The link was removed from both sides (or the other side doesn't store links)
+     */
+    DETACHED,
+    /**
+     * Nothing happened because the link already exists
+     */
+    ALREADY_PRESENT,
+    /**
+     * Nothing happened because there was no link to remove
+     */
+    NOT_PRESENT,
+    /**
+     * Nothing happened because a check failed
+     */
+    VETOED_BY_CHECK,
+    /**
+     * Nothing happened because the link would make a node its own ancestor
+     */
+    WOULD_CYCLE,
+    /**
+     * This side changed but the other side didn't follow (because of a check or an exception), so the link is only stored on one side
+     */
+    PEER_FAILED;
+
+    /**
+     * Checks if the link ended up how it was asked for (the link changed on both sides or didn't need to change).
+     * @return if this is {@link #ATTACHED}, {@link #DETACHED}, {@link #ALREADY_PRESENT} or {@link #NOT_PRESENT}
+     */
+    public boolean isSuccess(){
+        return ordinal() <= NOT_PRESENT.ordinal();
+    }
+
+    /**
+     * Checks if this side of the link changed.
+     * @return if this is {@link #ATTACHED}, {@link #DETACHED} or {@link #PEER_FAILED}
+     */
+    public boolean isChanged(){
+        return this == ATTACHED || this == DETACHED || this == PEER_FAILED;
+    }
+
+    /**
+     * Turns the result of the other side of a link into the result of this side.
+     * @param done the result of this side if the other side succeeded
+     * @return done if this result is a success, else {@link #PEER_FAILED}
+     */
+    LinkResult asPeer(LinkResult done){
+        return isSuccess() ? done : PEER_FAILED;
+    }
+}
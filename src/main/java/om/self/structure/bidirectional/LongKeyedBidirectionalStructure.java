@@ -0,0 +1,127 @@
+package om.self.structure.bidirectional;
+
+import om.self.structure.Utils;
+import om.self.structure.storage.ChildStorage;
+import om.self.structure.storage.LongObjectMap;
+
+import java.util.Map;
+
+/**
+ * A {@link KeyedBidirectionalStructure} for primitive long keys. Children are stored in a {@link LongObjectMap} so entries don't need boxed keys or map nodes, and lookups through {@link #getChild(long)}, {@link #isChildKeyAttached(long)} and {@link #detachChild(long)} (when the key is not attached) never box the key.
+ * <br>
+ * Attaching or detaching with a long key runs {@link #testChild(long, Object, Utils.Action)} with the primitive key first, and the key is only boxed once the child is actually attached or detached because it has to be passed to the child (as its parent key) and to the callbacks. This structure is not thread safe.
+ * @param <PARENT> The type of the parent
+ * @param <CHILD> The type of the child
+ */
+public class LongKeyedBidirectionalStructure<PARENT, CHILD> extends KeyedBidirectionalStructure<Long, PARENT, CHILD> {
+    /**
+     * Creates the {@link LongObjectMap} used to store children.
+     */
+    private static final ChildStorage LONG_KEYS = new ChildStorage() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return (Map<K, V>) (Map<?, ?>) new LongObjectMap<V>(expectedSize);
+        }
+    };
+
+    /**
+     * Creates a keyed bidirectional node without a parent or children
+     */
+    public LongKeyedBidirectionalStructure() {
+        super(LONG_KEYS);
+    }
+
+    /**
+     * Gets the {@link LongObjectMap} storing the children after loading the children attached with {@link #attachChildrenLazily(java.util.function.Supplier)}.
+     * @return the storage of the children
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected LongObjectMap<CHILD> children() {
+        return (LongObjectMap<CHILD>) super.children();
+    }
+
+    /**
+     * If the child is not already attached, it attaches the child then attaches itself as a parent to the child using the key parameter as the key if it's the right type.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @see #tryAttachChild(long, Object)
+     */
+    public void attachChild(long key, CHILD child){
+        tryAttachChild(key, child);
+    }
+
+    /**
+     * Attaches a child like {@link #attachChild(long, Object)} and reports what happened. {@link #testChild(long, Object, Utils.Action)} runs before the key is boxed.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @return {@link LinkResult#VETOED_BY_CHECK} if the test failed, else the result of {@link KeyedBidirectionalStructure#tryAttachChild(Object, Object, Object)}
+     */
+    public LinkResult tryAttachChild(long key, CHILD child){
+        if(children().get(key) == child) return LinkResult.ALREADY_PRESENT;
+        if(!testChild(key, child, Utils.Action.ATTACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryAttachChild(Long.valueOf(key), child, null);
+    }
+
+    /**
+     * If the child is already attached, it detached the child then detaches itself as a parent from the child if it's the right type.
+     * @param key the key of the child being detached
+     * @see #tryDetachChild(long)
+     */
+    public void detachChild(long key){
+        tryDetachChild(key);
+    }
+
+    /**
+     * Detaches a child like {@link #detachChild(long)} and reports what happened. {@link #testChild(long, Object, Utils.Action)} runs before the key is boxed.
+     * @param key the key of the child being detached
+     * @return {@link LinkResult#VETOED_BY_CHECK} if the test failed, else the result of {@link KeyedBidirectionalStructure#tryDetachChild(Object)}
+     */
+    public LinkResult tryDetachChild(long key){
+        CHILD child = children().get(key);
+        if(child == null) return LinkResult.NOT_PRESENT;
+        if(!testChild(key, child, Utils.Action.DETACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryDetachChild(Long.valueOf(key));
+    }
+
+    /**
+     * Tests a child with its primitive key before it is attached or detached. By default, everything passes.
+     * @param key the key of the child
+     * @param child the child
+     * @param action the action being performed
+     * @return true if the child can be attached or detached
+     */
+    protected boolean testChild(long key, CHILD child, Utils.Action action){
+        return true;
+    }
+
+    /**
+     * Gets a child associated with a specific key
+     * @param key the key of the child
+     * @return will return the child or null if the key is not found
+     */
+    public CHILD getChild(long key){
+        return children().get(key);
+    }
+
+    /**
+     * Checks whether a child is attached based on the key
+     * @param key the key of the child you want to check
+     * @return if the child is attached
+     */
+    public boolean isChildKeyAttached(long key){
+        return children().containsKey(key);
+    }
+
+    /**
+     * Gets the attached children along with their keys.
+     * @return The children and their keys
+     */
+    @Override
+    public LongObjectMap<CHILD> getChildrenAndKeys() {
+        return children();
+    }
+}
@@ -0,0 +1,217 @@
+package om.self.structure.bidirectional;
+
+import om.self.structure.Utils;
+import om.self.structure.check.LongKeyedCheckChain;
+import om.self.structure.storage.LongObjectMap;
+
+import java.util.Map;
+
+/**
+ * An extension of {@link LongKeyedBidirectionalStructure} that adds the ability to run checks before attaching or detaching anything. The checks get the primitive key so running them doesn't box the key.
+ * @param <PARENT> the type of the parent
+ * @param <CHILD> the type of the child
+ */
+public class LongKeyedBidirectionalStructureWithChecks<PARENT, CHILD> extends LongKeyedBidirectionalStructure<PARENT, CHILD> {
+    //A list of all the checks that must be passed before a parent can be attached
+    private final LongKeyedCheckChain<PARENT> parentChecks = new LongKeyedCheckChain<>();
+    //A list of all the checks that must be passed before a child can be attached
+    private final LongKeyedCheckChain<CHILD> childChecks = new LongKeyedCheckChain<>();
+
+    /**
+     * Creates a keyed bidirectional node without a patent, children, or checks
+     */
+    public LongKeyedBidirectionalStructureWithChecks() {
+    }
+
+    /**
+     * add a check to preform when the parent is edited
+     * @param check the check to preform
+     */
+    public void addParentCheck(Utils.LongKeyedCheck<PARENT> check){
+        parentChecks.add(check);
+    }
+
+    /**
+     * add a check to preform only when one action is performed
+     * @param check the check to preform
+     * @param action the only action the check will run for
+     */
+    public void addParentCheck(Utils.LongKeyedCheck<PARENT> check, Utils.Action action){
+        parentChecks.add(check, action);
+    }
+
+    /**
+     * get all parent checks
+     * @return all parent checks
+     */
+    public LongKeyedCheckChain<PARENT> getParentChecks(){
+        return parentChecks;
+    }
+
+    /**
+     * remove a parent check
+     * @param check the check to remove
+     */
+    public void removeParentCheck(Utils.LongKeyedCheck<PARENT> check){
+        parentChecks.remove(check);
+    }
+
+    /**
+     * remove a parent check
+     * @param index the index of the check to remove
+     */
+    public void removeParentCheck(int index){
+        parentChecks.remove(index);
+    }
+
+    /**
+     * remove all parent checks
+     */
+    public void clearParentChecks(){
+        parentChecks.clear();
+    }
+
+    /**
+     * add a check to preform when the children are edited
+     * @param check the check to preform
+     */
+    public void addChildCheck(Utils.LongKeyedCheck<CHILD> check){
+        childChecks.add(check);
+    }
+
+    /**
+     * add a check to preform only when one action is performed
+     * @param check the check to preform
+     * @param action the only action the check will run for
+     */
+    public void addChildCheck(Utils.LongKeyedCheck<CHILD> check, Utils.Action action){
+        childChecks.add(check, action);
+    }
+
+    /**
+     * get all child checks
+     * @return all child checks
+     */
+    public LongKeyedCheckChain<CHILD> getChildChecks(){
+        return childChecks;
+    }
+
+    /**
+     * remove a child check
+     * @param check the check to remove
+     */
+    public void removeChildCheck(Utils.LongKeyedCheck<CHILD> check){
+        childChecks.remove(check);
+    }
+
+    /**
+     * remove a child check
+     * @param index the index of the check to remove
+     */
+    public void removeChildCheck(int index){
+        childChecks.remove(index);
+    }
+
+    /**
+     * remove all child checks
+     */
+    public void clearChildChecks(){
+        childChecks.clear();
+    }
+
+    /**
+     * Runs the {@link LongKeyedBidirectionalStructureWithChecks#childChecks} with the primitive key.
+     * @param key the key of the child
+     * @param child the child
+     * @param action the action being performed
+     * @return true if all child checks pass
+     */
+    @Override
+    protected boolean testChild(long key, CHILD child, Utils.Action action) {
+        return childChecks.test(key, child, action);
+    }
+
+    /**
+     * Makes sure all {@link LongKeyedBidirectionalStructureWithChecks#childChecks} pass before attaching the child using {@link KeyedBidirectionalStructure#tryAttachChild(Object, Object, Object)}.
+     * @param key the key associated with the child
+     * @param child The child being attached
+     * @param customParentKey if not null, it will try to use this parameter as the key for attaching this object as the parent to the child else it will just use the key parameter
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryAttachChild(Object, Object, Object)}
+     */
+    @Override
+    public LinkResult tryAttachChild(Long key, CHILD child, Long customParentKey){
+        if(key != null && !testChild(key, child, Utils.Action.ATTACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryAttachChild(key, child, customParentKey);
+    }
+
+    /**
+     * Runs the child checks on all children as one batch (see {@link LongKeyedCheckChain#testAll(LongObjectMap, Utils.Action)}) then attaches the children that passed using {@link KeyedBidirectionalStructure#attachChildren(Map)}.
+     * @param children the children being attached
+     */
+    @Override
+    public void attachChildren(Map<Long, CHILD> children) {
+        LongObjectMap<CHILD> batch = new LongObjectMap<>(children.size());
+        for (Map.Entry<Long, CHILD> entry : children.entrySet()) {
+            if(entry.getKey() == null) throw new IllegalArgumentException("the key argument can not be null!");
+            batch.put(entry.getKey().longValue(), entry.getValue());
+        }
+        childChecks.testAll(batch, Utils.Action.ATTACH);
+
+        super.attachChildren(batch);
+    }
+
+    /**
+     * If the child is already attached and all {@link LongKeyedBidirectionalStructureWithChecks#childChecks} pass, it detached the child then detaches itself as a parent from the child if it's the right type.
+     *
+     * @param key The key of the child being detached
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryDetachChild(Object)}
+     */
+    @Override
+    public LinkResult tryDetachChild(Long key) {
+        CHILD c = key == null ? null : getChild(key.longValue());
+        if(c == null) return LinkResult.NOT_PRESENT;
+        if(!testChild(key, c, Utils.Action.DETACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryDetachChild(key);
+    }
+
+    /**
+     * Runs the detach child checks on all children as one batch (see {@link LongKeyedCheckChain#testAll(LongObjectMap, Utils.Action)}) then detaches the children that passed in one step using {@link KeyedBidirectionalStructure#detachAll(Map)}.
+     */
+    @Override
+    public void detachChildren() {
+        LongObjectMap<CHILD> batch = getChildrenAndKeys().copy();
+        childChecks.testAll(batch, Utils.Action.DETACH);
+
+        detachAll(batch);
+    }
+
+    /**
+     * Makes sure all {@link LongKeyedBidirectionalStructureWithChecks#parentChecks} pass before attaching the parent using {@link KeyedBidirectionalStructure#tryAttachParent(Object, Object, Object)}
+     * @param key the key associated with the parent
+     * @param parent the parent being attached
+     * @param customChildKey if not null, it will try to use this parameter as the key for attaching this object as the child to the parent else it will just use the key parameter
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryAttachParent(Object, Object, Object)}
+     */
+    @Override
+    public LinkResult tryAttachParent(Long key, PARENT parent, Long customChildKey) {
+        if(key != null && !parentChecks.test(key, parent, Utils.Action.ATTACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryAttachParent(key, parent, customChildKey);
+    }
+
+    /**
+     * Check to make sure all parent checks are good them detaches the parent then detaches itself from the parent if it is the right type.
+     * @param customChildName if not null, it will try to use this parameter to detach this object as a child from the parent else it will just use the key this node was attached with
+     * @return {@link LinkResult#VETOED_BY_CHECK} if a check failed, else the result of {@link KeyedBidirectionalStructure#tryDetachParent(Object)}
+     */
+    @Override
+    public LinkResult tryDetachParent(Long customChildName) {
+        if(!isParentAttached()) return LinkResult.NOT_PRESENT;
+
+        if(!parentChecks.test(getParentKey(), getParent(), Utils.Action.DETACH)) return LinkResult.VETOED_BY_CHECK;
+
+        return super.tryDetachParent(customChildName);
+    }
+}
@@ -0,0 +1,31 @@
+package om.self.structure.bidirectional;
+
+/**
+ * Told about every change to the children of the {@link KeyedBidirectionalStructure} nodes in a tree (see {@link KeyedBidirectionalStructure#setListener(StructureListener)}). Each method is called right after the children of the parent changed and before the child is linked or unlinked, so changes made while linking (ex: by callbacks) are reported after the change that caused them. Changes that were vetoed by a check are not reported.
+ * @param <K> the type of the keys
+ */
+public interface StructureListener<K> {
+    /**
+     * Called after a child was attached (this includes children that were moved from another parent).
+     * @param parent the node the child was attached to
+     * @param key the key of the child
+     * @param child the child
+     */
+    void childAttached(KeyedBidirectionalStructure<K, ?, ?> parent, K key, Object child);
+
+    /**
+     * Called after a child was detached.
+     * @param parent the node the child was detached from
+     * @param key the key the child had
+     * @param child the child
+     */
+    void childDetached(KeyedBidirectionalStructure<K, ?, ?> parent, K key, Object child);
+
+    /**
+     * Called after a child was moved to a new key without detaching it (see {@link KeyedBidirectionalStructure#renameChild(Object, Object, boolean)}).
+     * @param parent the parent of the child
+     * @param oldKey the key the child had
+     * @param newKey the key the child has now
+     */
+    void childRenamed(KeyedBidirectionalStructure<K, ?, ?> parent, K oldKey, K newKey);
+}
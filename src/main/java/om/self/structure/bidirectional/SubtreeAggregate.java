@@ -0,0 +1,145 @@
+package om.self.structure.bidirectional;
+
+import om.self.structure.child.ChildContainer;
+import om.self.structure.parent.ParentContainer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * A user defined value computed over the descendants of {@link BidirectionalStructure} and {@link KeyedBidirectionalStructure} nodes (for example the total size of all files under a folder) that is cached per node.
+ * <br>
+ * The value of a node combines the mapped value of every descendant (not the node itself). Reading the value of a node only computes the nodes in its subtree that aren't cached. When a child is attached to or detached from a node, the cached values of that node and its ancestors are dropped, stopping at the first ancestor that isn't cached (its ancestors can't be cached either), so the next read only recomputes the path that changed. If the mapped value of a node changes without the structure changing, call {@link #invalidate(Object)}.
+ * <br>
+ * Like {@link SubtreeMetrics}, changes travel up through parents that also store the node as a child.
+ * <br>
+ * Each aggregate takes a slot in every node it is computed on, so aggregates should be created once and reused.
+ * @param <T> the type of the nodes
+ * @param <R> the type of the value
+ */
+public final class SubtreeAggregate<T, R> {
+    private static final AtomicInteger SLOTS = new AtomicInteger();
+    /**
+     * Stored in place of null values so null can mean "not cached".
+     */
+    private static final Object NULL = new Object();
+
+    private final int slot = SLOTS.getAndIncrement();
+    private final R identity;
+    private final Function<? super T, ? extends R> mapper;
+    private final BinaryOperator<R> combiner;
+
+    /**
+     * Creates an aggregate.
+     * @param identity the value of a node without descendants
+     * @param mapper maps a descendant to its own value
+     * @param combiner combines two values (must be associative)
+     */
+    public SubtreeAggregate(R identity, Function<? super T, ? extends R> mapper, BinaryOperator<R> combiner) {
+        this.identity = identity;
+        this.mapper = mapper;
+        this.combiner = combiner;
+    }
+
+    /**
+     * Gets the value of a node, computing the parts of its subtree that aren't cached.
+     * @param node the node
+     * @return the combined values of all descendants of node (the identity if node isn't a bidirectional structure)
+     */
+    @SuppressWarnings("unchecked")
+    public R valueOf(Object node){
+        if(!isNode(node)) return identity;
+
+        Object value = cached(node);
+        if(value == null) {
+            compute(node);
+            value = cached(node);
+        }
+        return value == NULL ? null : (R) value;
+    }
+
+    /**
+     * Drops the cached values that depend on the mapped value of a node. Call this when something used by the mapper changes.
+     * @param node the node whose own value changed (if it isn't a bidirectional structure, the values of its parent and up are dropped)
+     */
+    public void invalidate(Object node){
+        Object current = node instanceof ParentContainer<?> container ? container.getParent() : null;
+        while (isNode(current) && cached(current) != null) {
+            store(current, null);
+            current = Ancestry.linkedParent(current);
+        }
+    }
+
+    /**
+     * Drops all cached aggregate values of a node and its ancestors after its children changed.
+     * @param node the node whose children changed
+     */
+    static void childrenChanged(Object node){
+        for (Object current = node; current != null && slotsOf(current) != null; current = Ancestry.linkedParent(current))
+            setSlots(current, null);
+    }
+
+    /**
+     * Computes the value of every node in the subtree that isn't cached (children first, using an explicit stack).
+     */
+    @SuppressWarnings("unchecked")
+    private void compute(Object root){
+        ArrayDeque<Object> nodes = new ArrayDeque<>();
+        ArrayDeque<Iterator<?>> iterators = new ArrayDeque<>();
+        nodes.push(root);
+        iterators.push(((ChildContainer<?>) root).getChildren().iterator());
+        while (!nodes.isEmpty()) {
+            Iterator<?> children = iterators.peek();
+            if(children.hasNext()) {
+                Object child = children.next();
+                if(isNode(child) && cached(child) == null) {
+                    nodes.push(child);
+                    iterators.push(((ChildContainer<?>) child).getChildren().iterator());
+                }
+                continue;
+            }
+            iterators.pop();
+            Object node = nodes.pop();
+            R value = identity;
+            for (Object child : ((ChildContainer<?>) node).getChildren()) {
+                value = combiner.apply(value, mapper.apply((T) child));
+                if(isNode(child)) value = combiner.apply(value, valueOf(child));
+            }
+            store(node, value == null ? NULL : value);
+        }
+    }
+
+    private Object cached(Object node){
+        Object[] slots = slotsOf(node);
+        return slots != null && slot < slots.length ? slots[slot] : null;
+    }
+
+    private void store(Object node, Object value){
+        Object[] slots = slotsOf(node);
+        if(slots == null || slot >= slots.length) {
+            if(value == null) return;
+            slots = slots == null ? new Object[slot + 1] : Arrays.copyOf(slots, slot + 1);
+            setSlots(node, slots);
+        }
+        slots[slot] = value;
+    }
+
+    private static boolean isNode(Object node){
+        return node instanceof BidirectionalStructure<?,?> || node instanceof KeyedBidirectionalStructure<?,?,?>;
+    }
+
+    private static Object[] slotsOf(Object node){
+        if(node instanceof BidirectionalStructure<?,?> structure) return structure.aggregates;
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure) return structure.aggregates;
+        return null;
+    }
+
+    private static void setSlots(Object node, Object[] slots){
+        if(node instanceof BidirectionalStructure<?,?> structure) structure.aggregates = slots;
+        else ((KeyedBidirectionalStructure<?,?,?>) node).aggregates = slots;
+    }
+}
@@ -0,0 +1,210 @@
+package om.self.structure.bidirectional;
+
+import om.self.structure.child.ChildContainer;
+import om.self.structure.parent.ParentContainer;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Subtree size and height for trees of {@link BidirectionalStructure} and {@link KeyedBidirectionalStructure} nodes that don't need a traversal once they are tracked.
+ * <br>
+ * Nothing is tracked until a node is queried. The first query walks the subtree of that node once and from then on every node in it is tracked: when a child is attached or detached, the change is applied to the parent and then to each tracked ancestor (O(depth), and height updates stop as soon as an ancestor's height doesn't change). Children that aren't bidirectional structures count as leaves.
+ * <br>
+ * Changes travel up through {@link ParentContainer#getParent()} when the parent also stores the node, so a child that is stored by a parent it isn't attached to (because a check vetoed one side of the link) is not kept up to date in that parent.
+ * @see Ancestry#depth(Object)
+ */
+public final class SubtreeMetrics {
+    private SubtreeMetrics() {
+    }
+
+    /**
+     * Gets the amount of nodes in the subtree of a node (including the node).
+     * @param node the node
+     * @return the size of the subtree (1 for nodes that aren't bidirectional structures)
+     */
+    public static int subtreeSize(Object node){
+        track(node);
+        return sizeOf(node);
+    }
+
+    /**
+     * Gets the amount of links on the longest path from a node down to a leaf.
+     * @param node the node
+     * @return the height of the node (0 for leaves)
+     */
+    public static int height(Object node){
+        track(node);
+        return heightOf(node);
+    }
+
+    /**
+     * Updates the parent and its tracked ancestors after a child was added to the children of the parent.
+     * @param parent the parent
+     * @param child the child that was added
+     */
+    static void childAttached(Object parent, Object child){
+        if(sizeOf(parent) == 0) return;
+
+        track(child);
+        added(parent, sizeOf(child), heightOf(child) + 1);
+    }
+
+    /**
+     * Updates the parent and its tracked ancestors once after a batch of children was added to the children of the parent.
+     * @param parent the parent
+     * @param children the children that were added
+     */
+    static void childrenAttached(Object parent, Iterable<?> children){
+        if(sizeOf(parent) == 0) return;
+
+        int size = 0;
+        int height = 0;
+        for (Object child : children) {
+            track(child);
+            size += sizeOf(child);
+            height = Math.max(height, heightOf(child) + 1);
+        }
+        added(parent, size, height);
+    }
+
+    /**
+     * Adds a size to the parent and its tracked ancestors and raises their height if needed.
+     * @param height the height the parent has through the added children
+     */
+    private static void added(Object parent, int size, int height){
+        boolean updateHeight = true;
+        for (Object node = parent; node != null; node = trackedParent(node)) {
+            if(updateHeight && height > heightOf(node)) store(node, sizeOf(node) + size, height);
+            else {
+                updateHeight = false;
+                store(node, sizeOf(node) + size, heightOf(node));
+            }
+            height++;
+        }
+    }
+
+    /**
+     * Updates the parent and its tracked ancestors after a child was removed from the children of the parent.
+     * @param parent the parent
+     * @param child the child that was removed
+     */
+    static void childDetached(Object parent, Object child){
+        if(sizeOf(parent) == 0) return;
+
+        removed(parent, sizeOf(child));
+    }
+
+    /**
+     * Updates the parent and its tracked ancestors once after a batch of children was removed from the children of the parent.
+     * @param parent the parent
+     * @param children the children that were removed
+     */
+    static void childrenDetached(Object parent, Iterable<?> children){
+        if(sizeOf(parent) == 0) return;
+
+        int size = 0;
+        for (Object child : children)
+            size += sizeOf(child);
+        removed(parent, size);
+    }
+
+    /**
+     * Removes a size from the parent and its tracked ancestors and recomputes their height until it stops changing.
+     */
+    private static void removed(Object parent, int size){
+        boolean updateHeight = true;
+        for (Object node = parent; node != null; node = trackedParent(node)) {
+            int height = heightOf(node);
+            if(updateHeight) {
+                int newHeight = childHeight(node);
+                updateHeight = newHeight != height;
+                height = newHeight;
+            }
+            store(node, sizeOf(node) - size, height);
+        }
+    }
+
+    /**
+     * Stops tracking a node and its tracked ancestors because children were attached to the node that can't be counted yet (see {@link KeyedBidirectionalStructure#attachChildrenLazily(java.util.function.Supplier)}). The next query only walks the nodes that were untracked.
+     * @param node the node
+     */
+    static void untrack(Object node){
+        for (Object current = node; isNode(current) && sizeOf(current) != 0; current = Ancestry.linkedParent(current))
+            store(current, 0, 0);
+    }
+
+    /**
+     * Computes the metrics of every node in the subtree that isn't tracked yet (children first, using an explicit stack).
+     */
+    private static void track(Object root){
+        if(!isNode(root) || sizeOf(root) != 0) return;
+
+        ArrayDeque<Object> nodes = new ArrayDeque<>();
+        ArrayDeque<Iterator<?>> iterators = new ArrayDeque<>();
+        nodes.push(root);
+        iterators.push(((ChildContainer<?>) root).getChildren().iterator());
+        while (!nodes.isEmpty()) {
+            Iterator<?> children = iterators.peek();
+            if(children.hasNext()) {
+                Object child = children.next();
+                if(isNode(child) && sizeOf(child) == 0) {
+                    nodes.push(child);
+                    iterators.push(((ChildContainer<?>) child).getChildren().iterator());
+                }
+                continue;
+            }
+            iterators.pop();
+            Object node = nodes.pop();
+            int size = 1;
+            for (Object child : ((ChildContainer<?>) node).getChildren())
+                size += sizeOf(child);
+            store(node, size, childHeight(node));
+        }
+    }
+
+    private static int childHeight(Object node){
+        int height = 0;
+        for (Object child : ((ChildContainer<?>) node).getChildren())
+            height = Math.max(height, heightOf(child) + 1);
+        return height;
+    }
+
+    /**
+     * Gets the parent of a node if the parent is tracked and actually stores the node as a child.
+     */
+    private static Object trackedParent(Object node){
+        Object parent = Ancestry.linkedParent(node);
+        return parent != null && sizeOf(parent) != 0 ? parent : null;
+    }
+
+    private static boolean isNode(Object node){
+        return node instanceof BidirectionalStructure<?,?> || node instanceof KeyedBidirectionalStructure<?,?,?>;
+    }
+
+    /**
+     * Gets the tracked size of a node (0 if it isn't tracked and 1 if it isn't a bidirectional structure).
+     */
+    private static int sizeOf(Object node){
+        if(node instanceof BidirectionalStructure<?,?> structure) return structure.subtreeSize;
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure) return structure.subtreeSize;
+        return 1;
+    }
+
+    private static int heightOf(Object node){
+        if(node instanceof BidirectionalStructure<?,?> structure) return structure.height;
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure) return structure.height;
+        return 0;
+    }
+
+    private static void store(Object node, int size, int height){
+        if(node instanceof BidirectionalStructure<?,?> structure) {
+            structure.subtreeSize = size;
+            structure.height = height;
+        } else {
+            KeyedBidirectionalStructure<?,?,?> structure = (KeyedBidirectionalStructure<?,?,?>) node;
+            structure.subtreeSize = size;
+            structure.height = height;
+        }
+    }
+}
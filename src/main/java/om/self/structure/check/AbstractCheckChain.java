@@ -0,0 +1,433 @@
+package om.self.structure.check;
+
+import om.self.structure.Utils;
+
+import java.util.*;
+
+/**
+ * The base of {@link CheckChain} and {@link KeyedCheckChain}. It stores checks in registration order and keeps a compiled copy-on-write array of the checks for each {@link Utils.Action} so running the checks is just a loop over an array.
+ * <br>
+ * This is a {@link java.util.List} of the checks so it can still be edited like the lists that were used before (every edit recompiles the arrays).
+ * <br><br>
+ * The chain can optionally run in adaptive mode (see {@link #setAdaptive(boolean)}). In adaptive mode the chain counts how often each check rejects, samples how long each check takes and every {@link #REORDER_INTERVAL} runs it reorders the checks that were declared commutative so the checks that reject the most for the least time run first. Checks that are not commutative never move and commutative checks never move past them.
+ * @param <C> the type of the checks
+ */
+public abstract class AbstractCheckChain<C> extends AbstractList<C> {
+    /**
+     * In adaptive mode, one out of this many runs is timed.
+     */
+    public static final int SAMPLE_INTERVAL = 16;
+    /**
+     * In adaptive mode, the checks for an action are reordered every time they have run this many times.
+     */
+    public static final int REORDER_INTERVAL = 4096;
+
+    /**
+     * A shared empty compiled chain so chains without checks don't allocate.
+     */
+    private static final Compiled EMPTY = new Compiled(new Object[0], new Stats[0]);
+
+    /**
+     * All registered checks in registration order.
+     */
+    private Entry<C>[] entries = newEntries(0);
+    /**
+     * The checks that run when something is attached.
+     */
+    private volatile Compiled attachChecks = EMPTY;
+    /**
+     * The checks that run when something is detached.
+     */
+    private volatile Compiled detachChecks = EMPTY;
+
+    private volatile boolean adaptive;
+    //how many times the checks ran in adaptive mode (these are not atomic because they only need to be roughly right)
+    private int attachRuns;
+    private int detachRuns;
+
+    /**
+     * Runs a single check.
+     * @param check the check to run
+     * @param key the key being checked (null for checks without keys)
+     * @param value the value being checked
+     * @param action the action being performed
+     * @return true if the check passes
+     */
+    protected abstract boolean apply(C check, Object key, Object value, Utils.Action action);
+
+    /**
+     * Gets the compiled checks for an action. The returned array must not be modified.
+     * @param action the action being performed
+     * @return the checks that have to pass for the action
+     */
+    protected final Object[] checksFor(Utils.Action action){
+        return compiled(action).checks;
+    }
+
+    private Compiled compiled(Utils.Action action){
+        return action == Utils.Action.ATTACH ? attachChecks : detachChecks;
+    }
+
+    /**
+     * Runs every check for the action while recording statistics and reordering the checks when needed (used in adaptive mode).
+     * @param key the key being checked (null for checks without keys)
+     * @param value the value being checked
+     * @param action the action being performed
+     * @return true if all checks pass, false if one fails
+     */
+    @SuppressWarnings("unchecked")
+    protected final boolean testAdaptive(Object key, Object value, Utils.Action action){
+        Compiled compiled = compiled(action);
+        int runs = action == Utils.Action.ATTACH ? ++attachRuns : ++detachRuns;
+        boolean sample = runs % SAMPLE_INTERVAL == 0;
+        boolean passed = true;
+
+        for (int i = 0; i < compiled.checks.length && passed; i++) {
+            Stats stats = compiled.stats[i];
+            long start = sample ? System.nanoTime() : 0;
+            passed = apply((C) compiled.checks[i], key, value, action);
+            if(sample) {
+                stats.sampledNanos += System.nanoTime() - start;
+                stats.samples++;
+            }
+            stats.invocations++;
+            if(!passed) stats.rejections++;
+        }
+
+        if(runs % REORDER_INTERVAL == 0) reorder(action);
+        return passed;
+    }
+
+    /**
+     * Checks if the chain is in adaptive mode.
+     * @return if the chain is adaptive
+     */
+    public boolean isAdaptive(){
+        return adaptive;
+    }
+
+    /**
+     * Enables or disables adaptive mode. Disabling it restores registration order but keeps the collected statistics.
+     * @param adaptive whether the chain should be adaptive
+     */
+    public synchronized void setAdaptive(boolean adaptive){
+        this.adaptive = adaptive;
+        publish(entries);
+    }
+
+    /**
+     * Adds a check that only runs for one action.
+     * @param check the check being added
+     * @param action the only action the check will run for
+     */
+    public synchronized void add(C check, Utils.Action action){
+        add(check, action, false);
+    }
+
+    /**
+     * Adds a check.
+     * @param check the check being added
+     * @param action the only action the check will run for or null to run it for both
+     * @param commutative whether the result of the check doesn't depend on the other checks running before or after it (only commutative checks are reordered in adaptive mode)
+     */
+    public synchronized void add(C check, Utils.Action action, boolean commutative){
+        insert(entries.length, new Entry<>(Objects.requireNonNull(check), action, commutative));
+    }
+
+    /**
+     * Gets the action a check runs for.
+     * @param index the index of the check
+     * @return the only action the check runs for or null if it runs for both
+     */
+    public synchronized Utils.Action getAction(int index){
+        Objects.checkIndex(index, entries.length);
+        return entries[index].action;
+    }
+
+    /**
+     * Checks if a check can be reordered in adaptive mode.
+     * @param index the index of the check
+     * @return if the check is commutative
+     */
+    public synchronized boolean isCommutative(int index){
+        Objects.checkIndex(index, entries.length);
+        return entries[index].commutative;
+    }
+
+    /**
+     * Sets whether a check can be reordered in adaptive mode.
+     * @param index the index of the check
+     * @param commutative whether the result of the check doesn't depend on the other checks running before or after it
+     */
+    public synchronized void setCommutative(int index, boolean commutative){
+        Objects.checkIndex(index, entries.length);
+        Entry<C>[] copy = entries.clone();
+        copy[index] = copy[index].withCommutative(commutative);
+        publish(copy);
+    }
+
+    /**
+     * Gets the amount of checks that run for an action.
+     * @param action the action
+     * @return the amount of checks
+     */
+    public int size(Utils.Action action){
+        return checksFor(action).length;
+    }
+
+    /**
+     * Gets a snapshot of the statistics of the checks that run for an action (statistics are only collected in adaptive mode).
+     * @param action the action
+     * @return the statistics in the order the checks currently run
+     */
+    @SuppressWarnings("unchecked")
+    public List<CheckStats<C>> getStats(Utils.Action action){
+        Compiled compiled = compiled(action);
+        List<CheckStats<C>> stats = new ArrayList<>(compiled.checks.length);
+        for (int i = 0; i < compiled.checks.length; i++) {
+            Stats s = compiled.stats[i];
+            stats.add(new CheckStats<>((C) compiled.checks[i], action, s.commutative, s.invocations, s.rejections, s.samples, s.sampledNanos));
+        }
+        return stats;
+    }
+
+    /**
+     * Clears the statistics of every check.
+     */
+    public synchronized void resetStats(){
+        Entry<C>[] copy = entries.clone();
+        for (int i = 0; i < copy.length; i++)
+            copy[i] = copy[i].withoutStats();
+        publish(copy);
+    }
+
+    @Override
+    public synchronized C get(int index) {
+        Objects.checkIndex(index, entries.length);
+        return entries[index].check;
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.length;
+    }
+
+    /**
+     * Inserts a check that runs for both actions.
+     * @param index index at which the check is inserted
+     * @param check the check being added
+     */
+    @Override
+    public synchronized void add(int index, C check) {
+        Objects.checkIndex(index, entries.length + 1);
+        insert(index, new Entry<>(Objects.requireNonNull(check), null, false));
+    }
+
+    /**
+     * Replaces a check (the replacement runs for the same actions as the old check).
+     * @param index index of the check to replace
+     * @param check the new check
+     * @return the old check
+     */
+    @Override
+    public synchronized C set(int index, C check) {
+        Objects.checkIndex(index, entries.length);
+        Entry<C>[] copy = entries.clone();
+        C old = copy[index].check;
+        copy[index] = new Entry<>(Objects.requireNonNull(check), copy[index].action, copy[index].commutative);
+        publish(copy);
+        return old;
+    }
+
+    @Override
+    public synchronized C remove(int index) {
+        Objects.checkIndex(index, entries.length);
+        Entry<C>[] copy = newEntries(entries.length - 1);
+        System.arraycopy(entries, 0, copy, 0, index);
+        System.arraycopy(entries, index + 1, copy, index, entries.length - index - 1);
+        C old = entries[index].check;
+        publish(copy);
+        return old;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends C> checks) {
+        if(checks.isEmpty()) return false;
+        Entry<C>[] copy = Arrays.copyOf(entries, entries.length + checks.size());
+        int i = entries.length;
+        for (C check : checks)
+            copy[i++] = new Entry<>(Objects.requireNonNull(check), null, false);
+        publish(copy);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        publish(newEntries(0));
+    }
+
+    private void insert(int index, Entry<C> entry){
+        Entry<C>[] copy = newEntries(entries.length + 1);
+        System.arraycopy(entries, 0, copy, 0, index);
+        copy[index] = entry;
+        System.arraycopy(entries, index, copy, index + 1, entries.length - index);
+        publish(copy);
+    }
+
+    private void publish(Entry<C>[] entries){
+        modCount++;
+        this.entries = entries;
+        attachChecks = compile(entries, Utils.Action.ATTACH);
+        detachChecks = compile(entries, Utils.Action.DETACH);
+        if(adaptive) {
+            reorder(Utils.Action.ATTACH);
+            reorder(Utils.Action.DETACH);
+        }
+    }
+
+    private static Compiled compile(Entry<?>[] entries, Utils.Action action){
+        int count = 0;
+        for (Entry<?> entry : entries)
+            if(entry.runsFor(action)) count++;
+        if(count == 0) return EMPTY;
+
+        Object[] checks = new Object[count];
+        Stats[] stats = new Stats[count];
+        int i = 0;
+        for (Entry<?> entry : entries)
+            if(entry.runsFor(action)) {
+                checks[i] = entry.check;
+                stats[i++] = entry.stats(action);
+            }
+        return new Compiled(checks, stats);
+    }
+
+    /**
+     * Sorts every run of commutative checks so the checks with the highest rejection rate per nanosecond run first.
+     * @param action the action whose checks are reordered
+     */
+    private synchronized void reorder(Utils.Action action){
+        Compiled compiled = compiled(action);
+        int n = compiled.checks.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+
+        boolean changed = false;
+        for (int start = 0; start < n; start++) {
+            if(!compiled.stats[start].commutative) continue;
+            int end = start;
+            while (end < n && compiled.stats[end].commutative) end++;
+            if(end - start > 1) {
+                double fallbackCost = averageCost(compiled.stats, start, end);
+                Arrays.sort(order, start, end, Comparator.comparingDouble((Integer i) -> -compiled.stats[i].score(fallbackCost)));
+                for (int i = start; i < end; i++)
+                    changed |= order[i] != i;
+            }
+            start = end;
+        }
+        if(!changed) return;
+
+        Object[] checks = new Object[n];
+        Stats[] stats = new Stats[n];
+        for (int i = 0; i < n; i++) {
+            checks[i] = compiled.checks[order[i]];
+            stats[i] = compiled.stats[order[i]];
+        }
+        if(action == Utils.Action.ATTACH) attachChecks = new Compiled(checks, stats);
+        else detachChecks = new Compiled(checks, stats);
+    }
+
+    private static double averageCost(Stats[] stats, int start, int end){
+        long nanos = 0, samples = 0;
+        for (int i = start; i < end; i++) {
+            nanos += stats[i].sampledNanos;
+            samples += stats[i].samples;
+        }
+        return samples == 0 ? 1 : Math.max(1, (double) nanos / samples);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <C> Entry<C>[] newEntries(int size){
+        return (Entry<C>[]) new Entry<?>[size];
+    }
+
+    /**
+     * The checks for one action in the order they run, along with their statistics.
+     * @param checks the checks
+     * @param stats the statistics of each check (same order as the checks)
+     */
+    private record Compiled(Object[] checks, Stats[] stats){}
+
+    /**
+     * A registered check along with the action it runs for and its statistics.
+     * @param <C> the type of the check
+     */
+    private static final class Entry<C>{
+        final C check;
+        //the only action the check runs for or null if it runs for both
+        final Utils.Action action;
+        final boolean commutative;
+        final Stats attachStats;
+        final Stats detachStats;
+
+        Entry(C check, Utils.Action action, boolean commutative) {
+            this(check, action, commutative, new Stats(commutative), new Stats(commutative));
+        }
+
+        private Entry(C check, Utils.Action action, boolean commutative, Stats attachStats, Stats detachStats) {
+            this.check = check;
+            this.action = action;
+            this.commutative = commutative;
+            this.attachStats = attachStats;
+            this.detachStats = detachStats;
+        }
+
+        boolean runsFor(Utils.Action action){
+            return this.action == null || this.action == action;
+        }
+
+        Stats stats(Utils.Action action){
+            return action == Utils.Action.ATTACH ? attachStats : detachStats;
+        }
+
+        //keeps the statistics collected so far
+        Entry<C> withCommutative(boolean commutative){
+            return new Entry<>(check, action, commutative, attachStats.copy(commutative), detachStats.copy(commutative));
+        }
+
+        Entry<C> withoutStats(){
+            return new Entry<>(check, action, commutative);
+        }
+    }
+
+    /**
+     * The mutable statistics of a check for one action. Updates are not synchronized so under contention the numbers are approximate.
+     */
+    private static final class Stats{
+        final boolean commutative;
+        long invocations;
+        long rejections;
+        long samples;
+        long sampledNanos;
+
+        Stats(boolean commutative) {
+            this.commutative = commutative;
+        }
+
+        Stats copy(boolean commutative){
+            Stats copy = new Stats(commutative);
+            copy.invocations = invocations;
+            copy.rejections = rejections;
+            copy.samples = samples;
+            copy.sampledNanos = sampledNanos;
+            return copy;
+        }
+
+        //rejections per nanosecond, smoothed so checks that have not run yet are not pushed to the end forever
+        double score(double fallbackCost){
+            double rejectionRate = (rejections + 1.0) / (invocations + 2.0);
+            double cost = samples == 0 ? fallbackCost : Math.max(1, (double) sampledNanos / samples);
+            return rejectionRate / cost;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package om.self.structure.check;
+
+import om.self.structure.Utils;
+
+import java.util.Collection;
+
+/**
+ * An ordered chain of {@link Utils.Check}s. Checks run in registration order and stop at the first one that fails.
+ * @param <T> the type of value being checked
+ * @see AbstractCheckChain
+ */
+public class CheckChain<T> extends AbstractCheckChain<Utils.Check<T>> {
+    /**
+     * Runs every check registered for the action.
+     * @param value the value being checked
+     * @param action the action being performed
+     * @return true if all checks pass, false if one fails
+     */
+    @SuppressWarnings("unchecked")
+    public boolean test(T value, Utils.Action action){
+        if(isAdaptive()) return testAdaptive(null, value, action);
+
+        for (Object check : checksFor(action))
+            if(!((Utils.Check<T>) check).apply(value, action)) return false;
+        return true;
+    }
+
+    /**
+     * Runs every check registered for the action on a batch of values. Each check sees the whole batch before the next check runs, {@link Utils.BatchCheck}s get the batch in one call, and other checks are applied to each value. Statistics are not recorded for batches.
+     * @param values the values being checked (values that fail a check are removed)
+     * @param action the action being performed
+     */
+    @SuppressWarnings("unchecked")
+    public void testAll(Collection<T> values, Utils.Action action){
+        for (Object check : checksFor(action)) {
+            if(values.isEmpty()) return;
+            if(check instanceof Utils.BatchCheck<?> batchCheck) ((Utils.BatchCheck<T>) batchCheck).applyAll(values, action);
+            else values.removeIf(value -> !((Utils.Check<T>) check).apply(value, action));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean apply(Utils.Check<T> check, Object key, Object value, Utils.Action action) {
+        return check.apply((T) value, action);
+    }
+}
@@ -0,0 +1,33 @@
+package om.self.structure.check;
+
+import om.self.structure.Utils;
+
+/**
+ * A snapshot of the statistics an adaptive check chain collected for one check.
+ * @param check the check
+ * @param action the action the statistics are for
+ * @param commutative whether the check can be reordered
+ * @param invocations how many times the check ran
+ * @param rejections how many times the check failed
+ * @param samples how many of the runs were timed
+ * @param sampledNanos the total time of the timed runs in nanoseconds
+ * @param <C> the type of the check
+ * @see AbstractCheckChain#getStats(Utils.Action)
+ */
+public record CheckStats<C>(C check, Utils.Action action, boolean commutative, long invocations, long rejections, long samples, long sampledNanos) {
+    /**
+     * Gets the fraction of runs where the check failed.
+     * @return the rejection rate (0 if the check never ran)
+     */
+    public double rejectionRate(){
+        return invocations == 0 ? 0 : (double) rejections / invocations;
+    }
+
+    /**
+     * Gets the average time the check took in the timed runs.
+     * @return the average time in nanoseconds (NaN if no run was timed)
+     */
+    public double averageNanos(){
+        return samples == 0 ? Double.NaN : (double) sampledNanos / samples;
+    }
+}
@@ -0,0 +1,48 @@
+package om.self.structure.check;
+
+import om.self.structure.Utils;
+import om.self.structure.storage.IntObjectMap;
+
+/**
+ * An ordered chain of {@link Utils.IntKeyedCheck}s. Checks run in registration order and stop at the first one that fails.
+ * @param <V> the type of value being checked
+ * @see AbstractCheckChain
+ */
+public class IntKeyedCheckChain<V> extends AbstractCheckChain<Utils.IntKeyedCheck<V>> {
+    /**
+     * Runs every check registered for the action.
+     * @param key the key of the value being checked
+     * @param value the value being checked
+     * @param action the action being performed
+     * @return true if all checks pass, false if one fails
+     * @implNote in adaptive mode the key is boxed once per run
+     */
+    @SuppressWarnings("unchecked")
+    public boolean test(int key, V value, Utils.Action action){
+        if(isAdaptive()) return testAdaptive(key, value, action);
+
+        for (Object check : checksFor(action))
+            if(!((Utils.IntKeyedCheck<V>) check).apply(key, value, action)) return false;
+        return true;
+    }
+
+    /**
+     * Runs every check registered for the action on a batch of values, one check at a time over the whole batch. The keys are never boxed. Statistics are not recorded for batches.
+     * @param values the keys and values being checked (entries that fail a check are removed)
+     * @param action the action being performed
+     */
+    @SuppressWarnings("unchecked")
+    public void testAll(IntObjectMap<V> values, Utils.Action action){
+        for (Object check : checksFor(action)) {
+            if(values.isEmpty()) return;
+            Utils.IntKeyedCheck<V> keyedCheck = (Utils.IntKeyedCheck<V>) check;
+            values.removeIf((key, value) -> !keyedCheck.apply(key, value, action));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean apply(Utils.IntKeyedCheck<V> check, Object key, Object value, Utils.Action action) {
+        return check.apply((Integer) key, (V) value, action);
+    }
+}
@@ -0,0 +1,49 @@
+package om.self.structure.check;
+
+import om.self.structure.Utils;
+
+import java.util.Map;
+
+/**
+ * An ordered chain of {@link Utils.KeyedCheck}s. Checks run in registration order and stop at the first one that fails.
+ * @param <K> the type of key being checked
+ * @param <V> the type of value being checked
+ * @see AbstractCheckChain
+ */
+public class KeyedCheckChain<K, V> extends AbstractCheckChain<Utils.KeyedCheck<K, V>> {
+    /**
+     * Runs every check registered for the action.
+     * @param key the key of the value being checked
+     * @param value the value being checked
+     * @param action the action being performed
+     * @return true if all checks pass, false if one fails
+     */
+    @SuppressWarnings("unchecked")
+    public boolean test(K key, V value, Utils.Action action){
+        if(isAdaptive()) return testAdaptive(key, value, action);
+
+        for (Object check : checksFor(action))
+            if(!((Utils.KeyedCheck<K, V>) check).apply(key, value, action)) return false;
+        return true;
+    }
+
+    /**
+     * Runs every check registered for the action on a batch of values. Each check sees the whole batch before the next check runs, {@link Utils.KeyedBatchCheck}s get the batch in one call, and other checks are applied to each entry. Statistics are not recorded for batches.
+     * @param values the keys and values being checked (entries that fail a check are removed)
+     * @param action the action being performed
+     */
+    @SuppressWarnings("unchecked")
+    public void testAll(Map<K, V> values, Utils.Action action){
+        for (Object check : checksFor(action)) {
+            if(values.isEmpty()) return;
+            if(check instanceof Utils.KeyedBatchCheck<?,?> batchCheck) ((Utils.KeyedBatchCheck<K, V>) batchCheck).applyAll(values, action);
+            else values.entrySet().removeIf(entry -> !((Utils.KeyedCheck<K, V>) check).apply(entry.getKey(), entry.getValue(), action));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean apply(Utils.KeyedCheck<K, V> check, Object key, Object value, Utils.Action action) {
+        return check.apply((K) key, (V) value, action);
+    }
+}
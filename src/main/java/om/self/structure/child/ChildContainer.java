@@ -1,6 +1,13 @@
 package om.self.structure.child;
 
+import om.self.structure.traversal.BreadthFirstIterator;
+import om.self.structure.traversal.PostOrderIterator;
+import om.self.structure.traversal.PreOrderIterator;
+import om.self.structure.traversal.Subtree;
+
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Predicate;
 
 /**
  * Low level interface that indicates something contains children. The functionality provided by this interface is limited to getting all children, detaching all children, and checking if a child is attached. This is meant to be used as a base for further implementations such as {@link ChildStructure} or {@link KeyedChildStructure}
@@ -31,4 +38,82 @@ public interface ChildContainer<T> {
     default boolean isChildAttached(T child){
         return getChildren().contains(child);
     }
+
+    /**
+     * Gets a depth first iterator over all descendants that returns each node before its children.
+     * @return the iterator
+     * @see PreOrderIterator
+     */
+    default Iterator<T> preOrderIterator(){
+        return new PreOrderIterator<>(this);
+    }
+
+    /**
+     * Gets a depth first iterator over the descendants that returns each node before its children.
+     * @param prune returns true for nodes that should be skipped along with their subtree
+     * @return the iterator
+     * @see PreOrderIterator
+     */
+    default Iterator<T> preOrderIterator(Predicate<? super T> prune){
+        return new PreOrderIterator<>(this, prune);
+    }
+
+    /**
+     * Gets a depth first iterator over all descendants that returns each node after its children.
+     * @return the iterator
+     * @see PostOrderIterator
+     */
+    default Iterator<T> postOrderIterator(){
+        return new PostOrderIterator<>(this);
+    }
+
+    /**
+     * Gets a depth first iterator over the descendants that returns each node after its children.
+     * @param prune returns true for nodes that should be skipped along with their subtree
+     * @return the iterator
+     * @see PostOrderIterator
+     */
+    default Iterator<T> postOrderIterator(Predicate<? super T> prune){
+        return new PostOrderIterator<>(this, prune);
+    }
+
+    /**
+     * Gets an iterator over all descendants that returns them level by level.
+     * @return the iterator
+     * @see BreadthFirstIterator
+     */
+    default Iterator<T> breadthFirstIterator(){
+        return new BreadthFirstIterator<>(this);
+    }
+
+    /**
+     * Gets an iterator over the descendants that returns them level by level.
+     * @param prune returns true for nodes that should be skipped along with their subtree
+     * @return the iterator
+     * @see BreadthFirstIterator
+     */
+    default Iterator<T> breadthFirstIterator(Predicate<? super T> prune){
+        return new BreadthFirstIterator<>(this, prune);
+    }
+
+    /**
+     * Gets a view of all descendants that can be streamed in parallel.
+     * @return the descendants
+     * @implNote only children that are also a {@link ChildContainer} are descended into, and their children are assumed to be of type T
+     * @see Subtree
+     */
+    default Collection<T> subtree(){
+        return new Subtree<>(this);
+    }
+
+    /**
+     * Gets a view of the descendants that can be streamed in parallel.
+     * @param prune returns true for nodes that should be skipped along with their subtree
+     * @return the descendants
+     * @implNote only children that are also a {@link ChildContainer} are descended into, and their children are assumed to be of type T
+     * @see Subtree
+     */
+    default Collection<T> subtree(Predicate<? super T> prune){
+        return new Subtree<>(this, prune);
+    }
 }
@@ -70,4 +70,22 @@ public interface ChildStructure<T> extends ChildContainer<T> {
      * @param child The child that is being detached
      */
     default void onChildDetach(T child) {}
+
+    /**
+     * Called once after a bulk {@link ChildStructure#attachChildren(Iterable)} with every child that was attached. By default, this calls {@link ChildStructure#onChildAttach(Object)} for each child.
+     * @param children The children that were attached
+     */
+    default void onChildrenAttach(Collection<T> children) {
+        for (T child : children)
+            onChildAttach(child);
+    }
+
+    /**
+     * Called once after {@link ChildStructure#detachChildren()} detached the children in bulk. By default, this calls {@link ChildStructure#onChildDetach(Object)} for each child.
+     * @param children The children that were detached
+     */
+    default void onChildrenDetach(Collection<T> children) {
+        for (T child : children)
+            onChildDetach(child);
+    }
 }
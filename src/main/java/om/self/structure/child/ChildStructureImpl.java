@@ -1,13 +1,16 @@
 package om.self.structure.child;
 
+import om.self.structure.storage.ChildStorage;
+
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
- * An implementation of {@link ChildStructure} that uses a {@link HashSet} to store the children.
+ * An implementation of {@link ChildStructure} that stores the children in a set created by a {@link ChildStorage} ({@link ChildStorage#concurrent()} by default).
  * @param <T> the type of the children
  * @see ChildStructure
  */
@@ -15,21 +18,72 @@ public class ChildStructureImpl<T> implements ChildStructure<T> {
     /**
      * The children that are attached.
      */
-    private final Set<T> children = ConcurrentHashMap.newKeySet();
+    private final Set<T> children;
 
     /**
      * Default constructor
      */
-    public ChildStructureImpl(){}
+    public ChildStructureImpl(){
+        this(ChildStorage.concurrent());
+    }
+
+    /**
+     * Constructor that uses a custom storage for the children
+     * @param storage the storage used to create the set of children
+     */
+    public ChildStructureImpl(ChildStorage storage){
+        children = storage.createSet(0);
+    }
 
     /**
      * Constructor that automatically attaches children
      * @param children the children to attach
      */
     public ChildStructureImpl(Iterable<T> children){
+        this();
         attachChildren(children);
     }
 
+    /**
+     * Attaches multiple children in one pass (with {@link ChildStorage#copyOnWrite()} the array is only copied once) then calls {@link #onChildrenAttach(Collection)} once with the children that weren't already attached.
+     * @param children The children being attached
+     */
+    @Override
+    public void attachChildren(Iterable<T> children) {
+        ArrayList<T> attached = new ArrayList<>();
+        if(this.children instanceof CopyOnWriteArraySet<T> copyOnWrite) {
+            LinkedHashSet<T> batch = new LinkedHashSet<>();
+            for (T child : children)
+                if(!copyOnWrite.contains(child)) batch.add(child);
+            copyOnWrite.addAll(batch);
+            attached.addAll(batch);
+        } else for (T child : children)
+            if(this.children.add(child)) attached.add(child);
+
+        if(!attached.isEmpty()) onChildrenAttach(attached);
+    }
+
+    /**
+     * Detaches the children that are attached when this is called in one step then calls {@link #onChildrenDetach(Collection)} once. A child attached by another thread while this runs stays attached.
+     */
+    @Override
+    public void detachChildren() {
+        detachAll(new ArrayList<>(children));
+    }
+
+    /**
+     * Removes a batch of attached children then calls {@link #onChildrenDetach(Collection)} once. Only the children in the batch are removed (with {@link ChildStorage#copyOnWrite()} the array is only copied once), so the storage is never cleared out from under a concurrent attach.
+     * @param detached the children being detached (each one must be attached and only be in the batch once)
+     */
+    protected void detachAll(Collection<T> detached){
+        if(detached.isEmpty()) return;
+
+        if(children instanceof CopyOnWriteArraySet<T>) children.removeAll(new HashSet<>(detached)); //one copy of the array
+        else for (T child : detached)
+            children.remove(child);
+        onChildrenDetach(detached);
+    }
+
     /**
      * Gets all attached children
      * @return Attached children
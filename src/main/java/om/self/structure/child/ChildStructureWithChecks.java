@@ -2,16 +2,17 @@ package om.self.structure.child;
 
 import om.self.structure.Utils;
 import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.check.CheckChain;
+import om.self.structure.storage.ChildStorage;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayList;
 
 /**
  * An extension of {@link ChildStructureImpl} that adds the ability to run checks before attaching or detaching anything
  * @param <T> the type of the child
  */
 public class ChildStructureWithChecks<T> extends ChildStructureImpl<T> {
-    private final List<Utils.Check<T>> checks = new LinkedList<>();
+    private final CheckChain<T> checks = new CheckChain<>();
 
     /**
      * Default constructor
@@ -28,6 +29,15 @@ public class ChildStructureWithChecks<T> extends ChildStructureImpl<T> {
         super(children);
     }
 
+    /**
+     * Constructor that uses a custom storage for the children
+     *
+     * @param storage the storage used to create the set of children
+     */
+    public ChildStructureWithChecks(ChildStorage storage) {
+        super(storage);
+    }
+
     /**
      * Adds a check to the list of checks.
      * @param check The check being added
@@ -36,11 +46,20 @@ public class ChildStructureWithChecks<T> extends ChildStructureImpl<T> {
         checks.add(check);
     }
 
+    /**
+     * Adds a check that only runs for one action.
+     * @param check the check being added
+     * @param action the only action the check runs for
+     */
+    public void addCheck(Utils.Check<T> check, Utils.Action action){
+        checks.add(check, action);
+    }
+
     /**
      * Gets all checks.
      * @return All checks
      */
-    public List<Utils.Check<T>> getChecks(){
+    public CheckChain<T> getChecks(){
         return checks;
     }
 
@@ -75,12 +94,25 @@ public class ChildStructureWithChecks<T> extends ChildStructureImpl<T> {
      */
     @Override
     public void attachChild(T child) {
-        for (Utils.Check<T> check : checks)
-            if(!check.apply(child, Utils.Action.ATTACH)) return;
+        if(!checks.test(child, Utils.Action.ATTACH)) return;
         
         super.attachChild(child);
     }
 
+    /**
+     * Runs the checks on all children as one batch (see {@link CheckChain#testAll(java.util.Collection, Utils.Action)}) then attaches the children that passed using {@link ChildStructureImpl#attachChildren(Iterable)}.
+     *
+     * @param children The children being attached
+     */
+    @Override
+    public void attachChildren(Iterable<T> children) {
+        ArrayList<T> batch = new ArrayList<>();
+        children.forEach(batch::add);
+        checks.testAll(batch, Utils.Action.ATTACH);
+
+        super.attachChildren(batch);
+    }
+
     /**
      * Detaches a child.
      *
@@ -90,9 +122,19 @@ public class ChildStructureWithChecks<T> extends ChildStructureImpl<T> {
     @Override
     public void detachChild(T child) {
         if(!isChildAttached(child)) return;
-        for (Utils.Check<T> check: checks)
-            if(!check.apply(child, Utils.Action.DETACH)) return;
+        if(!checks.test(child, Utils.Action.DETACH)) return;
 
         super.detachChild(child);
     }
+
+    /**
+     * Runs the detach checks on all children as one batch (see {@link CheckChain#testAll(java.util.Collection, Utils.Action)}) then detaches the children that passed in one step using {@link ChildStructureImpl#detachAll(java.util.Collection)}.
+     */
+    @Override
+    public void detachChildren() {
+        ArrayList<T> batch = new ArrayList<>(getChildren());
+        checks.testAll(batch, Utils.Action.DETACH);
+
+        detachAll(batch);
+    }
 }
@@ -0,0 +1,153 @@
+package om.self.structure.child;
+
+import om.self.structure.storage.IntObjectMap;
+
+import java.util.Map;
+
+/**
+ * An implementation of {@link KeyedChildStructure} for primitive int keys. Children are stored in an {@link IntObjectMap} so entries don't need boxed keys or map nodes, and the int overloads of {@link #attachChild(int, Object)}, {@link #detachChild(int)}, {@link #getChild(int)} and {@link #isChildKeyAttached(int)} never box the key.
+ * <br>
+ * The {@link Integer} methods from {@link KeyedChildStructure} still work and just unbox the key. This structure is not thread safe.
+ * @param <V> the type of the children
+ * @see KeyedChildStructure
+ */
+public class IntKeyedChildStructure<V> implements KeyedChildStructure<Integer, V> {
+    private final IntObjectMap<V> children;
+
+    /**
+     * Default constructor
+     */
+    public IntKeyedChildStructure(){
+        children = new IntObjectMap<>();
+    }
+
+    /**
+     * Constructor that automatically attaches children
+     * @param children the children to attach
+     */
+    public IntKeyedChildStructure(Map<Integer,V> children){
+        this.children = new IntObjectMap<>(children.size());
+        attachChildren(children);
+    }
+
+    /**
+     * Attaches a child with a key.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @implNote This method calls {@link #onChildAttach(int, Object)}
+     */
+    public void attachChild(int key, V child){
+        if(children.put(key, child) == child) return;
+
+        onChildAttach(key, child);
+    }
+
+    /**
+     * Attaches a child with a key.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @see #attachChild(int, Object)
+     */
+    @Override
+    public void attachChild(Integer key, V child) {
+        attachChild(key.intValue(), child);
+    }
+
+    /**
+     * Detaches a child based on a key.
+     * @param key the key of the child being detached
+     * @implNote This method calls {@link #onChildDetach(int, Object)}
+     */
+    public void detachChild(int key){
+        V child = children.remove(key);
+        if(child == null) return;
+
+        onChildDetach(key, child);
+    }
+
+    /**
+     * Detaches a child based on a key.
+     * @param key the key of the child being detached
+     * @see #detachChild(int)
+     */
+    @Override
+    public void detachChild(Integer key) {
+        detachChild(key.intValue());
+    }
+
+    /**
+     * Detaches all children in one step (the map is copied then cleared instead of removing each key) then calls {@link #onChildrenDetach(Map)} once.
+     */
+    @Override
+    public void detachChildren() {
+        detachAll(children.copy());
+    }
+
+    /**
+     * Removes a batch of attached children then calls {@link #onChildrenDetach(Map)} once. If the batch has every child, the map is cleared instead of removing the keys one at a time.
+     * @param detached the children being detached and their keys (each one must be attached with that key)
+     */
+    protected void detachAll(Map<Integer, V> detached){
+        if(detached.isEmpty()) return;
+
+        if(detached.size() == children.size()) children.clear();
+        else for (Integer key : detached.keySet())
+            children.remove(key.intValue());
+        onChildrenDetach(detached);
+    }
+
+    /**
+     * Gets a child associated with a specific key
+     * @param key the key of the child
+     * @return will return the child or null if the key is not found
+     */
+    public V getChild(int key){
+        return children.get(key);
+    }
+
+    /**
+     * Checks whether a child is attached based on the key
+     * @param key the key of the child you want to check
+     * @return if the child is attached
+     */
+    public boolean isChildKeyAttached(int key){
+        return children.containsKey(key);
+    }
+
+    /**
+     * Gets the attached children along with their keys.
+     * @return The children and their keys
+     */
+    @Override
+    public IntObjectMap<V> getChildrenAndKeys() {
+        return children;
+    }
+
+    /**
+     * Called when a child is attached. By default, this boxes the key and calls {@link #onChildAttach(Object, Object)}, so override this instead to avoid boxing.
+     * @param key the key of the child
+     * @param child the child that is being attached
+     */
+    public void onChildAttach(int key, V child){
+        onChildAttach(Integer.valueOf(key), child);
+    }
+
+    /**
+     * Called when a child is detached. By default, this boxes the key and calls {@link #onChildDetach(Object, Object)}, so override this instead to avoid boxing.
+     * @param key the key of the child
+     * @param child the child that is being detached
+     */
+    public void onChildDetach(int key, V child){
+        onChildDetach(Integer.valueOf(key), child);
+    }
+
+    /**
+     * Called once after the children were detached in bulk. By default, this calls {@link #onChildDetach(int, Object)} for each child.
+     * @param children the children that were detached and their keys
+     */
+    @Override
+    public void onChildrenDetach(Map<Integer, V> children) {
+        for (Map.Entry<Integer, V> child : children.entrySet())
+            onChildDetach(child.getKey().intValue(), child.getValue());
+    }
+}
@@ -0,0 +1,116 @@
+package om.self.structure.child;
+
+import om.self.structure.Utils;
+import om.self.structure.check.IntKeyedCheckChain;
+import om.self.structure.storage.IntObjectMap;
+
+import java.util.Map;
+
+/**
+ * An extension of {@link IntKeyedChildStructure} that adds the ability to run checks before attaching or detaching anything. The checks get the primitive key so running them doesn't box the key.
+ * @param <V> the type of the child
+ */
+public class IntKeyedChildStructureWithChecks<V> extends IntKeyedChildStructure<V> {
+    private final IntKeyedCheckChain<V> checks = new IntKeyedCheckChain<>();
+
+    /**
+     * Default constructor
+     */
+    public IntKeyedChildStructureWithChecks() {
+    }
+
+    /**
+     * Constructor that automatically attaches children
+     *
+     * @param children the children to attach(this has to be in the format of a map between child keys and the child)
+     */
+    public IntKeyedChildStructureWithChecks(Map<Integer, V> children) {
+        super(children);
+    }
+
+    /**
+     * Adds a check to the list of checks.
+     * @param check The check being added
+     */
+    public void addCheck(Utils.IntKeyedCheck<V> check){
+        checks.add(check);
+    }
+
+    /**
+     * Adds a check that only runs for one action.
+     * @param check the check being added
+     * @param action the only action the check runs for
+     */
+    public void addCheck(Utils.IntKeyedCheck<V> check, Utils.Action action){
+        checks.add(check, action);
+    }
+
+    /**
+     * Gets all checks.
+     * @return All checks
+     */
+    public IntKeyedCheckChain<V> getChecks(){
+        return checks;
+    }
+
+    /**
+     * Removes a check.
+     * @param check The check being removed
+     */
+    public void removeCheck(Utils.IntKeyedCheck<V> check){
+        checks.remove(check);
+    }
+
+    /**
+     * Removes a check.
+     * @param index The index of the check being removed
+     */
+    public void removeCheck(int index){
+        checks.remove(index);
+    }
+
+    /**
+     * Removes all checks.
+     */
+    public void clearChecks(){
+        checks.clear();
+    }
+
+    /**
+     * Attaches a child with a key if all checks pass.
+     *
+     * @param key   the key associated with the child
+     * @param child the child being attached
+     */
+    @Override
+    public void attachChild(int key, V child) {
+        if(!checks.test(key, child, Utils.Action.ATTACH)) return;
+
+        super.attachChild(key, child);
+    }
+
+    /**
+     * Detaches a child based on a key if all checks pass.
+     *
+     * @param key the key of the child being detached
+     */
+    @Override
+    public void detachChild(int key) {
+        V c = getChild(key);
+        if(c == null) return;
+        if(!checks.test(key, c, Utils.Action.DETACH)) return;
+
+        super.detachChild(key);
+    }
+
+    /**
+     * Runs the detach checks on all children as one batch (see {@link IntKeyedCheckChain#testAll(IntObjectMap, Utils.Action)}) then detaches the children that passed in one step using {@link IntKeyedChildStructure#detachAll(Map)}.
+     */
+    @Override
+    public void detachChildren() {
+        IntObjectMap<V> batch = getChildrenAndKeys().copy();
+        checks.testAll(batch, Utils.Action.DETACH);
+
+        detachAll(batch);
+    }
+}
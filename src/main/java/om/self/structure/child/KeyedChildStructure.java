@@ -128,7 +128,7 @@ public interface KeyedChildStructure<K, V> extends ChildContainer<V> {
      * @return if the child is attached
      */
     default boolean isChildKeyAttached(K key){
-        return getChildKeys().contains(key);
+        return getChildrenAndKeys().containsKey(key);
     }
 
     /**
@@ -144,4 +144,22 @@ public interface KeyedChildStructure<K, V> extends ChildContainer<V> {
      * @param child the child that is being detached
      */
     default void onChildDetach(K key, V child){}
+
+    /**
+     * Called once after a bulk {@link KeyedChildStructure#attachChildren(Map)} with every child that was attached. By default, this calls {@link KeyedChildStructure#onChildAttach(Object, Object)} for each child.
+     * @param children the children that were attached and their keys
+     */
+    default void onChildrenAttach(Map<K, V> children){
+        for (Map.Entry<K, V> child : children.entrySet())
+            onChildAttach(child.getKey(), child.getValue());
+    }
+
+    /**
+     * Called once after {@link KeyedChildStructure#detachChildren()} detached the children in bulk. By default, this calls {@link KeyedChildStructure#onChildDetach(Object, Object)} for each child.
+     * @param children the children that were detached and their keys
+     */
+    default void onChildrenDetach(Map<K, V> children){
+        for (Map.Entry<K, V> child : children.entrySet())
+            onChildDetach(child.getKey(), child.getValue());
+    }
 }
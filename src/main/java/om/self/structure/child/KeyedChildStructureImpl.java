@@ -1,31 +1,89 @@
 package om.self.structure.child;
 
-import java.util.Hashtable;
+import om.self.structure.storage.ChildStorage;
+import om.self.structure.storage.CopyOnWriteMap;
+
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * An implementation of {@link KeyedChildStructure} that uses a {@link Hashtable} to store the children.
+ * An implementation of {@link KeyedChildStructure} that stores the children in a map created by a {@link ChildStorage} ({@link ChildStorage#concurrent()} by default).
  * @param <K> the type of the key
  * @param <V> the type of the children
  * @see KeyedChildStructure
  */
 public class KeyedChildStructureImpl<K, V> implements KeyedChildStructure<K, V> {
-    private final ConcurrentHashMap<K, V> children = new ConcurrentHashMap<>();
+    private final Map<K, V> children;
 
     /**
      * Default constructor
      */
-    public KeyedChildStructureImpl(){}
+    public KeyedChildStructureImpl(){
+        this(ChildStorage.concurrent());
+    }
+
+    /**
+     * Constructor that uses a custom storage for the children
+     * @param storage the storage used to create the map of children
+     */
+    public KeyedChildStructureImpl(ChildStorage storage){
+        children = storage.createMap(0);
+    }
 
     /**
      * Constructor that automatically attaches children
      * @param children the children to attach
      */
     public KeyedChildStructureImpl(Map<K,V> children){
+        this(ChildStorage.concurrent(), children);
+    }
+
+    /**
+     * Constructor that uses a custom storage for the children and automatically attaches children
+     * @param storage the storage used to create the map of children
+     * @param children the children to attach
+     */
+    public KeyedChildStructureImpl(ChildStorage storage, Map<K,V> children){
+        this.children = storage.createMap(children.size());
         attachChildren(children);
     }
 
+    /**
+     * Attaches multiple children with one {@link Map#putAll(Map)} (so the storage can resize once) then calls {@link #onChildrenAttach(Map)} once with the children that weren't already attached with the same key.
+     * @param children the children being attached
+     */
+    @Override
+    public void attachChildren(Map<K, V> children) {
+        Map<K, V> attached = new LinkedHashMap<>(children.size() * 4 / 3 + 1);
+        for (Map.Entry<K, V> child : children.entrySet())
+            if(this.children.get(child.getKey()) != child.getValue()) attached.put(child.getKey(), child.getValue());
+        if(attached.isEmpty()) return;
+
+        this.children.putAll(attached);
+        onChildrenAttach(attached);
+    }
+
+    /**
+     * Detaches the children that are attached when this is called in one step then calls {@link #onChildrenDetach(Map)} once. A child attached by another thread while this runs stays attached.
+     */
+    @Override
+    public void detachChildren() {
+        detachAll(new LinkedHashMap<>(children));
+    }
+
+    /**
+     * Removes a batch of attached children then calls {@link #onChildrenDetach(Map)} once. Only the entries in the batch are removed (with {@link ChildStorage#copyOnWrite()} the array is only copied once), so a child attached under one of the keys in the meantime stays attached.
+     * @param detached the children being detached and their keys (each one must be attached with that key)
+     */
+    protected void detachAll(Map<K, V> detached){
+        if(detached.isEmpty()) return;
+
+        if(children instanceof CopyOnWriteMap<K, V> copyOnWrite) copyOnWrite.removeEntries(detached);
+        else for (Map.Entry<K, V> entry : detached.entrySet())
+            children.remove(entry.getKey(), entry.getValue());
+        onChildrenDetach(detached);
+    }
+
     /**
      * Gets the attached children along with their keys.
      * @return The children and their keys
@@ -34,4 +92,14 @@ public class KeyedChildStructureImpl<K, V> implements KeyedChildStructure<K, V>
     public Map<K, V> getChildrenAndKeys() {
         return children;
     }
+
+    /**
+     * Checks whether a child is attached based on the key
+     * @param key the key of the child you want to check
+     * @return if the child is attached
+     */
+    @Override
+    public boolean isChildKeyAttached(K key) {
+        return children.containsKey(key);
+    }
 }
@@ -2,9 +2,10 @@ package om.self.structure.child;
 
 import om.self.structure.Utils;
 import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.check.KeyedCheckChain;
+import om.self.structure.storage.ChildStorage;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -13,7 +14,7 @@ import java.util.Map;
  * @param <K>  the type of the key used to identify children
  */
 public class KeyedChildStructureWithChecks<K, V> extends KeyedChildStructureImpl<K, V> {
-    private final List<Utils.KeyedCheck<K,V>> checks = new LinkedList<>();
+    private final KeyedCheckChain<K,V> checks = new KeyedCheckChain<>();
 
     /**
      * Default constructor
@@ -30,6 +31,25 @@ public class KeyedChildStructureWithChecks<K, V> extends KeyedChildStructureImpl
         super(children);
     }
 
+    /**
+     * Constructor that uses a custom storage for the children
+     *
+     * @param storage the storage used to create the map of children
+     */
+    public KeyedChildStructureWithChecks(ChildStorage storage) {
+        super(storage);
+    }
+
+    /**
+     * Constructor that uses a custom storage for the children and automatically attaches children
+     *
+     * @param storage the storage used to create the map of children
+     * @param children the children to attach(this has to be in the format of a map between child keys and the child)
+     */
+    public KeyedChildStructureWithChecks(ChildStorage storage, Map<K, V> children) {
+        super(storage, children);
+    }
+
     /**
      * Adds a check to the list of checks.
      * @param check The check being added
@@ -38,11 +58,20 @@ public class KeyedChildStructureWithChecks<K, V> extends KeyedChildStructureImpl
         checks.add(check);
     }
 
+    /**
+     * Adds a check that only runs for one action.
+     * @param check the check being added
+     * @param action the only action the check runs for
+     */
+    public void addCheck(Utils.KeyedCheck<K,V> check, Utils.Action action){
+        checks.add(check, action);
+    }
+
     /**
      * Gets all checks.
      * @return All checks
      */
-    public List<Utils.KeyedCheck<K,V>> getChecks(){
+    public KeyedCheckChain<K,V> getChecks(){
         return checks;
     }
 
@@ -78,12 +107,24 @@ public class KeyedChildStructureWithChecks<K, V> extends KeyedChildStructureImpl
      */
     @Override
     public void attachChild(K key, V child) {
-        for (Utils.KeyedCheck<K,V> check : checks)
-            if(!check.apply(key, child, Utils.Action.ATTACH)) return;
+        if(!checks.test(key, child, Utils.Action.ATTACH)) return;
 
         super.attachChild(key, child);
     }
 
+    /**
+     * Runs the checks on all children as one batch (see {@link KeyedCheckChain#testAll(Map, Utils.Action)}) then attaches the children that passed using {@link KeyedChildStructureImpl#attachChildren(Map)}.
+     *
+     * @param children the children being attached
+     */
+    @Override
+    public void attachChildren(Map<K, V> children) {
+        Map<K, V> batch = new LinkedHashMap<>(children);
+        checks.testAll(batch, Utils.Action.ATTACH);
+
+        super.attachChildren(batch);
+    }
+
     /**
      * Detaches a child based on a key.
      *
@@ -94,9 +135,19 @@ public class KeyedChildStructureWithChecks<K, V> extends KeyedChildStructureImpl
     public void detachChild(K key) {
         if(!isChildKeyAttached(key)) return;
         V c = getChild(key);
-        for (Utils.KeyedCheck<K,V> check: checks)
-            if(!check.apply(key, c, Utils.Action.DETACH)) return;
+        if(!checks.test(key, c, Utils.Action.DETACH)) return;
 
         super.detachChild(key);
     }
+
+    /**
+     * Runs the detach checks on all children as one batch (see {@link KeyedCheckChain#testAll(Map, Utils.Action)}) then detaches the children that passed in one step using {@link KeyedChildStructureImpl#detachAll(Map)}.
+     */
+    @Override
+    public void detachChildren() {
+        Map<K, V> batch = new LinkedHashMap<>(getChildrenAndKeys());
+        checks.testAll(batch, Utils.Action.DETACH);
+
+        detachAll(batch);
+    }
 }
@@ -0,0 +1,314 @@
+package om.self.structure.concurrent;
+
+import om.self.structure.bidirectional.BidirectionalStructure;
+import om.self.structure.bidirectional.LinkResult;
+import om.self.structure.child.ChildStructure;
+import om.self.structure.parent.ParentContainer;
+import om.self.structure.parent.ParentStructure;
+import om.self.structure.storage.ChildStorage;
+
+import java.util.Set;
+
+/**
+ * A thread safe version of {@link BidirectionalStructure} where attaching, detaching and moving a child changes both sides of the link at once, so a child is never stored by two parents or stored by a parent it doesn't point to.
+ * <br>
+ * Each node has its own lock. An operation locks the child, the new parent and the old parent (in a global order so operations can't deadlock) and when a child with children is moved, the ancestors of the new parent are locked too so two moves can't create a cycle. Operations on different parts of the tree don't wait on each other, and callbacks are called after the locks are released.
+ * <br>
+ * Links are only atomic between two {@link ConcurrentBidirectionalStructure}s. Other children and parents are linked through their interfaces after the locks are released like in {@link BidirectionalStructure}. The caches of {@link BidirectionalStructure} (like {@link om.self.structure.bidirectional.Ancestry} and {@link om.self.structure.bidirectional.SubtreeMetrics}) don't apply to this class.
+ * @param <PARENT> The type of the parent
+ * @param <CHILD> The type of the child
+ */
+public class ConcurrentBidirectionalStructure<PARENT, CHILD> extends ConcurrentNode implements ChildStructure<CHILD>, ParentStructure<PARENT> {
+    private volatile PARENT parent;
+    private final Set<CHILD> children;
+
+    /**
+     * Default constructor that creates a node without children or a parent
+     */
+    public ConcurrentBidirectionalStructure() {
+        this(ChildStorage.concurrent());
+    }
+
+    /**
+     * Creates a node without children or a parent that stores its children in a set made by storage (ex: {@link ChildStorage#optimistic()} for trees that are read much more often than they are changed).
+     * @param storage creates the set used to store the children (it has to be thread safe)
+     */
+    public ConcurrentBidirectionalStructure(ChildStorage storage) {
+        children = storage.createSet(0);
+    }
+
+    /**
+     * Creates a node with the specified parent attached
+     * @param parent the parent of this node
+     */
+    public ConcurrentBidirectionalStructure(PARENT parent) {
+        this();
+        attachParent(parent);
+    }
+
+    /**
+     * Creates a node with the specified children attached
+     * @param children the children to attach to this node
+     */
+    public ConcurrentBidirectionalStructure(Iterable<CHILD> children) {
+        this();
+        attachChildren(children);
+    }
+
+    @Override
+    Object parentNode() {
+        return parent;
+    }
+
+    @Override
+    boolean isLeaf() {
+        return children.isEmpty();
+    }
+
+    /**
+     * Attaches a child and attaches itself as the parent of the child (detaching the previous parent of the child). Nothing happens if the child is this node or one of its ancestors.
+     * @param child The child being attached
+     * @see #tryAttachChild(Object)
+     */
+    @Override
+    public void attachChild(CHILD child) {
+        tryAttachChild(child);
+    }
+
+    /**
+     * Attaches a child like {@link #attachChild(Object)} and reports what happened.
+     * @param child The child being attached
+     * @return {@link LinkResult#ATTACHED} if the child was attached and linked back, {@link LinkResult#PEER_FAILED} if a child that isn't concurrent didn't link back, or why nothing happened
+     */
+    @SuppressWarnings("unchecked")
+    public LinkResult tryAttachChild(CHILD child) {
+        if(child instanceof ConcurrentBidirectionalStructure<?,?> node) return link(this, node);
+
+        lock();
+        boolean added;
+        try{
+            added = children.add(child);
+        } finally {
+            unlock();
+        }
+        if(!added) return LinkResult.ALREADY_PRESENT;
+
+        LinkResult result = LinkResult.ATTACHED;
+        if(child instanceof ParentStructure<?> peer) {
+            ParentStructure<Object> structure = (ParentStructure<Object>) peer; //a child can only store this node as its parent, whatever its declared type
+            try{
+                structure.attachParent(this);
+            } catch(Exception e){}
+            if(structure.getParent() != this) result = LinkResult.PEER_FAILED;
+        }
+        onChildAttach(child);
+        return result;
+    }
+
+    /**
+     * Detaches a child and detaches itself as the parent of the child.
+     * @param child The child being detached
+     * @see #tryDetachChild(Object)
+     */
+    @Override
+    public void detachChild(CHILD child) {
+        tryDetachChild(child);
+    }
+
+    /**
+     * Detaches a child like {@link #detachChild(Object)} and reports what happened.
+     * @param child The child being detached
+     * @return {@link LinkResult#DETACHED} if the child was detached and unlinked, {@link LinkResult#PEER_FAILED} if a child that isn't concurrent kept this node as its parent, or why nothing happened
+     */
+    @SuppressWarnings("unchecked")
+    public LinkResult tryDetachChild(CHILD child) {
+        if(child instanceof ConcurrentBidirectionalStructure<?,?> node && node.parent == this) return unlink(this, node);
+
+        lock();
+        boolean removed;
+        try{
+            removed = children.remove(child);
+        } finally {
+            unlock();
+        }
+        if(!removed) return LinkResult.NOT_PRESENT;
+
+        LinkResult result = LinkResult.DETACHED;
+        if(child instanceof ParentContainer<?> container && container.getParent() == this) {
+            container.detachParent();
+            if(container.getParent() == this) result = LinkResult.PEER_FAILED;
+        }
+        onChildDetach(child);
+        return result;
+    }
+
+    /**
+     * Detaches all children one at a time (each child is detached atomically but other threads can attach children while this runs).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void detachChildren() {
+        for (Object child : children.toArray())
+            detachChild((CHILD) child);
+    }
+
+    /**
+     * Gets all attached children. The set is thread safe but changing it directly skips the locking, so only read it.
+     * @return attached children
+     */
+    @Override
+    public Set<CHILD> getChildren() {
+        return children;
+    }
+
+    /**
+     * Attaches a parent (detaching the previous parent) and attaches itself as a child of the parent. Nothing happens if the parent is this node or one of its descendants.
+     * @param parent the parent being attached
+     * @see #tryAttachParent(Object)
+     */
+    @Override
+    public void attachParent(PARENT parent) {
+        tryAttachParent(parent);
+    }
+
+    /**
+     * Attaches a parent like {@link #attachParent(Object)} and reports what happened.
+     * @param parent the parent being attached
+     * @return {@link LinkResult#ATTACHED} if the parent was attached and linked back, {@link LinkResult#PEER_FAILED} if a parent that isn't concurrent didn't store this node, or why nothing happened
+     */
+    @SuppressWarnings("unchecked")
+    public LinkResult tryAttachParent(PARENT parent) {
+        if(parent instanceof ConcurrentBidirectionalStructure<?,?> node) return link(node, this);
+        if(this.parent == parent) return LinkResult.ALREADY_PRESENT;
+
+        while (true) {
+            tryDetachParent();
+            lock();
+            try{
+                if(this.parent == null) { //retry if another thread attached a parent in between
+                    this.parent = parent;
+                    break;
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        LinkResult result = LinkResult.ATTACHED;
+        if(parent instanceof ChildStructure<?> peer) {
+            ChildStructure<Object> structure = (ChildStructure<Object>) peer; //a parent can only store this node as its child, whatever its declared type
+            try{
+                structure.attachChild(this);
+            } catch(Exception e){}
+            if(!structure.isChildAttached(this)) result = LinkResult.PEER_FAILED;
+        }
+        onParentAttach(parent);
+        return result;
+    }
+
+    /**
+     * Detaches the parent and detaches itself from the children of the parent.
+     * @see #tryDetachParent()
+     */
+    @Override
+    public void detachParent() {
+        tryDetachParent();
+    }
+
+    /**
+     * Detaches the parent like {@link #detachParent()} and reports what happened.
+     * @return {@link LinkResult#DETACHED} if the parent was detached and unlinked, {@link LinkResult#PEER_FAILED} if a parent that isn't concurrent still stores this node, or why nothing happened
+     */
+    @SuppressWarnings("unchecked")
+    public LinkResult tryDetachParent() {
+        PARENT parent = this.parent;
+        if(parent == null) return LinkResult.NOT_PRESENT;
+        if(parent instanceof ConcurrentBidirectionalStructure<?,?> node) return unlink(node, this);
+
+        lock();
+        try{
+            if(this.parent != parent) return LinkResult.NOT_PRESENT; //another thread changed the parent first
+            this.parent = null;
+        } finally {
+            unlock();
+        }
+
+        LinkResult result = LinkResult.DETACHED;
+        ChildStructure<Object> structure = parent instanceof ChildStructure<?> peer ? (ChildStructure<Object>) peer : null; //a parent can only store this node as its child, whatever its declared type
+        if(structure != null && structure.isChildAttached(this)) {
+            try{
+                structure.detachChild(this);
+            } catch(Exception e){}
+            if(structure.isChildAttached(this)) result = LinkResult.PEER_FAILED;
+        }
+        onParentDetach(parent);
+        return result;
+    }
+
+    /**
+     * Gets the attached parent.
+     * @return the parent
+     */
+    @Override
+    public PARENT getParent() {
+        return parent;
+    }
+
+    /**
+     * Makes a child point to a parent and the parent store the child, removing the child from its previous parent, all while the three nodes are locked.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LinkResult link(ConcurrentBidirectionalStructure parent, ConcurrentBidirectionalStructure child){
+        if(parent == child) return LinkResult.WOULD_CYCLE;
+
+        Object old;
+        while (true) {
+            old = child.parent;
+            boolean leaf = child.isLeaf();
+            ConcurrentNode[] ancestors = cycleGuard(parent, leaf);
+            ConcurrentNode[] locks = lock(ancestors, parent, child, old);
+            try{
+                if(child.parent != old || child.isLeaf() != leaf || (!leaf && !sameAncestors(parent, ancestors))) continue;
+                if(old == parent) return LinkResult.ALREADY_PRESENT;
+                if(!leaf && isAncestor(child, parent)) return LinkResult.WOULD_CYCLE;
+
+                if(old instanceof ConcurrentBidirectionalStructure<?,?> previous) previous.children.remove(child);
+                child.parent = parent;
+                parent.children.add(child);
+                break;
+            } finally {
+                unlock(locks);
+            }
+        }
+
+        if(old instanceof ConcurrentBidirectionalStructure previous) previous.onChildDetach(child);
+        else if(old instanceof ChildStructure structure && structure.isChildAttached(child)) {
+            try{
+                structure.detachChild(child);
+            } catch(Exception e){}
+        }
+        if(old != null) child.onParentDetach(old);
+        parent.onChildAttach(child);
+        child.onParentAttach(parent);
+        return LinkResult.ATTACHED;
+    }
+
+    /**
+     * Removes a child from a parent and clears the parent of the child while both nodes are locked.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LinkResult unlink(ConcurrentBidirectionalStructure parent, ConcurrentBidirectionalStructure child){
+        ConcurrentNode[] locks = lock(parent, child);
+        try{
+            if(child.parent != parent) return LinkResult.NOT_PRESENT;
+            child.parent = null;
+            parent.children.remove(child);
+        } finally {
+            unlock(locks);
+        }
+
+        parent.onChildDetach(child);
+        child.onParentDetach(parent);
+        return LinkResult.DETACHED;
+    }
+}
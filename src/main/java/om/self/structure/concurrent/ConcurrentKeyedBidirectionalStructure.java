@@ -0,0 +1,503 @@
+package om.self.structure.concurrent;
+
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.bidirectional.LinkResult;
+import om.self.structure.child.ChildStructure;
+import om.self.structure.child.KeyedChildStructure;
+import om.self.structure.parent.KeyedParentStructure;
+import om.self.structure.parent.ParentContainer;
+import om.self.structure.parent.ParentStructure;
+import om.self.structure.storage.ChildStorage;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A thread safe version of {@link KeyedBidirectionalStructure} where attaching, detaching, replacing and moving a child changes both sides of the link at once, so a child is only ever stored under the key it remembers by the parent it points to.
+ * <br>
+ * This uses the same per-node locks as {@link ConcurrentBidirectionalStructure}: an operation locks the child, the new parent, the old parent and the child being replaced (in a global order so operations can't deadlock), plus the ancestors of the new parent when a child with children is moved. Callbacks are called after the locks are released.
+ * <br>
+ * Links are only atomic between two {@link ConcurrentKeyedBidirectionalStructure}s. Other children and parents are linked through their interfaces after the locks are released like in {@link KeyedBidirectionalStructure}.
+ * @param <K> the type of the keys
+ * @param <PARENT> the type of the parent
+ * @param <CHILD> the type of the children
+ */
+public class ConcurrentKeyedBidirectionalStructure<K, PARENT, CHILD> extends ConcurrentNode implements KeyedChildStructure<K, CHILD>, KeyedParentStructure<K, PARENT> {
+    /**
+     * The parent with both of its keys, replaced as a whole so they are always read together
+     */
+    private record Link<K, PARENT>(K parentKey, K childKey, PARENT parent){}
+
+    private volatile Link<K, PARENT> link;
+    private final Map<K, CHILD> children;
+
+    /**
+     * Default constructor that creates a node without children or a parent
+     */
+    public ConcurrentKeyedBidirectionalStructure() {
+        this(ChildStorage.concurrent());
+    }
+
+    /**
+     * Creates a node without children or a parent that stores its children in a map made by storage (ex: {@link ChildStorage#optimistic()} for trees that are read much more often than they are changed).
+     * @param storage creates the map used to store the children (it has to be thread safe)
+     */
+    public ConcurrentKeyedBidirectionalStructure(ChildStorage storage) {
+        children = storage.createMap(0);
+    }
+
+    @Override
+    Object parentNode() {
+        Link<K, PARENT> link = this.link;
+        return link == null ? null : link.parent;
+    }
+
+    @Override
+    boolean isLeaf() {
+        return children.isEmpty();
+    }
+
+    /**
+     * Attaches a child (replacing the child with the same key) then attaches itself as the parent of the child using the key parameter as the key.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @see #tryAttachChild(Object, Object, Object)
+     */
+    @Override
+    public void attachChild(K key, CHILD child) {
+        tryAttachChild(key, child, null);
+    }
+
+    /**
+     * Attaches a child (replacing the child with the same key) then attaches itself as the parent of the child. Nothing happens if the child is this node or one of its ancestors.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @param customParentKey if not null, it will use this parameter as the key when this object attaches itself as the parent to the child else it will just use the key parameter
+     * @see #tryAttachChild(Object, Object, Object)
+     */
+    public void attachChild(K key, CHILD child, K customParentKey) {
+        tryAttachChild(key, child, customParentKey);
+    }
+
+    /**
+     * Attaches a child like {@link #attachChild(Object, Object)} and reports what happened.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @return what happened (see {@link #tryAttachChild(Object, Object, Object)})
+     */
+    public LinkResult tryAttachChild(K key, CHILD child) {
+        return tryAttachChild(key, child, null);
+    }
+
+    /**
+     * Attaches a child like {@link #attachChild(Object, Object, Object)} and reports what happened.
+     * @param key the key associated with the child
+     * @param child the child being attached
+     * @param customParentKey if not null, it will use this parameter as the key when this object attaches itself as the parent to the child else it will just use the key parameter
+     * @return {@link LinkResult#ATTACHED} if the child was attached and linked back, {@link LinkResult#PEER_FAILED} if a child that isn't concurrent didn't link back, or why nothing happened
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LinkResult tryAttachChild(K key, CHILD child, K customParentKey) {
+        if(key == null) throw new IllegalArgumentException("the key argument can not be null!");
+        K parentKey = Objects.requireNonNullElse(customParentKey, key);
+        if(child instanceof ConcurrentKeyedBidirectionalStructure node) return link(this, key, node, parentKey);
+
+        CHILD replaced;
+        Link<?, ?> released;
+        while (true) {
+            replaced = children.get(key);
+            ConcurrentNode[] locks = lock(this, replaced);
+            try{
+                if(children.get(key) != replaced) continue;
+                if(replaced == child) return LinkResult.ALREADY_PRESENT;
+                released = release(this, key, replaced);
+                children.put(key, child);
+                break;
+            } finally {
+                unlock(locks);
+            }
+        }
+        replaced(this, key, replaced, released);
+
+        LinkResult result = LinkResult.ATTACHED;
+        if(child instanceof ParentContainer<?> container) {
+            try{
+                if(child instanceof KeyedParentStructure structure) structure.attachParent(parentKey, this);
+                else if(child instanceof ParentStructure structure) structure.attachParent(this);
+            } catch(Exception e){}
+            if(container.getParent() != this) result = LinkResult.PEER_FAILED;
+        }
+        onChildAttach(key, child);
+        return result;
+    }
+
+    /**
+     * Detaches a child and detaches itself as the parent of the child.
+     * @param key the key of the child being detached
+     * @see #tryDetachChild(Object)
+     */
+    @Override
+    public void detachChild(K key) {
+        tryDetachChild(key);
+    }
+
+    /**
+     * Detaches a child like {@link #detachChild(Object)} and reports what happened.
+     * @param key the key of the child being detached
+     * @return {@link LinkResult#DETACHED} if the child was detached and unlinked, {@link LinkResult#PEER_FAILED} if a child that isn't concurrent kept this node as its parent, or why nothing happened
+     */
+    public LinkResult tryDetachChild(K key) {
+        while (true) {
+            CHILD child = children.get(key);
+            if(child == null) return LinkResult.NOT_PRESENT;
+
+            Link<?, ?> link = child instanceof ConcurrentKeyedBidirectionalStructure<?, ?, ?> node ? node.link : null; //read once, another thread can clear it in between
+            if(link != null && link.parent == this) {
+                LinkResult result = unlink(this, (ConcurrentKeyedBidirectionalStructure<?, ?, ?>) child);
+                if(result != LinkResult.NOT_PRESENT) return result;
+                continue; //the child was moved by another thread
+            }
+
+            lock();
+            try{
+                if(!children.remove(key, child)) continue;
+            } finally {
+                unlock();
+            }
+
+            LinkResult result = LinkResult.DETACHED;
+            if(child instanceof ParentContainer<?> container && container.getParent() == this) {
+                container.detachParent();
+                if(container.getParent() == this) result = LinkResult.PEER_FAILED;
+            }
+            onChildDetach(key, child);
+            return result;
+        }
+    }
+
+    /**
+     * Detaches all children one at a time (each child is detached atomically but other threads can attach children while this runs).
+     */
+    @Override
+    public void detachChildren() {
+        for (K key : new ArrayList<>(children.keySet()))
+            detachChild(key);
+    }
+
+    /**
+     * Moves a child to a new key (nothing happens if the old key isn't attached or the new key is). When the attach and detach methods aren't used, the key is changed on both sides while they are locked.
+     * @param oldKey the key of the child you want to move to a new key
+     * @param newKey the new key you want to move the child to
+     * @param useAttachDetach whether to call the attach and detach methods which invoke onAttach and onDetach or could have custom logic
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void renameChild(K oldKey, K newKey, boolean useAttachDetach) {
+        if(newKey == null) throw new IllegalArgumentException("the key argument can not be null!");
+        if(useAttachDetach) {
+            KeyedChildStructure.super.renameChild(oldKey, newKey, true);
+            return;
+        }
+
+        while (true) {
+            CHILD child = children.get(oldKey);
+            if(child == null) return;
+            ConcurrentNode[] locks = lock(this, child);
+            try{
+                if(children.get(oldKey) != child) continue;
+                if(children.containsKey(newKey)) return;
+                children.remove(oldKey);
+                children.put(newKey, child);
+                if(child instanceof ConcurrentKeyedBidirectionalStructure node && node.link != null && node.link.parent == this && oldKey.equals(node.link.childKey))
+                    node.link = new Link<>(node.link.parentKey, newKey, this);
+                return;
+            } finally {
+                unlock(locks);
+            }
+        }
+    }
+
+    /**
+     * Gets the attached children along with their keys. The map is thread safe but changing it directly skips the locking, so only read it.
+     * @return The children and their keys
+     */
+    @Override
+    public Map<K, CHILD> getChildrenAndKeys() {
+        return children;
+    }
+
+    /**
+     * Checks whether a child is attached based on the key
+     * @param key the key of the child you want to check
+     * @return if the child is attached
+     */
+    @Override
+    public boolean isChildKeyAttached(K key) {
+        return children.containsKey(key);
+    }
+
+    /**
+     * Attaches a parent (detaching the previous parent) and attaches itself as a child of the parent using the key.
+     * @param key the key associated with the parent
+     * @param parent the parent being attached
+     * @see #tryAttachParent(Object, Object, Object)
+     */
+    @Override
+    public void attachParent(K key, PARENT parent) {
+        tryAttachParent(key, parent, null);
+    }
+
+    /**
+     * Attaches a parent (detaching the previous parent) and attaches itself as a child of the parent. Nothing happens if the parent is this node or one of its descendants.
+     * @param key the key associated with the parent
+     * @param parent the parent being attached
+     * @param customChildName if not null, it will use this parameter to attach this object as a child to the parent else it will just use the key parameter
+     * @see #tryAttachParent(Object, Object, Object)
+     */
+    public void attachParent(K key, PARENT parent, K customChildName) {
+        tryAttachParent(key, parent, customChildName);
+    }
+
+    /**
+     * Attaches a parent like {@link #attachParent(Object, Object)} and reports what happened.
+     * @param key the key associated with the parent
+     * @param parent the parent being attached
+     * @return what happened (see {@link #tryAttachParent(Object, Object, Object)})
+     */
+    public LinkResult tryAttachParent(K key, PARENT parent) {
+        return tryAttachParent(key, parent, null);
+    }
+
+    /**
+     * Attaches a parent like {@link #attachParent(Object, Object, Object)} and reports what happened.
+     * @param key the key associated with the parent
+     * @param parent the parent being attached
+     * @param customChildName if not null, it will use this parameter to attach this object as a child to the parent else it will just use the key parameter
+     * @return {@link LinkResult#ATTACHED} if the parent was attached and linked back, {@link LinkResult#PEER_FAILED} if a parent that isn't concurrent didn't store this node, or why nothing happened
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LinkResult tryAttachParent(K key, PARENT parent, K customChildName) {
+        if(key == null) throw new IllegalArgumentException("the key argument can not be null!");
+        K childKey = Objects.requireNonNullElse(customChildName, key);
+        if(parent instanceof ConcurrentKeyedBidirectionalStructure node) return link(node, childKey, this, key);
+
+        Link<K, PARENT> current = link;
+        if(current != null && current.parent == parent && Objects.equals(current.parentKey, key)) return LinkResult.ALREADY_PRESENT;
+
+        while (true) {
+            tryDetachParent(null);
+            lock();
+            try{
+                if(link == null) { //retry if another thread attached a parent in between
+                    link = new Link<>(key, childKey, parent);
+                    break;
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        LinkResult result = LinkResult.ATTACHED;
+        if(parent instanceof KeyedChildStructure structure) {
+            try{
+                structure.attachChild(childKey, this);
+            } catch(Exception e){}
+            if(structure.getChild(childKey) != this) result = LinkResult.PEER_FAILED;
+        } else if(parent instanceof ChildStructure structure) {
+            try{
+                structure.attachChild(this);
+            } catch(Exception e){}
+            if(!structure.isChildAttached(this)) result = LinkResult.PEER_FAILED;
+        }
+        onParentAttach(key, parent);
+        return result;
+    }
+
+    /**
+     * Detaches the parent and detaches itself from the children of the parent.
+     * @param customChildName if not null and the parent isn't concurrent, it will use this parameter to detach this object as a child from the parent else it will just use the {@link #getChildKey() key this node was attached with}
+     * @see #tryDetachParent(Object)
+     */
+    public void detachParent(K customChildName) {
+        tryDetachParent(customChildName);
+    }
+
+    /**
+     * Detaches the parent like {@link #detachParent(Object)} and reports what happened.
+     * @param customChildName if not null and the parent isn't concurrent, it will use this parameter to detach this object as a child from the parent else it will just use the {@link #getChildKey() key this node was attached with}
+     * @return {@link LinkResult#DETACHED} if the parent was detached and unlinked, {@link LinkResult#PEER_FAILED} if a parent that isn't concurrent still stores this node, or why nothing happened
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LinkResult tryDetachParent(K customChildName) {
+        Link<K, PARENT> current = link;
+        if(current == null) return LinkResult.NOT_PRESENT;
+        if(current.parent instanceof ConcurrentKeyedBidirectionalStructure node) return unlink(node, this);
+
+        lock();
+        try{
+            if(link != current) return LinkResult.NOT_PRESENT; //another thread changed the parent first
+            link = null;
+        } finally {
+            unlock();
+        }
+
+        K name = Objects.requireNonNullElse(customChildName, current.childKey);
+        LinkResult result = LinkResult.DETACHED;
+        if(current.parent instanceof KeyedChildStructure structure) {
+            if(structure.getChild(name) == this) {
+                try{
+                    structure.detachChild(name);
+                } catch(Exception e){}
+                if(structure.getChild(name) == this) result = LinkResult.PEER_FAILED;
+            }
+        } else if(current.parent instanceof ChildStructure structure && structure.isChildAttached(this)) {
+            try{
+                structure.detachChild(this);
+            } catch(Exception e){}
+            if(structure.isChildAttached(this)) result = LinkResult.PEER_FAILED;
+        }
+        onParentDetach(current.parentKey, current.parent);
+        return result;
+    }
+
+    /**
+     * Detaches the parent and detaches itself from the children of the parent using the {@link #getChildKey() key this node was attached with}.
+     * @see #detachParent(Object)
+     */
+    @Override
+    public void detachParent() {
+        tryDetachParent(null);
+    }
+
+    /**
+     * Detaches the parent like {@link #detachParent()} and reports what happened.
+     * @return what happened (see {@link #tryDetachParent(Object)})
+     */
+    public LinkResult tryDetachParent() {
+        return tryDetachParent(null);
+    }
+
+    /**
+     * Gets the attached parent.
+     * @return the parent
+     */
+    @Override
+    public PARENT getParent() {
+        Link<K, PARENT> link = this.link;
+        return link == null ? null : link.parent;
+    }
+
+    /**
+     * Gets the key of the attached parent.
+     * @return the key of attached parent, null if no parent is attached
+     */
+    @Override
+    public K getParentKey() {
+        Link<K, PARENT> link = this.link;
+        return link == null ? null : link.parentKey;
+    }
+
+    /**
+     * Gets the key this node is stored under in the children of its parent.
+     * @return the key of this node, null if no parent is attached
+     */
+    public K getChildKey() {
+        Link<K, PARENT> link = this.link;
+        return link == null ? null : link.childKey;
+    }
+
+    /**
+     * Stores a child under a key of a parent and makes the child point to the parent, removing the child from its previous parent and unlinking the child it replaces, all while those nodes are locked.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LinkResult link(ConcurrentKeyedBidirectionalStructure parent, Object key, ConcurrentKeyedBidirectionalStructure child, Object parentKey){
+        if(parent == child) return LinkResult.WOULD_CYCLE;
+
+        Link old;
+        Object replaced;
+        Link<?, ?> released;
+        while (true) {
+            old = child.link;
+            replaced = parent.children.get(key);
+            boolean leaf = child.isLeaf();
+            ConcurrentNode[] ancestors = cycleGuard(parent, leaf);
+            ConcurrentNode[] locks = lock(ancestors, parent, child, old == null ? null : old.parent, replaced);
+            try{
+                if(child.link != old || parent.children.get(key) != replaced || child.isLeaf() != leaf || (!leaf && !sameAncestors(parent, ancestors))) continue;
+                if(replaced == child) return LinkResult.ALREADY_PRESENT;
+                if(!leaf && isAncestor(child, parent)) return LinkResult.WOULD_CYCLE;
+
+                if(old != null && old.parent instanceof ConcurrentKeyedBidirectionalStructure previous) previous.children.remove(old.childKey, child);
+                released = release(parent, key, replaced);
+                child.link = new Link<>(parentKey, key, parent);
+                parent.children.put(key, child);
+                break;
+            } finally {
+                unlock(locks);
+            }
+        }
+
+        if(old != null) {
+            if(old.parent instanceof ConcurrentKeyedBidirectionalStructure previous) previous.onChildDetach(old.childKey, child);
+            else if(old.parent instanceof KeyedChildStructure structure && structure.getChild(old.childKey) == child) {
+                try{
+                    structure.detachChild(old.childKey);
+                } catch(Exception e){}
+            } else if(old.parent instanceof ChildStructure structure && structure.isChildAttached(child)) {
+                try{
+                    structure.detachChild(child);
+                } catch(Exception e){}
+            }
+            child.onParentDetach(old.parentKey, old.parent);
+        }
+        replaced(parent, key, replaced, released);
+        parent.onChildAttach(key, child);
+        child.onParentAttach(parentKey, parent);
+        return LinkResult.ATTACHED;
+    }
+
+    /**
+     * Removes a child from a parent and clears the parent of the child while both nodes are locked.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LinkResult unlink(ConcurrentKeyedBidirectionalStructure parent, ConcurrentKeyedBidirectionalStructure child){
+        Link old;
+        ConcurrentNode[] locks = lock(parent, child);
+        try{
+            old = child.link;
+            if(old == null || old.parent != parent) return LinkResult.NOT_PRESENT;
+            child.link = null;
+            parent.children.remove(old.childKey, child);
+        } finally {
+            unlock(locks);
+        }
+
+        parent.onChildDetach(old.childKey, child);
+        child.onParentDetach(old.parentKey, parent);
+        return LinkResult.DETACHED;
+    }
+
+    /**
+     * Clears the parent of a child that is about to be replaced if it points to the parent with the same key (the parent and the child must be locked).
+     * @return the link that was cleared or null if the child wasn't linked back
+     */
+    private static Link<?, ?> release(ConcurrentKeyedBidirectionalStructure<?, ?, ?> parent, Object key, Object replaced){
+        if(!(replaced instanceof ConcurrentKeyedBidirectionalStructure<?, ?, ?> node)) return null;
+        Link<?, ?> link = node.link;
+        if(link == null || link.parent != parent || !key.equals(link.childKey)) return null;
+        node.link = null;
+        return link;
+    }
+
+    /**
+     * Calls the callbacks for a child that was replaced and detaches the parent of the child if it isn't concurrent (called after the locks are released).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void replaced(ConcurrentKeyedBidirectionalStructure parent, Object key, Object replaced, Link<?, ?> released){
+        if(replaced == null) return;
+        if(released != null) ((ConcurrentKeyedBidirectionalStructure) replaced).onParentDetach(released.parentKey, parent);
+        else if(!(replaced instanceof ConcurrentKeyedBidirectionalStructure) && replaced instanceof ParentContainer<?> container && container.getParent() == parent) container.detachParent();
+        parent.onChildDetach(key, replaced);
+    }
+}
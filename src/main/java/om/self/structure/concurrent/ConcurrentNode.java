@@ -0,0 +1,138 @@
+package om.self.structure.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The per-node lock shared by the concurrent structures.
+ * <br>
+ * Every node gets a unique id when it is created, and an operation always takes all the locks it needs up front in order of those ids (and releases them before calling any callbacks), so two operations can never wait on each other in a cycle. Operations read what they need to lock without locking, then check that nothing changed once the locks are taken and start over if it did.
+ */
+abstract class ConcurrentNode {
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final ConcurrentNode[] NONE = new ConcurrentNode[0];
+    private static final Comparator<ConcurrentNode> LOCK_ORDER = Comparator.comparingLong(node -> node.lockId);
+
+    private final long lockId = IDS.getAndIncrement();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Gets the parent of this node without locking.
+     * @return the parent or null if there is no parent
+     */
+    abstract Object parentNode();
+
+    /**
+     * Checks if this node has children without locking (a node can't get or lose children while it is locked).
+     * @return if this node has no children
+     */
+    abstract boolean isLeaf();
+
+    /**
+     * Locks this node by itself (only used for changes that don't touch another concurrent node).
+     */
+    void lock(){
+        lock.lock();
+    }
+
+    void unlock(){
+        lock.unlock();
+    }
+
+    /**
+     * Gets the concurrent ancestors of a node (closest first), stopping at the first ancestor that isn't a concurrent node.
+     * @param node the node
+     * @return the ancestors
+     */
+    static ConcurrentNode[] ancestors(ConcurrentNode node){
+        if(!(node.parentNode() instanceof ConcurrentNode)) return NONE;
+
+        ArrayList<ConcurrentNode> ancestors = new ArrayList<>();
+        for (Object current = node.parentNode(); current instanceof ConcurrentNode ancestor; current = ancestor.parentNode()) {
+            if(ancestor == node) break; //a cycle made outside the lock protocol
+            ancestors.add(ancestor);
+        }
+        return ancestors.toArray(NONE);
+    }
+
+    /**
+     * Checks that the ancestors of a node are still the ones returned by {@link #ancestors(ConcurrentNode)}.
+     * @param node the node
+     * @param ancestors the ancestors that were read before locking
+     * @return if the ancestors didn't change
+     */
+    static boolean sameAncestors(ConcurrentNode node, ConcurrentNode[] ancestors){
+        Object current = node.parentNode();
+        for (ConcurrentNode ancestor : ancestors) {
+            if(current != ancestor) return false;
+            current = ancestor.parentNode();
+        }
+        return !(current instanceof ConcurrentNode);
+    }
+
+    /**
+     * Checks if a node is above another node by walking the parents of the other node.
+     * @param ancestor the possible ancestor
+     * @param node the node
+     * @return if ancestor is the parent, grandparent, ... of node
+     */
+    static boolean isAncestor(ConcurrentNode ancestor, ConcurrentNode node){
+        for (Object current = node.parentNode(); current instanceof ConcurrentNode parent; current = parent.parentNode())
+            if(current == ancestor) return true;
+        return false;
+    }
+
+    /**
+     * Locks every concurrent node in a set of nodes in lock order (nodes that aren't concurrent and duplicates are skipped).
+     * @param ancestors more nodes to lock
+     * @param nodes the nodes to lock (can contain null)
+     * @return the locked nodes (pass this to {@link #unlock(ConcurrentNode[])})
+     */
+    static ConcurrentNode[] lock(ConcurrentNode[] ancestors, Object... nodes){
+        ConcurrentNode[] locks = Arrays.copyOf(ancestors, ancestors.length + nodes.length);
+        int size = ancestors.length;
+        for (Object node : nodes)
+            if(node instanceof ConcurrentNode concurrent) locks[size++] = concurrent;
+        Arrays.sort(locks, 0, size, LOCK_ORDER);
+
+        int unique = 0;
+        for (int i = 0; i < size; i++)
+            if(unique == 0 || locks[unique - 1] != locks[i]) locks[unique++] = locks[i];
+        locks = Arrays.copyOf(locks, unique);
+
+        for (ConcurrentNode node : locks)
+            node.lock.lock();
+        return locks;
+    }
+
+    /**
+     * Locks every concurrent node in a set of nodes in lock order.
+     * @param nodes the nodes to lock (can contain null)
+     * @return the locked nodes (pass this to {@link #unlock(ConcurrentNode[])})
+     */
+    static ConcurrentNode[] lock(Object... nodes){
+        return lock(NONE, nodes);
+    }
+
+    /**
+     * Unlocks nodes locked by {@link #lock(Object...)}.
+     * @param locks the locked nodes
+     */
+    static void unlock(ConcurrentNode[] locks){
+        for (int i = locks.length - 1; i >= 0; i--)
+            locks[i].lock.unlock();
+    }
+
+    /**
+     * Gets the ancestors that have to be locked to attach a child to a parent. A child without children can't create a cycle so nothing more has to be locked, but when a subtree is moved the ancestors of the new parent are locked so none of them can be moved under the subtree at the same time.
+     * @param parent the new parent
+     * @param leaf if the child has no children
+     * @return the ancestors to lock
+     */
+    static ConcurrentNode[] cycleGuard(ConcurrentNode parent, boolean leaf){
+        return leaf ? NONE : ancestors(parent);
+    }
+}
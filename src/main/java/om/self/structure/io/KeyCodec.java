@@ -0,0 +1,79 @@
+package om.self.structure.io;
+
+import java.io.IOException;
+
+/**
+ * Writes and reads the keys of a keyed structure. Each distinct key is only written once per tree (later uses refer to it by its index in the key dictionary of the tree).
+ * @param <K> the type of the keys
+ */
+public interface KeyCodec<K> {
+    /**
+     * Writes a key.
+     * @param out the output
+     * @param key the key (never null)
+     * @throws IOException if the output fails
+     */
+    void write(StructureOutput out, K key) throws IOException;
+
+    /**
+     * Reads a key written by {@link #write(StructureOutput, Object)}.
+     * @param in the input
+     * @return the key
+     * @throws IOException if the input fails
+     */
+    K read(StructureInput in) throws IOException;
+
+    /**
+     * Writes {@link String} keys as UTF-8.
+     * @return the codec
+     */
+    static KeyCodec<String> strings(){
+        return new KeyCodec<>() {
+            @Override
+            public void write(StructureOutput out, String key) throws IOException {
+                out.writeString(key);
+            }
+
+            @Override
+            public String read(StructureInput in) throws IOException {
+                return in.readString();
+            }
+        };
+    }
+
+    /**
+     * Writes {@link Integer} keys as zigzag varints.
+     * @return the codec
+     */
+    static KeyCodec<Integer> integers(){
+        return new KeyCodec<>() {
+            @Override
+            public void write(StructureOutput out, Integer key) throws IOException {
+                out.writeVarLong(key);
+            }
+
+            @Override
+            public Integer read(StructureInput in) throws IOException {
+                return (int) in.readVarLong();
+            }
+        };
+    }
+
+    /**
+     * Writes {@link Long} keys as zigzag varints.
+     * @return the codec
+     */
+    static KeyCodec<Long> longs(){
+        return new KeyCodec<>() {
+            @Override
+            public void write(StructureOutput out, Long key) throws IOException {
+                out.writeVarLong(key);
+            }
+
+            @Override
+            public Long read(StructureInput in) throws IOException {
+                return in.readVarLong();
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package om.self.structure.io;
+
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opens a tree written by {@link StructureWriter#writeIndexed(Object, KeyCodec, ValueCodec)} by memory mapping the file and only reading the root. The children of each node are attached with {@link KeyedBidirectionalStructure#attachChildrenLazily(java.util.function.Supplier)}, so a level of the tree is only read (and paged in by the OS) the first time the children of its parent are used. Keys are also read the first time they are used. If a level can't be read when it is loaded, an {@link UncheckedIOException} is thrown by the method that used the children.
+ * <br>
+ * Because nodes point at their children, opening takes the same time no matter how big the tree is. Queries that need the whole subtree (like {@link KeyedBidirectionalStructure#getSubtreeSize()}) load every node in it. The file is mapped read only and must not be changed while the tree is used, and files larger than 2GB can't be mapped.
+ * @param <K> the type of the keys
+ * @param <N> the type of the nodes
+ */
+public final class MappedStructureReader<K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> {
+    private final ByteBuffer file;
+    private final KeyCodec<K> keyCodec;
+    private final ValueCodec<N> values;
+    private final int keyTable;
+    private final Object[] keys;
+
+    private MappedStructureReader(ByteBuffer file, KeyCodec<K> keyCodec, ValueCodec<N> values, int keyTable, int keyCount) {
+        this.file = file;
+        this.keyCodec = keyCodec;
+        this.values = values;
+        this.keyTable = keyTable;
+        this.keys = new Object[keyCount];
+    }
+
+    /**
+     * Opens a tree written with {@link StructureWriter#writeIndexed(Object, KeyCodec, ValueCodec)}.
+     * @param path the file the tree was written to
+     * @param keys reads the keys
+     * @param values creates the nodes ({@link ValueCodec#complete(Object)} is called for each node as soon as it is created, before its children are loaded)
+     * @return the root of the tree
+     * @param <K> the type of the keys
+     * @param <N> the type of the nodes
+     * @throws IOException if the file can't be read or isn't an indexed tree
+     */
+    public static <K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> N readIndexed(Path path, KeyCodec<K> keys, ValueCodec<N> values) throws IOException {
+        ByteBuffer file;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE) throw new IOException("the file is too large to map!");
+            if(size < StructureFormat.HEADER_SIZE + StructureFormat.TRAILER_SIZE) throw new IOException("the input is not a structure!");
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        StructureFormat.readHeader(new StructureInput(file.duplicate()), StructureFormat.INDEXED);
+        int trailer = file.limit() - StructureFormat.TRAILER_SIZE;
+        long root = file.getLong(trailer);
+        long keyTable = file.getLong(trailer + 8);
+        int keyCount = file.getInt(trailer + 16);
+        if(file.getInt(trailer + 20) != StructureFormat.MAGIC || root < 0 || root >= keyTable || keyCount < 0 || keyTable + 8L * keyCount != trailer)
+            throw new IOException("the structure is not indexed or is damaged!");
+
+        return new MappedStructureReader<>(file, keys, values, (int) keyTable, keyCount).node((int) root);
+    }
+
+    /**
+     * Creates the node stored at a position and attaches its children lazily.
+     */
+    private N node(int position) throws IOException {
+        if(position < StructureFormat.HEADER_SIZE || position >= keyTable) throw new IOException("the structure points outside of its nodes!");
+        ByteBuffer buffer = file.duplicate().position(position);
+        StructureInput in = new StructureInput(buffer);
+        N node = values.read(in);
+        int count = in.readVarInt();
+        if(count > 0) {
+            int table = buffer.position();
+            node.attachChildrenLazily(() -> children(position, table, count));
+        }
+        values.complete(node);
+        return node;
+    }
+
+    /**
+     * Creates the children of a node (called the first time the children are used).
+     * @param position the position of the node
+     * @param table the position of the child table of the node
+     * @param count the amount of children
+     */
+    private Map<K, N> children(int position, int table, int count) {
+        try{
+            StructureInput in = new StructureInput(file.duplicate().position(table));
+            Map<K, N> children = new LinkedHashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                K key = key(in.readVarInt());
+                long offset = in.readVarLong();
+                if(offset <= 0 || offset > position) throw new IOException("the structure points outside of its nodes!");
+                children.put(key, node((int) (position - offset)));
+            }
+            return children;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(int index) throws IOException {
+        if(index < 0 || index >= keys.length) throw new IOException("the key index " + index + " is not in the key table!");
+        Object key = keys[index];
+        if(key == null) {
+            long position = file.getLong(keyTable + 8 * index);
+            if(position < StructureFormat.HEADER_SIZE || position >= keyTable) throw new IOException("the structure points outside of its keys!");
+            key = keyCodec.read(new StructureInput(file.duplicate().position((int) position)));
+            keys[index] = key;
+        }
+        return (K) key;
+    }
+}
@@ -0,0 +1,39 @@
+package om.self.structure.io;
+
+import java.io.IOException;
+
+/**
+ * The constants of the binary format shared by {@link StructureWriter} and {@link StructureReader}.
+ * <br>
+ * A tree is written as a header (the magic number, the format version and the kind of tree) followed by its nodes in pre-order. Each node is its value (written by a {@link ValueCodec}), a varint with its amount of children, then each child. In a keyed tree every child is preceded by its key: a varint that is 0 for a key written for the first time (followed by the key written by a {@link KeyCodec}, which gets the next index in the key dictionary of the tree) or the index of the key plus 1.
+ * <br>
+ * An indexed tree (read by {@link MappedStructureReader}) has the same header, but its nodes are written in post-order so each node can point at its children: a node is its value, a varint with its amount of children, then for each child the index of its key and how many bytes before the node the child starts (a varlong). The nodes are followed by the keys (in dictionary order), a table with the position of each key (longs), and a trailer with the position of the root (a long), the position of the key table (a long), the amount of keys (an int) and the magic number. Positions count from the start of the header.
+ * <br>
+ * A {@link StructureJournal} is a list of blocks (an int with the size of the block, an int with its CRC32, then its bytes). The highest bit of the size is set when the last record of the block continues in the next block. The bytes of the blocks are read as one stream that starts with the header and the whole tree (a keyed tree), followed by records made of a type byte and the paths and keys it needs (using one key dictionary for the whole journal).
+ */
+final class StructureFormat {
+    static final int MAGIC = 0x53545243; //"STRC"
+    static final int VERSION = 1;
+    static final int KEYED = 1;
+    static final int UNKEYED = 2;
+    static final int INDEXED = 3;
+    static final int JOURNAL = 4;
+    static final int HEADER_SIZE = 6;
+    static final int TRAILER_SIZE = 24;
+
+    private StructureFormat() {}
+
+    static void writeHeader(StructureOutput out, int kind) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+    }
+
+    static void readHeader(StructureInput in, int kind) throws IOException {
+        if(in.readInt() != MAGIC) throw new IOException("the input is not a structure!");
+        int version = in.readByte();
+        if(version != VERSION) throw new IOException("unsupported structure format version " + version + "!");
+        int actual = in.readByte();
+        if(actual != kind) throw new IOException(actual == KEYED ? "the structure is keyed!" : "the structure is not keyed!");
+    }
+}
@@ -0,0 +1,170 @@
+package om.self.structure.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary input used by {@link StructureReader} and the codecs it calls (it reads what {@link StructureOutput} writes). Bytes are read from the channel into a direct {@link ByteBuffer} in large blocks, or straight from a memory mapped file for {@link MappedStructureReader}.
+ */
+public final class StructureInput {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    StructureInput(ReadableByteChannel channel, int bufferSize) {
+        if(bufferSize < 16) throw new IllegalArgumentException("the buffer size has to be at least 16 bytes!");
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.flip();
+    }
+
+    /**
+     * Creates an input that reads the remaining bytes of a buffer (ex: a part of a memory mapped file).
+     */
+    StructureInput(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Makes sure a number of bytes are in the buffer by reading more from the channel.
+     */
+    private void require(int bytes) throws IOException {
+        if(buffer.remaining() >= bytes) return;
+        if(channel == null) throw new EOFException("the structure ended early!");
+        buffer.compact();
+        try{
+            while (buffer.position() < bytes)
+                if(channel.read(buffer) < 0) throw new EOFException("the structure ended early!");
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Checks if there is nothing left to read.
+     * @return if the channel has no more bytes
+     * @throws IOException if the channel fails
+     */
+    public boolean isAtEnd() throws IOException {
+        if(buffer.hasRemaining()) return false;
+        if(channel == null) return true;
+        buffer.clear();
+        try{
+            return channel.read(buffer) < 0;
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Reads a byte.
+     * @return the value
+     * @throws IOException if the channel fails
+     */
+    public int readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    /**
+     * Reads a boolean.
+     * @return the value
+     * @throws IOException if the channel fails
+     */
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    /**
+     * Reads an int (4 bytes).
+     * @return the value
+     * @throws IOException if the channel fails
+     */
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    /**
+     * Reads a long (8 bytes).
+     * @return the value
+     * @throws IOException if the channel fails
+     */
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads a double (8 bytes).
+     * @return the value
+     * @throws IOException if the channel fails
+     */
+    public double readDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Reads a varint written by {@link StructureOutput#writeVarInt(int)}.
+     * @return the number
+     * @throws IOException if the channel fails or the varint is invalid
+     */
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                if(value < 0) break;
+                return value;
+            }
+        }
+        throw new IOException("invalid varint!");
+    }
+
+    /**
+     * Reads a varint written by {@link StructureOutput#writeVarLong(long)}.
+     * @return the number
+     * @throws IOException if the channel fails or the varint is invalid
+     */
+    public long readVarLong() throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IOException("invalid varint!");
+    }
+
+    /**
+     * Reads a number of bytes.
+     * @param length the amount of bytes
+     * @return the bytes
+     * @throws IOException if the channel fails
+     */
+    public byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if(!buffer.hasRemaining()) require(1);
+            int chunk = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads a string written by {@link StructureOutput#writeString(String)}.
+     * @return the string
+     * @throws IOException if the channel fails
+     */
+    public String readString() throws IOException {
+        return new String(readBytes(readVarInt()), StandardCharsets.UTF_8);
+    }
+}
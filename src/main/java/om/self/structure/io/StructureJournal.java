@@ -0,0 +1,617 @@
+package om.self.structure.io;
+
+import om.self.structure.bidirectional.KeyPath;
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.bidirectional.StructureListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead log of the changes made to a keyed tree, so the tree can be rebuilt after a crash without writing the whole tree after every change. The journal starts with the whole tree and then gets one small record for every attach, detach, move, and rename that made it past the checks of the nodes (see {@link StructureListener}). Paths and keys are written with a dictionary, so a key is only written once per journal.
+ * <br>
+ * Records are collected in memory and written as blocks of at most 1MB with a length and checksum (records that don't fit, like the whole tree, continue in the next blocks). {@link #commit()} writes the records and forces them to the disk, and threads that call it at the same time share one force (group commit), so many changes can be made durable with one fsync. Records that were not committed can be lost in a crash, and a block that was only partly written is ignored when the journal is read.
+ * <br>
+ * The root must not get a parent while it is journaled, every node in the tree has to be an N, and only the structure is journaled: the data of a node is written when the node is attached, so later changes to it aren't recorded. The tree should be changed from one thread at a time (like {@link KeyedBidirectionalStructure} requires), but {@link #commit()} can be called from any thread.
+ * @param <K> the type of the keys
+ * @param <N> the type of the nodes
+ */
+public final class StructureJournal<K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> implements StructureListener<K>, Closeable {
+    private static final int BASE = 1;
+    private static final int ATTACH = 2;
+    private static final int MOVE = 3;
+    private static final int DETACH = 4;
+    private static final int RENAME = 5;
+    /**
+     * The largest block, so neither writing nor reading the journal needs more memory than this for a block
+     */
+    private static final int BLOCK_SIZE = 1 << 20;
+    /**
+     * Set in the size of a block when its last record continues in the next block
+     */
+    private static final int CONTINUED = 1 << 31;
+
+    private final FileChannel channel;
+    private final N root;
+    private final KeyCodec<K> keys;
+    private final ValueCodec<N> values;
+    private final HashMap<K, Integer> dictionary;
+
+    private final Block block = new Block();
+    private final StructureOutput out = new StructureOutput(block, 1 << 16);
+    /**
+     * The amount of bytes written to the file and the amount that was forced to the disk
+     */
+    private volatile long written;
+    private volatile long durable;
+    private final Object syncLock = new Object();
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * The last detached child, which is only written once the next change shows it wasn't moved
+     */
+    private Object detached;
+    private KeyPath<K> detachedPath;
+    /**
+     * Listens to the last detached child while it is detached, because once its subtree changes it can't be moved back with one record
+     */
+    private final StructureListener<K> detachedListener = new StructureListener<>() {
+        @Override
+        public void childAttached(KeyedBidirectionalStructure<K, ?, ?> parent, K key, Object child) {
+            detachedChanged();
+        }
+
+        @Override
+        public void childDetached(KeyedBidirectionalStructure<K, ?, ?> parent, K key, Object child) {
+            detachedChanged();
+        }
+
+        @Override
+        public void childRenamed(KeyedBidirectionalStructure<K, ?, ?> parent, K oldKey, K newKey) {
+            detachedChanged();
+        }
+    };
+    /**
+     * Children whose move was recorded before they were detached from their old parent (and that parent)
+     */
+    private final IdentityHashMap<Object, Object> moving = new IdentityHashMap<>();
+
+    private StructureJournal(FileChannel channel, N root, KeyCodec<K> keys, ValueCodec<N> values, HashMap<K, Integer> dictionary, long length) {
+        this.channel = channel;
+        this.root = root;
+        this.keys = keys;
+        this.values = values;
+        this.dictionary = dictionary;
+        this.written = length;
+        this.durable = length;
+    }
+
+    /**
+     * Starts a new journal for a tree. The whole tree is written first (to a temporary file that then replaces the file at path, so an existing journal isn't lost if this fails), then the journal becomes the {@link KeyedBidirectionalStructure#setListener(StructureListener) listener} of the root.
+     * @param path the file of the journal
+     * @param root the root of the tree
+     * @param keys writes the keys
+     * @param values writes the data of each node
+     * @return the journal
+     * @param <K> the type of the keys
+     * @param <N> the type of the nodes
+     * @throws IOException if the file can't be written
+     */
+    public static <K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> StructureJournal<K, N> open(Path path, N root, KeyCodec<K> keys, ValueCodec<N> values) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            StructureJournal<K, N> journal = new StructureJournal<>(channel, root, keys, values, new HashMap<>(), 0);
+            StructureFormat.writeHeader(journal.out, StructureFormat.JOURNAL);
+            journal.out.writeByte(BASE);
+            StructureWriter.writeKeyedTree(journal.out, root, keys, values);
+            journal.commit();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(path.toAbsolutePath().getParent());
+        return resume(path, root, keys, values, new HashMap<>(), Files.size(path));
+    }
+
+    /**
+     * Forces the entries of a directory to the disk so a file that was moved into it is still there after a crash.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        if(directory == null) return;
+        try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //some platforms (ex: Windows) can't open a directory, and there the move is already durable
+        }
+    }
+
+    /**
+     * Rebuilds the tree from a journal and keeps journaling it. A block at the end that was only partly written (ex: because of a crash) is removed from the file.
+     * @param path the file of the journal
+     * @param keys reads and writes the keys
+     * @param values reads and writes the data of each node
+     * @return the journal (the tree is {@link #getRoot()})
+     * @param <K> the type of the keys
+     * @param <N> the type of the nodes
+     * @throws IOException if the file can't be read or isn't a journal
+     */
+    public static <K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> StructureJournal<K, N> recover(Path path, KeyCodec<K> keys, ValueCodec<N> values) throws IOException {
+        Replay<K, N> replay = new Replay<>(keys, values);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            replay.run(channel);
+        }
+        HashMap<K, Integer> dictionary = new HashMap<>(replay.dictionary.size() * 4 / 3 + 1);
+        for (K key : replay.dictionary)
+            dictionary.put(key, dictionary.size());
+        return resume(path, replay.root, keys, values, dictionary, replay.length);
+    }
+
+    private static <K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> StructureJournal<K, N> resume(Path path, N root, KeyCodec<K> keys, ValueCodec<N> values, HashMap<K, Integer> dictionary, long length) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        try{
+            if(channel.size() > length) {
+                channel.truncate(length);
+                channel.force(false);
+            }
+            channel.position(length);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        StructureJournal<K, N> journal = new StructureJournal<>(channel, root, keys, values, dictionary, length);
+        root.setListener(journal);
+        return journal;
+    }
+
+    /**
+     * Rebuilds the tree from a journal without changing the file. A block at the end that was only partly written is ignored.
+     * @param path the file of the journal
+     * @param keys reads the keys
+     * @param values creates the nodes
+     * @return the root of the tree
+     * @param <K> the type of the keys
+     * @param <N> the type of the nodes
+     * @throws IOException if the file can't be read or isn't a journal
+     */
+    public static <K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> N replay(Path path, KeyCodec<K> keys, ValueCodec<N> values) throws IOException {
+        Replay<K, N> replay = new Replay<>(keys, values);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            replay.run(channel);
+        }
+        return replay.root;
+    }
+
+    /**
+     * Gets the root of the journaled tree.
+     * @return the root
+     */
+    public N getRoot() {
+        return root;
+    }
+
+    @Override
+    public synchronized void childAttached(KeyedBidirectionalStructure<K, ?, ?> parent, K key, Object child) {
+        if(closed || failure != null) return;
+        try{
+            if(child == detached) {
+                writeMove(detachedPath, parent.getPath(), key);
+                clearDetached();
+            } else {
+                writeDetached();
+                KeyPath<K> from = child instanceof KeyedBidirectionalStructure<?, ?, ?> node && node.getParent() != parent ? pathOf(node) : null;
+                if(from != null) {
+                    //the child still has its old parent, which will report it as detached after this unless the old parent was in the subtree this child replaced
+                    KeyPath<K> to = parent.getPath().child(key);
+                    writeMove(from, to.getParent(), key);
+                    if(from.size() <= to.size() || !from.subList(0, to.size()).equals(to)) moving.put(child, ((KeyedBidirectionalStructure<?, ?, ?>) child).getParent());
+                } else {
+                    out.writeByte(ATTACH);
+                    writePath(parent.getPath());
+                    writeKey(key);
+                    @SuppressWarnings("unchecked")
+                    N node = (N) child;
+                    StructureWriter.writeKeyedTree(out, node, keys, values);
+                }
+            }
+            recorded();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void childDetached(KeyedBidirectionalStructure<K, ?, ?> parent, K key, Object child) {
+        if(closed || failure != null) return;
+        if(moving.get(child) == parent) {
+            moving.remove(child);
+            return;
+        }
+        try{
+            writeDetached();
+            detached = child;
+            detachedPath = parent.getPath().child(key);
+            if(child instanceof KeyedBidirectionalStructure<?, ?, ?> node && node.getListener() == null) {
+                @SuppressWarnings("unchecked")
+                KeyedBidirectionalStructure<K, ?, ?> keyed = (KeyedBidirectionalStructure<K, ?, ?>) node;
+                keyed.setListener(detachedListener);
+            } else {
+                writeDetached(); //changes to the child couldn't be seen, so it can't be moved back with one record
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void childRenamed(KeyedBidirectionalStructure<K, ?, ?> parent, K oldKey, K newKey) {
+        if(closed || failure != null) return;
+        try{
+            writeDetached();
+            out.writeByte(RENAME);
+            writePath(parent.getPath());
+            writeKey(oldKey);
+            writeKey(newKey);
+            recorded();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Gets the path a child that is being attached had before it was attached. The path is built from the parents and keys of its ancestors, and each parent has to store the ancestor under that key, except for the slot the child itself was just put in (the ancestor it replaced is in the old path).
+     * @return the path or null if the child wasn't in the journaled tree
+     */
+    @SuppressWarnings("unchecked")
+    private KeyPath<K> pathOf(KeyedBidirectionalStructure<?, ?, ?> child){
+        ArrayList<K> keys = new ArrayList<>();
+        Object top = child;
+        while (top instanceof KeyedBidirectionalStructure<?, ?, ?> structure && structure.getParent() != null) {
+            if(!(structure.getParent() instanceof KeyedBidirectionalStructure<?, ?, ?> parent)) return null;
+            Object stored = ((KeyedBidirectionalStructure<Object, ?, ?>) parent).getChild(structure.getChildKey());
+            if(stored != top && (stored != child || top == child)) return null;
+            keys.add((K) structure.getChildKey());
+            top = parent;
+        }
+        if(top != root || keys.isEmpty()) return null;
+
+        KeyPath<K> path = KeyPath.root();
+        for (int i = keys.size() - 1; i >= 0; i--)
+            path = path.child(keys.get(i));
+        return path;
+    }
+
+    /**
+     * Writes the record of the last detached child (it wasn't moved).
+     */
+    private void writeDetached() throws IOException {
+        if(detached == null) return;
+        out.writeByte(DETACH);
+        writePath(detachedPath.getParent());
+        writeKey(detachedPath.getKey());
+        clearDetached();
+        recorded();
+    }
+
+    private void clearDetached(){
+        if(detached instanceof KeyedBidirectionalStructure<?, ?, ?> node && node.getListener() == detachedListener) node.setListener(null);
+        detached = null;
+        detachedPath = null;
+    }
+
+    /**
+     * Called when the subtree of the last detached child changed while it was detached.
+     */
+    private synchronized void detachedChanged(){
+        if(closed || failure != null) return;
+        try{
+            writeDetached();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void writeMove(KeyPath<K> from, KeyPath<K> parent, K key) throws IOException {
+        out.writeByte(MOVE);
+        writePath(from);
+        writePath(parent);
+        writeKey(key);
+    }
+
+    private void writePath(KeyPath<K> path) throws IOException {
+        out.writeVarInt(path.size());
+        for (K key : path)
+            writeKey(key);
+    }
+
+    private void writeKey(K key) throws IOException {
+        Integer index = dictionary.get(key);
+        if(index != null) {
+            out.writeVarInt(index + 1);
+            return;
+        }
+        out.writeVarInt(0);
+        keys.write(out, key);
+        dictionary.put(key, dictionary.size());
+    }
+
+    /**
+     * Writes the block once it is half full, so the records still buffered by out usually fit in it.
+     */
+    private void recorded() throws IOException {
+        if(block.size >= BLOCK_SIZE / 2) writeBlock();
+    }
+
+    /**
+     * Writes the records collected so far to the file (without forcing it to the disk). The last block written ends with a whole record.
+     */
+    private void writeBlock() throws IOException {
+        out.flush();
+        if(block.size > 0) writeBlock(false);
+    }
+
+    /**
+     * Writes the bytes collected in the block to the file.
+     * @param continued if the last record in the block continues in the next block
+     */
+    private void writeBlock(boolean continued) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(block.bytes, 0, block.size);
+        ByteBuffer[] buffers = {
+                ByteBuffer.allocate(8).putInt(continued ? block.size | CONTINUED : block.size).putInt((int) crc.getValue()).flip(),
+                ByteBuffer.wrap(block.bytes, 0, block.size)
+        };
+        while (buffers[1].hasRemaining())
+            channel.write(buffers);
+        written += 8 + block.size;
+        block.size = 0;
+    }
+
+    private void fail(Exception e){
+        failure = e instanceof IOException io ? io : new IOException(e);
+    }
+
+    /**
+     * Writes every change recorded so far and forces it to the disk. Threads that commit while another thread is forcing the file wait for it and then share the next force, and a commit returns without forcing if another commit already made its changes durable.
+     * @throws IOException if the journal couldn't write or force the file (or failed to record a change earlier)
+     */
+    public void commit() throws IOException {
+        long target;
+        synchronized (this) {
+            if(failure != null) throw new IOException("the journal failed to record a change!", failure);
+            try{
+                writeDetached();
+                writeBlock();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+            target = written;
+        }
+        synchronized (syncLock) {
+            if(durable >= target) return;
+            long forced = written;
+            channel.force(false);
+            durable = forced;
+        }
+    }
+
+    /**
+     * Commits the journal, stops journaling the tree, and closes the file.
+     * @throws IOException if the final commit failed
+     */
+    @Override
+    public void close() throws IOException {
+        try{
+            commit();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                if(root.getListener() == this) root.setListener(null);
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Collects the bytes of the next block in memory, writing the block as a continued block when it is full and more bytes come in.
+     */
+    private final class Block implements WritableByteChannel {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = src.remaining();
+            while (src.hasRemaining()) {
+                if(size == BLOCK_SIZE) writeBlock(true);
+                int count = Math.min(src.remaining(), BLOCK_SIZE - size);
+                if(size + count > bytes.length) bytes = Arrays.copyOf(bytes, Math.min(Math.max(bytes.length * 2, size + count), BLOCK_SIZE));
+                src.get(bytes, size, count);
+                size += count;
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Reads the bytes of the blocks in the start of a journal without their sizes and checksums.
+     */
+    private static final class Blocks implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final long length;
+        private final ByteBuffer header = ByteBuffer.allocate(8);
+        private long position;
+        /**
+         * The bytes left in the current block
+         */
+        private int remaining;
+
+        Blocks(FileChannel channel, long length) {
+            this.channel = channel;
+            this.length = length;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            while (remaining == 0) {
+                if(position >= length) return -1;
+                Replay.readFully(channel, header.clear(), position);
+                remaining = header.getInt(0) & ~CONTINUED;
+                position += 8;
+            }
+            ByteBuffer view = dst.slice();
+            if(view.remaining() > remaining) view.limit(remaining);
+            int read = channel.read(view, position);
+            if(read < 0) throw new IOException("the journal ended early!");
+            dst.position(dst.position() + read);
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Reads a journal and applies its records to a new tree.
+     */
+    private static final class Replay<K, N extends KeyedBidirectionalStructure<K, ?, ? super N>> {
+        private final KeyCodec<K> keys;
+        private final ValueCodec<N> values;
+        private final ArrayList<K> dictionary = new ArrayList<>();
+        private N root;
+        /**
+         * The length of the part of the file that was read (everything after it was only partly written)
+         */
+        private long length;
+
+        Replay(KeyCodec<K> keys, ValueCodec<N> values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        /**
+         * Checks the blocks first and then reads the records of the blocks that are whole, so a record is never applied unless every block it is in was written. Blocks are streamed, so a block is never read into memory at once.
+         */
+        void run(FileChannel channel) throws IOException {
+            length = validLength(channel);
+            if(length == 0) throw new IOException("the input is not a journal!");
+
+            StructureInput in = new StructureInput(new Blocks(channel, length), 1 << 16);
+            StructureFormat.readHeader(in, StructureFormat.JOURNAL);
+            if(in.readByte() != BASE) throw new IOException("the journal doesn't start with a tree!");
+            root = StructureReader.readTree(in, keys, values);
+            while (!in.isAtEnd())
+                apply(in);
+        }
+
+        /**
+         * Gets the length of the blocks at the start of the file that have the right size and checksum, stopping after the last block that ends with a whole record.
+         */
+        private static long validLength(FileChannel channel) throws IOException {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(8);
+            ByteBuffer body = ByteBuffer.allocate(1 << 16);
+            long position = 0;
+            long valid = 0;
+            while (size - position >= 8) {
+                readFully(channel, header.clear(), position);
+                int blockSize = header.getInt(0) & ~CONTINUED;
+                if(blockSize <= 0 || blockSize > size - position - 8) break;
+
+                CRC32 check = new CRC32();
+                for (long read = 0; read < blockSize; read += body.limit()) {
+                    body.clear().limit((int) Math.min(body.capacity(), blockSize - read));
+                    readFully(channel, body, position + 8 + read);
+                    check.update(body.flip());
+                }
+                if((int) check.getValue() != header.getInt(4)) break;
+
+                position += 8 + blockSize;
+                if((header.getInt(0) & CONTINUED) == 0) valid = position;
+            }
+            return valid;
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining())
+                if(channel.read(buffer, position + buffer.position()) < 0) throw new IOException("the journal ended early!");
+        }
+
+        private void apply(StructureInput in) throws IOException {
+            int type = in.readByte();
+            switch (type) {
+                case ATTACH -> {
+                    KeyedBidirectionalStructure<K, ?, Object> parent = resolve(readPath(in));
+                    K key = readKey(in);
+                    parent.attachChild(key, StructureReader.readTree(in, keys, values));
+                }
+                case MOVE -> {
+                    //detached first so moving a child to another key of the same parent doesn't keep the old key
+                    List<K> from = readPath(in);
+                    Object child = resolve(from);
+                    resolve(from.subList(0, from.size() - 1)).detachChild(from.get(from.size() - 1));
+                    KeyedBidirectionalStructure<K, ?, Object> parent = resolve(readPath(in));
+                    parent.attachChild(readKey(in), child);
+                }
+                case DETACH -> resolve(readPath(in)).detachChild(readKey(in));
+                case RENAME -> resolve(readPath(in)).renameChild(readKey(in), readKey(in), false);
+                default -> throw new IOException("unknown journal record " + type + "!");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private KeyedBidirectionalStructure<K, ?, Object> resolve(List<K> path) throws IOException {
+            Object node = root;
+            for (K key : path) {
+                node = ((KeyedBidirectionalStructure<K, ?, ?>) node).getChild(key);
+                if(!(node instanceof KeyedBidirectionalStructure<?, ?, ?>)) throw new IOException("the journal refers to a node that doesn't exist: " + path + "!");
+            }
+            return (KeyedBidirectionalStructure<K, ?, Object>) node;
+        }
+
+        private List<K> readPath(StructureInput in) throws IOException {
+            int size = in.readVarInt();
+            List<K> path = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                path.add(readKey(in));
+            return path;
+        }
+
+        private K readKey(StructureInput in) throws IOException {
+            int index = in.readVarInt();
+            if(index == 0) {
+                K key = keys.read(in);
+                dictionary.add(key);
+                return key;
+            }
+            if(index > dictionary.size()) throw new IOException("the key index " + index + " is not in the key dictionary!");
+            return dictionary.get(index - 1);
+        }
+    }
+}
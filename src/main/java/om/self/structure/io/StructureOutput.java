@@ -0,0 +1,160 @@
+package om.self.structure.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary output used by {@link StructureWriter} and the codecs it calls. Bytes are collected in a direct {@link ByteBuffer} and written to the channel when the buffer is full (or when {@link #flush()} is called).
+ * <br>
+ * Counts and lengths are written as unsigned varints (7 bits per byte, so small numbers take one byte) and signed numbers are zigzag encoded first so small negative numbers stay small too.
+ */
+public final class StructureOutput {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    /**
+     * The amount of bytes written to the channel so far
+     */
+    private long drained;
+
+    StructureOutput(WritableByteChannel channel, int bufferSize) {
+        if(bufferSize < 16) throw new IllegalArgumentException("the buffer size has to be at least 16 bytes!");
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Makes sure a number of bytes fit in the buffer by writing it to the channel if they don't.
+     */
+    private void ensure(int bytes) throws IOException {
+        if(buffer.remaining() < bytes) drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            drained += channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Gets the amount of bytes written to this output (including the ones still in the buffer).
+     */
+    long position() {
+        return drained + buffer.position();
+    }
+
+    /**
+     * Writes everything in the buffer to the channel.
+     * @throws IOException if the channel fails
+     */
+    public void flush() throws IOException {
+        if(buffer.position() > 0) drain();
+    }
+
+    /**
+     * Writes a byte (the lowest 8 bits of value).
+     * @param value the value
+     * @throws IOException if the channel fails
+     */
+    public void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a boolean.
+     * @param value the value
+     * @throws IOException if the channel fails
+     */
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes an int (4 bytes).
+     * @param value the value
+     * @throws IOException if the channel fails
+     */
+    public void writeInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes a long (8 bytes).
+     * @param value the value
+     * @throws IOException if the channel fails
+     */
+    public void writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Writes a double (8 bytes).
+     * @param value the value
+     * @throws IOException if the channel fails
+     */
+    public void writeDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Writes a number that can't be negative as a varint (1 to 5 bytes).
+     * @param value the number
+     * @throws IOException if the channel fails
+     */
+    public void writeVarInt(int value) throws IOException {
+        if(value < 0) throw new IllegalArgumentException("the value argument can not be negative!");
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes any long as a zigzag encoded varint (1 to 10 bytes).
+     * @param value the number
+     * @throws IOException if the channel fails
+     */
+    public void writeVarLong(long value) throws IOException {
+        ensure(10);
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Writes bytes (without their length).
+     * @param bytes the bytes
+     * @throws IOException if the channel fails
+     */
+    public void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if(!buffer.hasRemaining()) drain();
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length (a varint) followed by the UTF-8 bytes.
+     * @param value the string
+     * @throws IOException if the channel fails
+     */
+    public void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+    }
+}
@@ -0,0 +1,176 @@
+package om.self.structure.io;
+
+import om.self.structure.child.ChildStructure;
+import om.self.structure.child.KeyedChildStructure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Reads trees written by {@link StructureWriter}.
+ * <br>
+ * The tree is rebuilt from the bottom up: each node is created by the {@link ValueCodec}, and once all of its children are read they are attached to it in one batch ({@link KeyedChildStructure#attachChildren(java.util.Map)} or {@link ChildStructure#attachChildren(Iterable)}) while the node doesn't have a parent yet, so attaching is cheap and each node gets one attach callback. Trees are read without recursion so deep trees don't overflow the stack.
+ */
+public class StructureReader implements Closeable {
+    /**
+     * The size of the direct buffer used when no size is passed to the constructor.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private final StructureInput in;
+
+    /**
+     * A node whose children are still being read.
+     */
+    private static final class Frame {
+        private final Object node;
+        private final Object key;
+        private int remaining;
+        private final LinkedHashMap<Object, Object> keyed;
+        private final ArrayList<Object> children;
+
+        Frame(Object node, Object key, int remaining, boolean isKeyed) {
+            this.node = node;
+            this.key = key;
+            this.remaining = remaining;
+            keyed = isKeyed ? new LinkedHashMap<>(remaining * 4 / 3 + 1) : null;
+            children = isKeyed ? null : new ArrayList<>(remaining);
+        }
+    }
+
+    /**
+     * Creates a reader with a {@link #DEFAULT_BUFFER_SIZE} buffer.
+     * @param channel the channel the trees are read from
+     */
+    public StructureReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a reader.
+     * @param channel the channel the trees are read from
+     * @param bufferSize the size of the direct buffer bytes are read into
+     */
+    public StructureReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.in = new StructureInput(channel, bufferSize);
+    }
+
+    /**
+     * Checks if every tree was read.
+     * @return if the channel has no more bytes
+     * @throws IOException if the channel fails
+     */
+    public boolean isAtEnd() throws IOException {
+        return in.isAtEnd();
+    }
+
+    /**
+     * Reads a keyed tree. Every node with children must be created as a {@link KeyedChildStructure}.
+     * @param keys reads the keys
+     * @param values creates the nodes
+     * @return the root of the tree
+     * @param <K> the type of the keys
+     * @param <N> the type of the nodes
+     * @throws IOException if the channel fails or the input isn't a keyed tree
+     */
+    public <K, N> N readKeyed(KeyCodec<K> keys, ValueCodec<N> values) throws IOException {
+        StructureFormat.readHeader(in, StructureFormat.KEYED);
+        return readTree(in, keys, values);
+    }
+
+    /**
+     * Reads a tree without keys. Every node with children must be created as a {@link ChildStructure}.
+     * @param values creates the nodes
+     * @return the root of the tree
+     * @param <N> the type of the nodes
+     * @throws IOException if the channel fails or the input isn't a tree without keys
+     */
+    public <N> N read(ValueCodec<N> values) throws IOException {
+        StructureFormat.readHeader(in, StructureFormat.UNKEYED);
+        return readTree(in, null, values);
+    }
+
+    /**
+     * Reads the nodes of a tree after its header.
+     * @param keys reads the keys (null if the tree isn't keyed)
+     */
+    @SuppressWarnings("unchecked")
+    static <K, N> N readTree(StructureInput in, KeyCodec<K> keys, ValueCodec<N> values) throws IOException {
+        List<K> dictionary = new ArrayList<>();
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+        N node = values.read(in);
+        int count = in.readVarInt();
+        if(count == 0) {
+            values.complete(node);
+            return node;
+        }
+        stack.push(new Frame(node, null, count, keys != null));
+
+        while (true) {
+            Frame frame = stack.peek();
+            if(frame.remaining == 0) {
+                attach(frame);
+                values.complete((N) frame.node);
+                stack.pop();
+                if(stack.isEmpty()) return (N) frame.node;
+                add(stack.peek(), frame.key, frame.node);
+                continue;
+            }
+
+            frame.remaining--;
+            K key = keys == null ? null : readKey(in, keys, dictionary);
+            N child = values.read(in);
+            count = in.readVarInt();
+            if(count == 0) {
+                values.complete(child);
+                add(frame, key, child);
+            } else {
+                stack.push(new Frame(child, key, count, keys != null));
+            }
+        }
+    }
+
+    private static <K> K readKey(StructureInput in, KeyCodec<K> keys, List<K> dictionary) throws IOException {
+        int index = in.readVarInt();
+        if(index == 0) {
+            K key = keys.read(in);
+            dictionary.add(key);
+            return key;
+        }
+        if(index > dictionary.size()) throw new IOException("the key index " + index + " is not in the key dictionary!");
+        return dictionary.get(index - 1);
+    }
+
+    private static void add(Frame frame, Object key, Object child){
+        if(frame.keyed != null) frame.keyed.put(key, child);
+        else frame.children.add(child);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void attach(Frame frame) throws IOException {
+        if(frame.keyed != null) {
+            if(!(frame.node instanceof KeyedChildStructure<?, ?> structure)) throw new IOException("a node with children was not created as a KeyedChildStructure!");
+            ((KeyedChildStructure<Object, Object>) structure).attachChildren(frame.keyed);
+        } else {
+            if(!(frame.node instanceof ChildStructure<?> structure)) throw new IOException("a node with children was not created as a ChildStructure!");
+            ((ChildStructure<Object>) structure).attachChildren(frame.children);
+        }
+    }
+
+    /**
+     * Closes the channel.
+     * @throws IOException if the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
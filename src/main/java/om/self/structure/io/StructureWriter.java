@@ -0,0 +1,249 @@
+package om.self.structure.io;
+
+import om.self.structure.child.ChildContainer;
+import om.self.structure.child.KeyedChildStructure;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+/**
+ * Writes whole trees to a channel in a compact binary format (see {@link StructureReader} to read them back). Nodes are written in pre-order with varint child counts, keys go through a dictionary so each distinct key is only written once per tree, and the data of each node is written by a {@link ValueCodec}.
+ * <br>
+ * Trees are walked without recursion so deep trees don't overflow the stack. More than one tree can be written to the same channel. The tree must not change while it is being written.
+ */
+public class StructureWriter implements Closeable, Flushable {
+    /**
+     * The size of the direct buffer used when no size is passed to the constructor.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final StructureOutput out;
+
+    /**
+     * Creates a writer with a {@link #DEFAULT_BUFFER_SIZE} buffer.
+     * @param channel the channel the trees are written to
+     */
+    public StructureWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a writer.
+     * @param channel the channel the trees are written to
+     * @param bufferSize the size of the direct buffer bytes are collected in before they are written to the channel
+     */
+    public StructureWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.out = new StructureOutput(channel, bufferSize);
+    }
+
+    /**
+     * Writes a keyed tree. Nodes that are {@link KeyedChildStructure}s are written with their children and keys, anything else is written as a leaf.
+     * @param root the root of the tree
+     * @param keys writes the keys
+     * @param values writes the data of each node
+     * @param <K> the type of the keys
+     * @param <N> the type of the nodes
+     * @throws IOException if the channel fails
+     */
+    public <K, N> void writeKeyed(N root, KeyCodec<K> keys, ValueCodec<? super N> values) throws IOException {
+        StructureFormat.writeHeader(out, StructureFormat.KEYED);
+        writeKeyedTree(out, root, keys, values);
+    }
+
+    /**
+     * Writes the nodes of a keyed tree (without the header).
+     */
+    @SuppressWarnings("unchecked")
+    static <K, N> void writeKeyedTree(StructureOutput out, N root, KeyCodec<K> keys, ValueCodec<? super N> values) throws IOException {
+        HashMap<K, Integer> dictionary = new HashMap<>();
+        ArrayDeque<Iterator<? extends Map.Entry<K, ?>>> stack = new ArrayDeque<>();
+
+        writeKeyedNode(out, root, values, stack);
+        while (!stack.isEmpty()) {
+            Iterator<? extends Map.Entry<K, ?>> children = stack.peek();
+            if(!children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+
+            Map.Entry<K, ?> child = children.next();
+            Integer index = dictionary.get(child.getKey());
+            if(index != null) {
+                out.writeVarInt(index + 1);
+            } else {
+                out.writeVarInt(0);
+                keys.write(out, child.getKey());
+                dictionary.put(child.getKey(), dictionary.size());
+            }
+            writeKeyedNode(out, (N) child.getValue(), values, stack);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, N> void writeKeyedNode(StructureOutput out, N node, ValueCodec<? super N> values, ArrayDeque<Iterator<? extends Map.Entry<K, ?>>> stack) throws IOException {
+        values.write(out, node);
+        if(!(node instanceof KeyedChildStructure<?, ?> structure)) {
+            out.writeVarInt(0);
+            return;
+        }
+        Map<K, ?> children = ((KeyedChildStructure<K, ?>) structure).getChildrenAndKeys();
+        out.writeVarInt(children.size());
+        if(!children.isEmpty()) stack.push(children.entrySet().iterator());
+    }
+
+    /**
+     * Writes a keyed tree in the indexed format read by {@link MappedStructureReader}, where every node stores where its children are so they can be read without reading the rest of the tree. The tree must be the only thing written to the file. Nodes that are {@link KeyedChildStructure}s are written with their children and keys, anything else is written as a leaf.
+     * @param root the root of the tree
+     * @param keys writes the keys
+     * @param values writes the data of each node
+     * @param <K> the type of the keys
+     * @param <N> the type of the nodes
+     * @throws IOException if the channel fails
+     */
+    @SuppressWarnings("unchecked")
+    public <K, N> void writeIndexed(N root, KeyCodec<K> keys, ValueCodec<? super N> values) throws IOException {
+        long start = out.position();
+        StructureFormat.writeHeader(out, StructureFormat.INDEXED);
+        HashMap<K, Integer> dictionary = new HashMap<>();
+        ArrayList<K> keyList = new ArrayList<>();
+        ArrayDeque<IndexedFrame<K>> stack = new ArrayDeque<>();
+
+        //children are written before their parent so the parent knows where they are
+        stack.push(new IndexedFrame<>(root, -1));
+        long rootPosition;
+        while (true) {
+            IndexedFrame<K> frame = stack.peek();
+            if(frame.children != null && frame.children.hasNext()) {
+                Map.Entry<K, ?> child = frame.children.next();
+                Integer index = dictionary.get(child.getKey());
+                if(index == null) {
+                    index = keyList.size();
+                    dictionary.put(child.getKey(), index);
+                    keyList.add(child.getKey());
+                }
+                stack.push(new IndexedFrame<>(child.getValue(), index));
+                continue;
+            }
+
+            stack.pop();
+            long position = out.position() - start;
+            values.write(out, (N) frame.node);
+            out.writeVarInt(frame.count);
+            for (int i = 0; i < frame.count; i++) {
+                out.writeVarInt(frame.keys[i]);
+                out.writeVarLong(position - frame.positions[i]);
+            }
+            if(stack.isEmpty()) {
+                rootPosition = position;
+                break;
+            }
+            stack.peek().add(frame.key, position);
+        }
+
+        long[] keyPositions = new long[keyList.size()];
+        for (int i = 0; i < keyPositions.length; i++) {
+            keyPositions[i] = out.position() - start;
+            keys.write(out, keyList.get(i));
+        }
+        long keyTable = out.position() - start;
+        for (long position : keyPositions)
+            out.writeLong(position);
+        out.writeLong(rootPosition);
+        out.writeLong(keyTable);
+        out.writeInt(keyPositions.length);
+        out.writeInt(StructureFormat.MAGIC);
+    }
+
+    /**
+     * A node of an indexed tree whose children are still being written.
+     */
+    private static final class IndexedFrame<K> {
+        private final Object node;
+        private final int key;
+        private final Iterator<? extends Map.Entry<K, ?>> children;
+        private int count;
+        private int[] keys;
+        private long[] positions;
+
+        @SuppressWarnings("unchecked")
+        IndexedFrame(Object node, int key) {
+            this.node = node;
+            this.key = key;
+            if(node instanceof KeyedChildStructure<?, ?> structure && !structure.getChildrenAndKeys().isEmpty()) {
+                Map<K, ?> children = ((KeyedChildStructure<K, ?>) structure).getChildrenAndKeys();
+                this.children = children.entrySet().iterator();
+                keys = new int[children.size()];
+                positions = new long[children.size()];
+            } else {
+                this.children = null;
+            }
+        }
+
+        private void add(int key, long position){
+            if(count == keys.length) { //the map grew while it was written
+                keys = Arrays.copyOf(keys, count * 2);
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            keys[count] = key;
+            positions[count++] = position;
+        }
+    }
+
+    /**
+     * Writes a tree without keys. Nodes that are {@link ChildContainer}s are written with their children, anything else is written as a leaf.
+     * @param root the root of the tree
+     * @param values writes the data of each node
+     * @param <N> the type of the nodes
+     * @throws IOException if the channel fails
+     */
+    @SuppressWarnings("unchecked")
+    public <N> void write(N root, ValueCodec<? super N> values) throws IOException {
+        StructureFormat.writeHeader(out, StructureFormat.UNKEYED);
+        ArrayDeque<Iterator<?>> stack = new ArrayDeque<>();
+
+        writeNode(root, values, stack);
+        while (!stack.isEmpty()) {
+            Iterator<?> children = stack.peek();
+            if(children.hasNext()) writeNode((N) children.next(), values, stack);
+            else stack.pop();
+        }
+    }
+
+    private <N> void writeNode(N node, ValueCodec<? super N> values, ArrayDeque<Iterator<?>> stack) throws IOException {
+        values.write(out, node);
+        if(!(node instanceof ChildContainer<?> container)) {
+            out.writeVarInt(0);
+            return;
+        }
+        Collection<?> children = container.getChildren();
+        out.writeVarInt(children.size());
+        if(!children.isEmpty()) stack.push(children.iterator());
+    }
+
+    /**
+     * Writes everything that is still buffered to the channel.
+     * @throws IOException if the channel fails
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes the writer and closes the channel.
+     * @throws IOException if the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        try{
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
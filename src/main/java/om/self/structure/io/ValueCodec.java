@@ -0,0 +1,52 @@
+package om.self.structure.io;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Writes the data of each node and creates the node again when reading. The structure itself (which node is a child of which and under what key) is written by {@link StructureWriter}, so a codec only handles what the node stores on top of that.
+ * <br>
+ * Nodes are created without their children and {@link StructureReader} attaches them in one batch per node after they are read, so a codec that creates nodes without checks rebuilds the tree without running any checks. Checks (and anything else that should only be set up once the subtree is complete) can be added in {@link #complete(Object)}.
+ * @param <N> the type of the nodes
+ */
+public interface ValueCodec<N> {
+    /**
+     * Writes the data of a node.
+     * @param out the output
+     * @param node the node
+     * @throws IOException if the output fails
+     */
+    void write(StructureOutput out, N node) throws IOException;
+
+    /**
+     * Reads the data written by {@link #write(StructureOutput, Object)} and creates a node from it.
+     * @param in the input
+     * @return a new node without a parent or children
+     * @throws IOException if the input fails
+     */
+    N read(StructureInput in) throws IOException;
+
+    /**
+     * Called once the children of a node read by {@link #read(StructureInput)} are attached (children are completed before their parent).
+     * @param node the node
+     */
+    default void complete(N node){}
+
+    /**
+     * Creates a codec for nodes that don't store any data.
+     * @param factory creates the nodes when reading
+     * @return the codec
+     * @param <N> the type of the nodes
+     */
+    static <N> ValueCodec<N> of(Supplier<? extends N> factory){
+        return new ValueCodec<>() {
+            @Override
+            public void write(StructureOutput out, N node) {}
+
+            @Override
+            public N read(StructureInput in) {
+                return factory.get();
+            }
+        };
+    }
+}
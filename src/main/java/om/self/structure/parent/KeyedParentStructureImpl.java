@@ -1,14 +1,33 @@
 package om.self.structure.parent;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * An implementation of {@link ParentStructureImpl}
+ * <br>
+ * The key and the parent are kept together and changed with a single compare-and-set, so they are always read as a pair, when two threads attach or detach the parent at the same time exactly one of them wins, and callbacks are only called by the thread whose change was published.
  * @param <K> The type of the key
  * @param <V> The type of the parent
  * @see KeyedParentStructure
  */
 public class KeyedParentStructureImpl<K, V> implements KeyedParentStructure<K, V> {
-    private K parentKey;
-    private V parent;
+    private static final VarHandle LINK;
+
+    static {
+        try {
+            LINK = MethodHandles.lookup().findVarHandle(KeyedParentStructureImpl.class, "link", Link.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The attached parent and its key (null if no parent is attached)
+     */
+    private record Link<K, V>(K key, V parent){}
+
+    private volatile Link<K, V> link;
 
     /**
      * Default constructor
@@ -25,33 +44,55 @@ public class KeyedParentStructureImpl<K, V> implements KeyedParentStructure<K, V
     }
 
     /**
-     * Detaches the current parent if one is attached then attaches a parent.
+     * Detaches the current parent if one is attached then attaches a parent. The old key and parent are replaced with the new ones in one step (nothing happens if {@link #canDetachParent(Object, Object)} rejects the old parent), then {@link #onParentDetach(Object, Object)} and {@link #onParentAttach(Object, Object)} are called.
      * @param key the key of the parent
      * @param parent the parent being attached
+     * @implNote This doesn't go through {@link #detachParent()}, so overriding {@link #detachParent()} has no effect on replacing a parent (override {@link #canDetachParent(Object, Object)} to keep a parent and {@link #onParentDetach(Object, Object)} to react to it being removed). The callbacks are called after the change is published, so {@link #getParent()} and {@link #getParentKey()} already return the new parent and key inside them.
      */
     @Override
     public void attachParent(K key, V parent) {
         if(key == null) throw new IllegalArgumentException("the key argument can not be null!");
-        if(key == parentKey && this.parent == parent) return;
 
-        detachParent();
-        if(isParentAttached()) return; //in case a check prevents parent from being detached
+        Link<K, V> next = null;
+        while (true) {
+            Link<K, V> current = link;
+            if(current != null && key == current.key && parent == current.parent) return;
+            if(current != null && current.parent != null && !canDetachParent(current.key, current.parent)) return;
 
-        onParentAttach(key, parent);
-        this.parentKey = key;
-        this.parent = parent;
+            if(next == null) next = new Link<>(key, parent);
+            if(LINK.compareAndSet(this, current, next)) {
+                if(current != null && current.parent != null) onParentDetach(current.key, current.parent);
+                onParentAttach(key, parent);
+                return;
+            }
+        }
     }
 
     /**
-     * Detached the parent if one is attached.
+     * Detached the parent if one is attached. The key and parent are cleared in one step (nothing happens if {@link #canDetachParent(Object, Object)} rejects them), then {@link #onParentDetach(Object, Object)} is called.
+     * @implNote {@link #onParentDetach(Object, Object)} is called after the parent is cleared, so {@link #getParent()} and {@link #getParentKey()} already return null inside it.
      */
     @Override
     public void detachParent() {
-        if(!isParentAttached()) return;
+        while (true) {
+            Link<K, V> current = link;
+            if(current == null || current.parent == null || !canDetachParent(current.key, current.parent)) return;
+
+            if(LINK.compareAndSet(this, current, null)) {
+                onParentDetach(current.key, current.parent);
+                return;
+            }
+        }
+    }
 
-        onParentDetach(parentKey, parent);
-        parentKey = null;
-        parent = null;
+    /**
+     * Called before the parent is detached or replaced to decide if it can be removed. If another thread changes the parent before the change is published, this is called again with the new parent.
+     * @param key the key of the parent that would be removed
+     * @param parent the parent that would be removed
+     * @return if the parent can be removed (always true by default)
+     */
+    protected boolean canDetachParent(K key, V parent){
+        return true;
     }
 
     /**
@@ -60,7 +101,8 @@ public class KeyedParentStructureImpl<K, V> implements KeyedParentStructure<K, V
      */
     @Override
     public V getParent() {
-        return parent;
+        Link<K, V> link = this.link;
+        return link == null ? null : link.parent;
     }
 
     /**
@@ -69,6 +111,7 @@ public class KeyedParentStructureImpl<K, V> implements KeyedParentStructure<K, V
      */
     @Override
     public K getParentKey() {
-        return parentKey;
+        Link<K, V> link = this.link;
+        return link == null ? null : link.key;
     }
 }
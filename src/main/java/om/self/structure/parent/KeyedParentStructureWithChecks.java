@@ -2,9 +2,7 @@ package om.self.structure.parent;
 
 import om.self.structure.Utils;
 import om.self.structure.bidirectional.KeyedBidirectionalStructure;
-
-import java.util.LinkedList;
-import java.util.List;
+import om.self.structure.check.KeyedCheckChain;
 
 /**
  * An extension of {@link KeyedParentStructureImpl} that adds the ability to run checks before attaching or detaching anything
@@ -12,7 +10,7 @@ import java.util.List;
  * @param <K>  the type of the key used to identify parents
  */
 public class KeyedParentStructureWithChecks<K,V> extends KeyedParentStructureImpl<K,V> {
-    private final List<Utils.KeyedCheck<K,V>> checks = new LinkedList<>();
+    private final KeyedCheckChain<K,V> checks = new KeyedCheckChain<>();
 
     /**
      * Default constructor
@@ -39,11 +37,20 @@ public class KeyedParentStructureWithChecks<K,V> extends KeyedParentStructureImp
         checks.add(check);
     }
 
+    /**
+     * Adds a check that only runs for one action.
+     * @param check the check being added
+     * @param action the only action the check runs for
+     */
+    public void addCheck(Utils.KeyedCheck<K,V> check, Utils.Action action){
+        checks.add(check, action);
+    }
+
     /**
      * Gets all checks.
      * @return All checks
      */
-    public List<Utils.KeyedCheck<K,V>> getChecks(){
+    public KeyedCheckChain<K,V> getChecks(){
         return checks;
     }
 
@@ -78,22 +85,18 @@ public class KeyedParentStructureWithChecks<K,V> extends KeyedParentStructureImp
      */
     @Override
     public void attachParent(K key, V parent) {
-        for (Utils.KeyedCheck<K,V> check : checks)
-            if(!check.apply(key, parent, Utils.Action.ATTACH)) return;
+        if(!checks.test(key, parent, Utils.Action.ATTACH)) return;
         super.attachParent(key, parent);
     }
 
     /**
-     * Detached the parent if one is attached.
+     * Runs the detach checks on the parent before it is detached or replaced.
+     * @param key the key of the parent that would be removed
+     * @param parent the parent that would be removed
+     * @return if every check passed
      */
     @Override
-    public void detachParent() {
-        if(!isParentAttached()) return;
-
-        K k = getParentKey();
-        V p = getParent();
-        for (Utils.KeyedCheck<K,V> check: checks)
-            if(!check.apply(k, p, Utils.Action.DETACH)) return;
-        super.detachParent();
+    protected boolean canDetachParent(K key, V parent) {
+        return checks.test(key, parent, Utils.Action.DETACH);
     }
 }
@@ -1,15 +1,30 @@
 package om.self.structure.parent;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * An implementation of {@link ParentStructure}
+ * <br>
+ * The parent is changed with a single compare-and-set, so when two threads attach or detach the parent at the same time exactly one of them wins, no lock is taken, and callbacks are only called by the thread whose change was published.
  * @param <T> the type of the parent
  * @see ParentStructure
  */
 public class ParentStructureImpl<T> implements ParentStructure<T> {
+    private static final VarHandle PARENT;
+
+    static {
+        try {
+            PARENT = MethodHandles.lookup().findVarHandle(ParentStructureImpl.class, "parent", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /**
      * The parent that the object extending this structure is attached to.
      */
-    private T parent;
+    private volatile T parent;
 
     /**
      * Default constructor
@@ -34,28 +49,48 @@ public class ParentStructureImpl<T> implements ParentStructure<T> {
     }
 
     /**
-     * Detaches the current parent if one is attached then attaches a parent.
+     * Detaches the current parent if one is attached then attaches a parent. The old parent is replaced with the new one in one step (nothing happens if {@link #canDetachParent(Object)} rejects the old parent), then {@link #onParentDetach(Object)} and {@link #onParentAttach(Object)} are called.
      * @param parent the parent being attached
+     * @implNote This doesn't go through {@link #detachParent()}, so overriding {@link #detachParent()} has no effect on replacing a parent (override {@link #canDetachParent(Object)} to keep a parent and {@link #onParentDetach(Object)} to react to it being removed). The callbacks are called after the change is published, so {@link #getParent()} already returns the new parent inside them.
      */
     @Override
     public void attachParent(T parent) {
-        if(this.parent == parent) return;
-
-        detachParent();
-        if(isParentAttached()) return; //in case a check prevents parent from being detached
+        while (true) {
+            T current = this.parent;
+            if(current == parent) return;
+            if(current != null && !canDetachParent(current)) return;
 
-        onParentAttach(parent);
-        this.parent = parent;
+            if(PARENT.compareAndSet(this, current, parent)) {
+                if(current != null) onParentDetach(current);
+                onParentAttach(parent);
+                return;
+            }
+        }
     }
 
     /**
-     * Detached the parent if one is attached.
+     * Detached the parent if one is attached. The parent is cleared in one step (nothing happens if {@link #canDetachParent(Object)} rejects it), then {@link #onParentDetach(Object)} is called.
+     * @implNote {@link #onParentDetach(Object)} is called after the parent is cleared, so {@link #getParent()} already returns null inside it.
      */
     @Override
     public void detachParent(){
-        if(!isParentAttached()) return;
+        while (true) {
+            T current = parent;
+            if(current == null || !canDetachParent(current)) return;
 
-        onParentDetach(parent);
-        parent = null;
+            if(PARENT.compareAndSet(this, current, null)) {
+                onParentDetach(current);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called before the parent is detached or replaced to decide if it can be removed. If another thread changes the parent before the change is published, this is called again with the new parent.
+     * @param parent the parent that would be removed
+     * @return if the parent can be removed (always true by default)
+     */
+    protected boolean canDetachParent(T parent){
+        return true;
     }
 }
@@ -2,16 +2,14 @@ package om.self.structure.parent;
 
 import om.self.structure.Utils;
 import om.self.structure.bidirectional.KeyedBidirectionalStructure;
-
-import java.util.LinkedList;
-import java.util.List;
+import om.self.structure.check.CheckChain;
 
 /**
  * An extension of {@link ParentStructureImpl} that adds the ability to run checks before attaching or detaching anything
  * @param <T> the type of the parent
  */
 public class ParentStructureWithChecks<T> extends ParentStructureImpl<T>{
-    private final List<Utils.Check<T>> checks = new LinkedList<>();
+    private final CheckChain<T> checks = new CheckChain<>();
 
     /**
      * Default constructor
@@ -37,11 +35,20 @@ public class ParentStructureWithChecks<T> extends ParentStructureImpl<T>{
         checks.add(check);
     }
 
+    /**
+     * Adds a check that only runs for one action.
+     * @param check the check being added
+     * @param action the only action the check runs for
+     */
+    public void addCheck(Utils.Check<T> check, Utils.Action action){
+        checks.add(check, action);
+    }
+
     /**
      * Gets all checks.
      * @return All checks
      */
-    public List<Utils.Check<T>> getChecks(){
+    public CheckChain<T> getChecks(){
         return checks;
     }
 
@@ -75,21 +82,17 @@ public class ParentStructureWithChecks<T> extends ParentStructureImpl<T>{
      */
     @Override
     public void attachParent(T parent) {
-        for(Utils.Check<T> check : checks)
-            if(!check.apply(parent, Utils.Action.ATTACH)) return;
+        if(!checks.test(parent, Utils.Action.ATTACH)) return;
         super.attachParent(parent);
     }
 
     /**
-     * Detached the parent if one is attached.
+     * Runs the detach checks on the parent before it is detached or replaced.
+     * @param parent the parent that would be removed
+     * @return if every check passed
      */
     @Override
-    public void detachParent() {
-        if(!isParentAttached()) return;
-
-        T p = getParent();
-        for(Utils.Check<T> check : checks)
-            if(!check.apply(p, Utils.Action.DETACH)) return;
-        super.detachParent();
+    protected boolean canDetachParent(T parent) {
+        return checks.test(parent, Utils.Action.DETACH);
     }
 }
@@ -0,0 +1,343 @@
+package om.self.structure.snapshot;
+
+import java.util.*;
+
+/**
+ * An immutable hash array mapped trie. Every change returns a new trie that copies only the nodes on the path to the changed entry and shares the rest with the old trie, so old versions stay valid and cost nothing to keep.
+ * <br>
+ * Each level uses 5 bits of the hash to pick one of 32 slots. Entries are stored in the arrays of the nodes as key and value pairs, and a slot that leads to a deeper node has a null key followed by the node. Keys that have the same hash end up in a collision node. Null keys are stored as {@link #NULL_KEY}.
+ */
+final class Hamt {
+    /**
+     * Stands for the null key (null is used to mark slots that hold a deeper node).
+     */
+    static final Object NULL_KEY = new Object();
+    /**
+     * Returned by {@link Node#get(Object, int, int)} when the key isn't in the trie (values can be null).
+     */
+    static final Object NOT_FOUND = new Object();
+    static final Node EMPTY = new BitmapNode(0, new Object[0]);
+
+    private Hamt() {}
+
+    static Object mask(Object key){
+        return key == null ? NULL_KEY : key;
+    }
+
+    static Object unmask(Object key){
+        return key == NULL_KEY ? null : key;
+    }
+
+    static int hash(Object key){
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean same(Object a, Object b){
+        return a == b || a.equals(b);
+    }
+
+    private static Object[] insert(Object[] array, int index, Object key, Object value){
+        Object[] copy = new Object[array.length + 2];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = key;
+        copy[index + 1] = value;
+        System.arraycopy(array, index, copy, index + 2, array.length - index);
+        return copy;
+    }
+
+    private static Object[] delete(Object[] array, int index){
+        Object[] copy = new Object[array.length - 2];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+        return copy;
+    }
+
+    private static Object[] replace(Object[] array, int index, Object key, Object value){
+        Object[] copy = array.clone();
+        copy[index] = key;
+        copy[index + 1] = value;
+        return copy;
+    }
+
+    /**
+     * A node of the trie. Nodes are never changed after they are created.
+     */
+    abstract static class Node {
+        /**
+         * The key and value pairs of this node (a null key means the value is a deeper node).
+         */
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        /**
+         * Finds the value of a key.
+         * @param key the masked key
+         * @param hash the hash of the key
+         * @param shift the bits of the hash used by the levels above this node
+         * @return the value or {@link #NOT_FOUND}
+         */
+        abstract Object get(Object key, int hash, int shift);
+
+        /**
+         * Adds or replaces an entry.
+         * @param key the masked key
+         * @param value the value
+         * @param hash the hash of the key
+         * @param shift the bits of the hash used by the levels above this node
+         * @return the changed copy of this node (or this node if nothing changed)
+         */
+        abstract Node put(Object key, Object value, int hash, int shift);
+
+        /**
+         * Removes an entry.
+         * @param key the masked key
+         * @param hash the hash of the key
+         * @param shift the bits of the hash used by the levels above this node
+         * @return the changed copy of this node, this node if the key wasn't found or null if the node is empty now
+         */
+        abstract Node remove(Object key, int hash, int shift);
+
+        /**
+         * Checks if this node holds exactly one entry directly (so its parent can store the entry instead).
+         * @return if this node is a single entry
+         */
+        boolean isSingleEntry(){
+            return array.length == 2 && array[0] != null;
+        }
+    }
+
+    static final class BitmapNode extends Node {
+        private final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit){
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if((bitmap & bit) == 0) return NOT_FOUND;
+            int index = index(bit);
+            Object current = array[index];
+            if(current == null) return ((Node) array[index + 1]).get(key, hash, shift + 5);
+            return same(current, key) ? array[index + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object key, Object value, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int index = index(bit);
+            if((bitmap & bit) == 0) return new BitmapNode(bitmap | bit, insert(array, index, key, value));
+
+            Object current = array[index];
+            Object currentValue = array[index + 1];
+            if(current == null) {
+                Node child = (Node) currentValue;
+                Node changed = child.put(key, value, hash, shift + 5);
+                return changed == child ? this : new BitmapNode(bitmap, replace(array, index, null, changed));
+            }
+            if(same(current, key)) return currentValue == value ? this : new BitmapNode(bitmap, replace(array, index, current, value));
+            return new BitmapNode(bitmap, replace(array, index, null, merge(current, currentValue, hash(current), key, value, hash, shift + 5)));
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if((bitmap & bit) == 0) return this;
+            int index = index(bit);
+
+            Object current = array[index];
+            if(current == null) {
+                Node child = (Node) array[index + 1];
+                Node changed = child.remove(key, hash, shift + 5);
+                if(changed == child) return this;
+                if(changed == null) return bitmap == bit ? null : new BitmapNode(bitmap ^ bit, delete(array, index));
+                if(changed.isSingleEntry()) return new BitmapNode(bitmap, replace(array, index, changed.array[0], changed.array[1]));
+                return new BitmapNode(bitmap, replace(array, index, null, changed));
+            }
+            if(!same(current, key)) return this;
+            return bitmap == bit ? null : new BitmapNode(bitmap ^ bit, delete(array, index));
+        }
+
+        /**
+         * Creates the node that holds two entries that ended up in the same slot.
+         */
+        private static Node merge(Object key1, Object value1, int hash1, Object key2, Object value2, int hash2, int shift){
+            if(hash1 == hash2) return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+
+            int bit1 = 1 << ((hash1 >>> shift) & 31);
+            int bit2 = 1 << ((hash2 >>> shift) & 31);
+            if(bit1 == bit2) return new BitmapNode(bit1, new Object[]{null, merge(key1, value1, hash1, key2, value2, hash2, shift + 5)});
+            return Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new BitmapNode(bit1 | bit2, new Object[]{key1, value1, key2, value2})
+                    : new BitmapNode(bit1 | bit2, new Object[]{key2, value2, key1, value1});
+        }
+    }
+
+    /**
+     * Holds the entries whose keys have the exact same hash.
+     */
+    static final class CollisionNode extends Node {
+        private final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int find(Object key){
+            for (int i = 0; i < array.length; i += 2)
+                if(same(array[i], key)) return i;
+            return -1;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            if(hash != this.hash) return NOT_FOUND;
+            int index = find(key);
+            return index < 0 ? NOT_FOUND : array[index + 1];
+        }
+
+        @Override
+        Node put(Object key, Object value, int hash, int shift) {
+            if(hash != this.hash) //a key with a different hash reached this level, so split on the next bits
+                return new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[]{null, this}).put(key, value, hash, shift);
+
+            int index = find(key);
+            if(index < 0) return new CollisionNode(hash, insert(array, array.length, key, value));
+            return array[index + 1] == value ? this : new CollisionNode(hash, replace(array, index, key, value));
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            if(hash != this.hash) return this;
+            int index = find(key);
+            if(index < 0) return this;
+            return array.length == 2 ? null : new CollisionNode(hash, delete(array, index));
+        }
+    }
+
+    /**
+     * Iterates over the entries of a trie without copying them (depth first through the node arrays).
+     */
+    static final class EntryIterator implements Iterator<Object[]> {
+        //7 levels of 5 bits plus a collision node
+        private final Object[][] arrays = new Object[9][];
+        private final int[] indexes = new int[9];
+        private int depth;
+        private Object nextKey;
+        private Object nextValue;
+        private boolean ready;
+
+        EntryIterator(Node root) {
+            arrays[0] = root.array;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(ready) return true;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int index = indexes[depth];
+                if(index >= array.length) {
+                    depth--;
+                    continue;
+                }
+                indexes[depth] = index + 2;
+                if(array[index] == null) {
+                    depth++;
+                    arrays[depth] = ((Node) array[index + 1]).array;
+                    indexes[depth] = 0;
+                    continue;
+                }
+                nextKey = array[index];
+                nextValue = array[index + 1];
+                ready = true;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Gets the next entry as a key (unmasked) and value pair.
+         * @return the key at index 0 and the value at index 1
+         */
+        @Override
+        public Object[] next() {
+            if(!hasNext()) throw new NoSuchElementException();
+            ready = false;
+            return new Object[]{unmask(nextKey), nextValue};
+        }
+    }
+
+    /**
+     * A read only {@link Map} over one version of a trie.
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     */
+    static final class View<K, V> extends AbstractMap<K, V> {
+        private final Node root;
+        private final int size;
+
+        View(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Object masked = mask(key);
+            return root.get(masked, hash(masked), 0) != NOT_FOUND;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            Object masked = mask(key);
+            Object value = root.get(masked, hash(masked), 0);
+            return value == NOT_FOUND ? null : (V) value;
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    EntryIterator entries = new EntryIterator(root);
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, V> next() {
+                            Object[] entry = entries.next();
+                            return new SimpleImmutableEntry<>((K) entry[0], (V) entry[1]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package om.self.structure.snapshot;
+
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.child.ChildContainer;
+import om.self.structure.child.KeyedChildStructure;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An immutable view of a subtree as it was when the snapshot was taken. Taking a snapshot doesn't copy anything (it only moves a shared clock forward), instead every node in the subtree has to store its children in a {@link VersionedMap} or {@link VersionedSet} (see {@link om.self.structure.storage.ChildStorage#versioned()}), and those keep the version of the children this snapshot sees until it is closed. Changes made after the snapshot copy only the path to the changed child, so the snapshot and the live tree share everything else.
+ * <br>
+ * A snapshot has to be taken while no other thread is changing the tree (ex: on the thread that changes it), but it can then be read from any thread while the tree keeps changing. Close the snapshot when you are done so the old versions can be dropped, otherwise every node changed after it keeps its old children around.
+ * <br>
+ * Reading a node never loads its children, because that would change the live tree from the reading thread. Children attached with {@link KeyedBidirectionalStructure#attachChildrenLazily(java.util.function.Supplier)} have to be loaded before the snapshot is taken.
+ * @param <T> the type of the root
+ */
+public final class Snapshot<T> implements AutoCloseable {
+    private final T root;
+    private final long epoch;
+    private volatile boolean closed;
+
+    private Snapshot(T root, long epoch) {
+        this.root = root;
+        this.epoch = epoch;
+    }
+
+    /**
+     * Takes a snapshot of a subtree in constant time.
+     * @param root the root of the subtree
+     * @return the snapshot
+     * @param <T> the type of the root
+     */
+    public static <T> Snapshot<T> of(T root){
+        return new Snapshot<>(root, SnapshotClock.open());
+    }
+
+    /**
+     * Gets the root of the subtree the snapshot was taken of.
+     * @return the root
+     */
+    public T getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the children a node had when the snapshot was taken.
+     * @param node a node in the subtree
+     * @return a read only collection of the children
+     * @param <C> the type of the children
+     * @throws IllegalStateException if the snapshot is closed, the node doesn't store its children in a versioned storage, or the children of the node aren't loaded
+     */
+    @SuppressWarnings("unchecked")
+    public <C> Collection<C> getChildren(ChildContainer<C> node){
+        if(node instanceof KeyedChildStructure<?, ?> keyed) return (Collection<C>) getChildrenAndKeys(keyed).values();
+
+        checkOpen();
+        Collection<C> children = node.getChildren();
+        if(children instanceof VersionedSet<C> set) return set.at(epoch);
+        throw notVersioned(node);
+    }
+
+    /**
+     * Gets the children and keys a keyed node had when the snapshot was taken.
+     * @param node a node in the subtree
+     * @return a read only map of the keys and children
+     * @param <K> the type of the keys
+     * @param <V> the type of the children
+     * @throws IllegalStateException if the snapshot is closed, the node doesn't store its children in a versioned storage, or the children of the node aren't loaded
+     */
+    public <K, V> Map<K, V> getChildrenAndKeys(KeyedChildStructure<K, V> node){
+        checkOpen();
+        if(node instanceof KeyedBidirectionalStructure<?,?,?> structure && !structure.areChildrenLoaded())
+            throw new IllegalStateException("the children of " + node + " are not loaded, so they can't be read from a snapshot!");
+        Map<K, V> children = node.getChildrenAndKeys();
+        if(children instanceof VersionedMap<K, V> map) return map.at(epoch);
+        throw notVersioned(node);
+    }
+
+    /**
+     * Gets the child a keyed node had under a key when the snapshot was taken.
+     * @param node a node in the subtree
+     * @param key the key of the child
+     * @return the child or null if there was no child with the key
+     * @param <K> the type of the keys
+     * @param <V> the type of the children
+     */
+    public <K, V> V getChild(KeyedChildStructure<K, V> node, K key){
+        return getChildrenAndKeys(node).get(key);
+    }
+
+    /**
+     * Calls an action for every node in the subtree as it was when the snapshot was taken (parents before their children). Nodes that aren't {@link ChildContainer}s are treated as leaves.
+     * @param action the action called for each node
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachNode(Consumer<Object> action){
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Object node = stack.pop();
+            action.accept(node);
+            if(node instanceof ChildContainer<?> container)
+                for (Object child : getChildren((ChildContainer<Object>) container))
+                    if(child != null) stack.push(child);
+        }
+    }
+
+    /**
+     * Counts the nodes in the subtree (including the root) as it was when the snapshot was taken.
+     * @return the amount of nodes
+     */
+    public long size(){
+        long[] size = {0};
+        forEachNode(node -> size[0]++);
+        return size[0];
+    }
+
+    /**
+     * Checks if the snapshot was closed.
+     * @return if the snapshot is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the snapshot so the versions only it could see can be dropped. The snapshot can't be read after this.
+     */
+    @Override
+    public void close() {
+        if(closed) return;
+        closed = true;
+        SnapshotClock.close(epoch);
+    }
+
+    private void checkOpen(){
+        if(closed) throw new IllegalStateException("the snapshot is closed!");
+    }
+
+    private static IllegalStateException notVersioned(Object node){
+        return new IllegalStateException("the children of " + node + " are not stored in a versioned storage, so they can't be read from a snapshot!");
+    }
+}
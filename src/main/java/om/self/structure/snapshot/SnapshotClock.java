@@ -0,0 +1,51 @@
+package om.self.structure.snapshot;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The clock shared by every {@link VersionedMap}. Taking a snapshot moves the clock forward, so every change made after the snapshot is tagged with a later epoch than the snapshot, and maps only keep old versions while a snapshot that can still see them is open.
+ */
+final class SnapshotClock {
+    private static final AtomicLong EPOCH = new AtomicLong();
+    private static final ConcurrentSkipListSet<Long> OPEN = new ConcurrentSkipListSet<>();
+
+    private SnapshotClock() {}
+
+    /**
+     * Gets the epoch changes made now are tagged with.
+     * @return the current epoch
+     */
+    static long now(){
+        return EPOCH.get();
+    }
+
+    /**
+     * Registers a new snapshot and moves the clock forward.
+     * @return the epoch of the snapshot (it sees every version tagged with this epoch or an earlier one)
+     */
+    static synchronized long open(){
+        long epoch = EPOCH.get();
+        OPEN.add(epoch);
+        EPOCH.incrementAndGet();
+        return epoch;
+    }
+
+    /**
+     * Unregisters a snapshot so the versions only it could see can be dropped.
+     * @param epoch the epoch of the snapshot
+     */
+    static void close(long epoch){
+        OPEN.remove(epoch);
+    }
+
+    /**
+     * Gets the epoch of the oldest open snapshot.
+     * @return the epoch or -1 if no snapshot is open
+     */
+    static long oldestOpen(){
+        if(OPEN.isEmpty()) return -1;
+        Long oldest = OPEN.ceiling(Long.MIN_VALUE);
+        return oldest == null ? -1 : oldest;
+    }
+}
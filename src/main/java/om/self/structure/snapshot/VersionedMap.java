@@ -0,0 +1,167 @@
+package om.self.structure.snapshot;
+
+import java.util.*;
+
+/**
+ * A map that stores its entries in an immutable hash array mapped trie, so every change copies only the path to the changed entry and earlier versions of the map stay valid. While a {@link Snapshot} is open the map keeps the version that snapshot sees, which is how a snapshot of a whole tree can be taken in constant time and read while the tree keeps changing.
+ * <br>
+ * Reads never lock and can happen on any thread, but changes have to come from one thread at a time (like a {@link HashMap}). Iterators work on the version of the map from when they were created, so they never throw {@link ConcurrentModificationException}, and removing through them removes the entry from the map. Null keys and values are allowed.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class VersionedMap<K, V> extends AbstractMap<K, V> {
+    /**
+     * One version of the map and the older versions open snapshots can still see.
+     */
+    private static final class Version {
+        private final long epoch;
+        private final Hamt.Node root;
+        private final int size;
+        //cut off once no open snapshot can see the older versions
+        private Version previous;
+
+        Version(long epoch, Hamt.Node root, int size, Version previous) {
+            this.epoch = epoch;
+            this.root = root;
+            this.size = size;
+            this.previous = previous;
+        }
+    }
+
+    private volatile Version head = new Version(SnapshotClock.now(), Hamt.EMPTY, 0, null);
+    private EntrySet entrySet;
+
+    /**
+     * Creates an empty map.
+     */
+    public VersionedMap() {
+    }
+
+    @Override
+    public int size() {
+        return head.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Object masked = Hamt.mask(key);
+        return head.root.get(masked, Hamt.hash(masked), 0) != Hamt.NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object masked = Hamt.mask(key);
+        Object value = head.root.get(masked, Hamt.hash(masked), 0);
+        return value == Hamt.NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Version current = head;
+        Object masked = Hamt.mask(key);
+        int hash = Hamt.hash(masked);
+        Object previous = current.root.get(masked, hash, 0);
+
+        Hamt.Node root = current.root.put(masked, value, hash, 0);
+        if(root != current.root) advance(root, previous == Hamt.NOT_FOUND ? current.size + 1 : current.size);
+        return previous == Hamt.NOT_FOUND ? null : (V) previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Version current = head;
+        Object masked = Hamt.mask(key);
+        int hash = Hamt.hash(masked);
+        Object previous = current.root.get(masked, hash, 0);
+        if(previous == Hamt.NOT_FOUND) return null;
+
+        Hamt.Node root = current.root.remove(masked, hash, 0);
+        advance(root == null ? Hamt.EMPTY : root, current.size - 1);
+        return (V) previous;
+    }
+
+    @Override
+    public void clear() {
+        if(head.size > 0) advance(Hamt.EMPTY, 0);
+    }
+
+    /**
+     * Publishes a new version. If no open snapshot can see the current version it is replaced, otherwise it is kept behind the new version (dropping the versions no open snapshot can see anymore).
+     */
+    private void advance(Hamt.Node root, int size){
+        Version current = head;
+        long now = SnapshotClock.now();
+        Version kept = current.epoch == now ? current.previous : current;
+
+        long oldest = SnapshotClock.oldestOpen();
+        if(oldest < 0) kept = null;
+        else for (Version version = kept; version != null; version = version.previous) {
+            if(version.epoch <= oldest) {
+                version.previous = null;
+                break;
+            }
+        }
+        head = new Version(now, root, size, kept);
+    }
+
+    /**
+     * Gets the map as it was when a snapshot was taken.
+     * @param epoch the epoch of the snapshot
+     * @return a read only view of the map at that time (empty if the map didn't exist yet)
+     */
+    Map<K, V> at(long epoch){
+        Version version = head;
+        while (version != null && version.epoch > epoch)
+            version = version.previous;
+        return version == null ? Collections.emptyMap() : new Hamt.View<>(version.root, version.size);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if(entrySet == null) entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public int size() {
+            return VersionedMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            VersionedMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Hamt.EntryIterator entries = new Hamt.EntryIterator(head.root);
+            return new Iterator<>() {
+                private Object last = Hamt.NOT_FOUND;
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Entry<K, V> next() {
+                    Object[] entry = entries.next();
+                    last = entry[0];
+                    return new SimpleImmutableEntry<>((K) entry[0], (V) entry[1]);
+                }
+
+                @Override
+                public void remove() {
+                    if(last == Hamt.NOT_FOUND) throw new IllegalStateException();
+                    VersionedMap.this.remove(last);
+                    last = Hamt.NOT_FOUND;
+                }
+            };
+        }
+    }
+}
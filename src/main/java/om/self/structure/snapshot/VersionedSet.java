@@ -0,0 +1,59 @@
+package om.self.structure.snapshot;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A set backed by a {@link VersionedMap}, so it keeps the versions open {@link Snapshot}s see in the same way.
+ * @param <T> the type of the elements
+ */
+public class VersionedSet<T> extends AbstractSet<T> {
+    private final VersionedMap<T, Boolean> map = new VersionedMap<>();
+
+    /**
+     * Creates an empty set.
+     */
+    public VersionedSet() {
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public boolean add(T t) {
+        return map.put(t, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return map.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return map.keySet().iterator();
+    }
+
+    /**
+     * Gets the set as it was when a snapshot was taken.
+     * @param epoch the epoch of the snapshot
+     * @return a read only view of the set at that time
+     */
+    Set<T> at(long epoch){
+        return Collections.unmodifiableSet(map.at(epoch).keySet());
+    }
+}
@@ -0,0 +1,117 @@
+package om.self.structure.storage;
+
+import om.self.structure.snapshot.VersionedMap;
+import om.self.structure.snapshot.VersionedSet;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates the maps keyed structures use to store their children (and the sets structures without keys use). Passing a storage to the constructor of a structure lets you pick the collection that fits how the structure is used (ex: a plain {@link java.util.HashMap} for trees that are only used by one thread).
+ * <br>
+ * The built-in storages are available through the static methods of this interface.
+ */
+public interface ChildStorage {
+    /**
+     * Creates a new empty map to store children in.
+     * @param expectedSize the amount of children that are expected to be stored (can be used to size the map)
+     * @return a new mutable map
+     * @param <K> the type of the keys
+     * @param <V> the type of the children
+     */
+    <K, V> Map<K, V> createMap(int expectedSize);
+
+    /**
+     * Creates a new empty set to store children in.
+     * @param expectedSize the amount of children that are expected to be stored (can be used to size the set)
+     * @return a new mutable set
+     * @param <T> the type of the children
+     * @implSpec The default implementation creates a set backed by {@link #createMap(int)}
+     */
+    default <T> Set<T> createSet(int expectedSize){
+        return Collections.newSetFromMap(createMap(expectedSize));
+    }
+
+    /**
+     * Storage made for trees with a lot of nodes that have few or no children. Sets are {@link InlineSet}s which don't allocate anything while empty and keep up to {@link InlineSet#INLINE_LIMIT} children in a small array. Maps are {@link java.util.HashMap}s. This is not thread safe.
+     * @return the storage
+     */
+    static ChildStorage inline(){
+        return StandardChildStorage.INLINE;
+    }
+
+    /**
+     * Storage backed by a {@link java.util.HashMap} (or a {@link java.util.HashSet}). This is the fastest option but it is not thread safe.
+     * @return the storage
+     */
+    static ChildStorage hashMap(){
+        return StandardChildStorage.HASH_MAP;
+    }
+
+    /**
+     * Storage backed by a {@link java.util.concurrent.ConcurrentHashMap} (or one of its key sets). This is thread safe, does not lock on reads and allows children to be detached while iterating.
+     * @return the storage
+     */
+    static ChildStorage concurrent(){
+        return StandardChildStorage.CONCURRENT;
+    }
+
+    /**
+     * Storage backed by a {@link StampedMap} (or a set backed by one) for trees that are read much more often than they are changed. This is thread safe, lookups use optimistic reads that don't lock or write any shared memory, and changes take an exclusive lock.
+     * @return the storage
+     */
+    static ChildStorage optimistic(){
+        return StandardChildStorage.OPTIMISTIC;
+    }
+
+    /**
+     * Storage backed by a {@link CopyOnWriteMap} (or a {@link java.util.concurrent.CopyOnWriteArraySet}) that copies an array on every change. This is thread safe, and iterating the children doesn't copy, lock or throw {@link java.util.ConcurrentModificationException} even if the children are changed while iterating (ex: from a callback), but lookups are linear and changes are expensive, so it is made for nodes with few children that are read far more often than they are changed.
+     * @return the storage
+     */
+    static ChildStorage copyOnWrite(){
+        return StandardChildStorage.COPY_ON_WRITE;
+    }
+
+    /**
+     * Storage backed by a {@link VersionedMap} (or a {@link VersionedSet}) that keeps the old versions of the children open {@link om.self.structure.snapshot.Snapshot}s need. Every change copies a small path of an immutable trie, so this is slower than {@link #hashMap()}, but it is what lets a snapshot of a whole tree be taken in constant time. Reads can happen on any thread but changes have to come from one thread at a time.
+     * @return the storage
+     */
+    static ChildStorage versioned(){
+        return StandardChildStorage.VERSIONED;
+    }
+
+    /**
+     * Storage backed by a {@link java.util.Hashtable}. Every access is synchronized on the map.
+     * @return the storage
+     */
+    static ChildStorage hashtable(){
+        return StandardChildStorage.HASHTABLE;
+    }
+
+    /**
+     * Storage backed by an {@link java.util.IdentityHashMap} so keys (or children in sets) are compared with {@code ==} instead of {@link Object#equals(Object)}. This is not thread safe.
+     * @return the storage
+     */
+    static ChildStorage identity(){
+        return StandardChildStorage.IDENTITY;
+    }
+
+    /**
+     * Storage backed by a {@link java.util.TreeMap} (or a {@link java.util.TreeSet}) that sorts keys by their natural ordering. This is not thread safe.
+     * @return the storage
+     */
+    static ChildStorage sorted(){
+        return StandardChildStorage.SORTED;
+    }
+
+    /**
+     * Storage backed by a {@link java.util.TreeMap} (or a {@link java.util.TreeSet}) that sorts keys with a comparator. This is not thread safe.
+     * @param comparator the comparator used to sort the keys (it has to accept the keys or children of the structure)
+     * @return the storage
+     */
+    static ChildStorage sorted(Comparator<?> comparator){
+        return new SortedChildStorage(comparator);
+    }
+}
@@ -0,0 +1,232 @@
+package om.self.structure.storage;
+
+import java.util.*;
+
+/**
+ * A thread safe map that keeps its entries in one array and replaces the array with a changed copy on every change (like {@link java.util.concurrent.CopyOnWriteArrayList}). Iterating is a plain walk over the array the iterator started with, so it doesn't copy, lock or throw {@link ConcurrentModificationException} even if the map is changed by another thread or by a callback while iterating.
+ * <br>
+ * Lookups search the array linearly and every change copies it, so this is made for nodes with a small amount of children that are read far more often than they are changed. {@link #putAll(Map)} copies the array once for the whole batch. Removing through an iterator removes the entry from the map. Null keys and values are allowed.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class CopyOnWriteMap<K, V> extends AbstractMap<K, V> {
+    private static final Object[] EMPTY = new Object[0];
+
+    private final Object lock = new Object();
+    //keys at even indexes and their values right after them
+    private volatile Object[] entries = EMPTY;
+
+    private EntrySet entrySet;
+
+    /**
+     * Creates an empty map.
+     */
+    public CopyOnWriteMap() {
+    }
+
+    private static int indexOf(Object[] entries, Object key){
+        for (int i = 0; i < entries.length; i += 2)
+            if(Objects.equals(entries[i], key)) return i;
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return entries.length >> 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(entries, key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object[] entries = this.entries;
+        int index = indexOf(entries, key);
+        return index < 0 ? null : (V) entries[index + 1];
+    }
+
+    @Override
+    public V put(K key, V value) {
+        synchronized (lock) {
+            return insert(key, value, true);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        synchronized (lock) {
+            return insert(key, value, false);
+        }
+    }
+
+    /**
+     * Adds or replaces an entry (the lock must be held).
+     * @return the previous value
+     */
+    @SuppressWarnings("unchecked")
+    private V insert(K key, V value, boolean replace){
+        Object[] entries = this.entries;
+        int index = indexOf(entries, key);
+        if(index >= 0) {
+            V previous = (V) entries[index + 1];
+            if(replace && previous != value) {
+                Object[] copy = entries.clone();
+                copy[index + 1] = value;
+                this.entries = copy;
+            }
+            return previous;
+        }
+
+        Object[] copy = Arrays.copyOf(entries, entries.length + 2);
+        copy[entries.length] = key;
+        copy[entries.length + 1] = value;
+        this.entries = copy;
+        return null;
+    }
+
+    /**
+     * Adds or replaces every entry of a map with a single copy of the array.
+     * @param map the entries to add
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        if(map.isEmpty()) return;
+        synchronized (lock) {
+            Object[] entries = this.entries;
+            Object[] copy = Arrays.copyOf(entries, entries.length + 2 * map.size());
+            int size = entries.length;
+            for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                int index = indexOf(entries, entry.getKey());
+                if(index < 0) { //the key may have been added earlier in this batch
+                    for (int i = entries.length; i < size; i += 2)
+                        if(Objects.equals(copy[i], entry.getKey())) {
+                            index = i;
+                            break;
+                        }
+                }
+                if(index >= 0) {
+                    copy[index + 1] = entry.getValue();
+                } else {
+                    copy[size++] = entry.getKey();
+                    copy[size++] = entry.getValue();
+                }
+            }
+            this.entries = size == copy.length ? copy : Arrays.copyOf(copy, size);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        synchronized (lock) {
+            int index = indexOf(entries, key);
+            return index < 0 ? null : removeAt(index);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        synchronized (lock) {
+            int index = indexOf(entries, key);
+            if(index < 0 || !Objects.equals(entries[index + 1], value)) return false;
+            removeAt(index);
+            return true;
+        }
+    }
+
+    /**
+     * Removes every entry of a map that is still in this map with the same value with a single copy of the array. Entries whose key now has a different value are kept.
+     * @param map the entries to remove
+     */
+    public void removeEntries(Map<?, ?> map) {
+        if(map.isEmpty()) return;
+        synchronized (lock) {
+            Object[] entries = this.entries;
+            Object[] copy = new Object[entries.length];
+            int size = 0;
+            for (int i = 0; i < entries.length; i += 2) {
+                if(map.containsKey(entries[i]) && Objects.equals(map.get(entries[i]), entries[i + 1])) continue;
+                copy[size++] = entries[i];
+                copy[size++] = entries[i + 1];
+            }
+            if(size < entries.length) this.entries = size == 0 ? EMPTY : Arrays.copyOf(copy, size);
+        }
+    }
+
+    /**
+     * Removes the entry at an index (the lock must be held).
+     * @return the value of the entry
+     */
+    @SuppressWarnings("unchecked")
+    private V removeAt(int index){
+        Object[] entries = this.entries;
+        V previous = (V) entries[index + 1];
+        Object[] copy = new Object[entries.length - 2];
+        System.arraycopy(entries, 0, copy, 0, index);
+        System.arraycopy(entries, index + 2, copy, index, entries.length - index - 2);
+        this.entries = copy;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            entries = EMPTY;
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if(entrySet == null) entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public int size() {
+            return CopyOnWriteMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CopyOnWriteMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Object[] entries = CopyOnWriteMap.this.entries;
+            return new Iterator<>() {
+                private int next;
+                private int last = -1;
+
+                @Override
+                public boolean hasNext() {
+                    return next < entries.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Entry<K, V> next() {
+                    if(next >= entries.length) throw new NoSuchElementException();
+                    last = next;
+                    next += 2;
+                    return new SimpleImmutableEntry<>((K) entries[last], (V) entries[last + 1]);
+                }
+
+                @Override
+                public void remove() {
+                    if(last < 0) throw new IllegalStateException();
+                    CopyOnWriteMap.this.remove(entries[last]);
+                    last = -1;
+                }
+            };
+        }
+    }
+}
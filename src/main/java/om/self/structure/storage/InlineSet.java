@@ -0,0 +1,209 @@
+package om.self.structure.storage;
+
+import java.util.*;
+
+/**
+ * A set made for the children of tree nodes, where most nodes have no children or only a few. An empty set doesn't allocate any storage, up to {@link #INLINE_LIMIT} elements are kept in a small array that is searched linearly, and once the set grows past that it is promoted to a {@link HashSet}.
+ * <br>
+ * Elements are compared with {@link Object#equals(Object)} like a {@link HashSet}. The set is not thread safe and its iterator is fail-fast.
+ * @param <T> the type of the elements
+ */
+public class InlineSet<T> extends AbstractSet<T> {
+    /**
+     * The largest amount of elements kept in the inline array before the set is promoted to a {@link HashSet}.
+     */
+    public static final int INLINE_LIMIT = 8;
+
+    /**
+     * null when empty, an Object[] while inline or a HashSet after being promoted
+     */
+    private Object store;
+    private int size;
+    private int modCount;
+
+    /**
+     * Creates an empty set.
+     */
+    public InlineSet() {
+    }
+
+    /**
+     * Creates an empty set that already has room for some elements.
+     * @param expectedSize the expected amount of elements
+     */
+    public InlineSet(int expectedSize) {
+        if(expectedSize > INLINE_LIMIT) store = new HashSet<T>(StandardChildStorage.capacity(expectedSize));
+    }
+
+    /**
+     * Checks if the set was promoted to a {@link HashSet}.
+     * @return if the set is promoted
+     */
+    public boolean isPromoted(){
+        return store instanceof HashSet;
+    }
+
+    /**
+     * Makes room for a number of elements so adding them doesn't resize the set more than once. If the set would be promoted anyway, it is promoted now to a {@link HashSet} of the right size.
+     * @param expectedSize the amount of elements the set is expected to hold
+     */
+    @SuppressWarnings("unchecked")
+    public void ensureCapacity(int expectedSize){
+        if(expectedSize <= INLINE_LIMIT || isPromoted()) return;
+
+        HashSet<T> promoted = new HashSet<>(StandardChildStorage.capacity(expectedSize));
+        for (int i = 0; i < size; i++)
+            promoted.add((T) ((Object[]) store)[i]);
+        store = promoted;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if(store instanceof Object[] array) return indexOf(array, o) >= 0;
+        return store != null && ((HashSet<T>) store).contains(o);
+    }
+
+    private int indexOf(Object[] array, Object o){
+        for (int i = 0; i < size; i++)
+            if(Objects.equals(array[i], o)) return i;
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean add(T t) {
+        if(store == null) {
+            store = new Object[]{t, null};
+        } else if(store instanceof Object[] array) {
+            if(indexOf(array, t) >= 0) return false;
+            if(size == array.length) {
+                if(size == INLINE_LIMIT) {
+                    HashSet<T> promoted = new HashSet<>(StandardChildStorage.capacity(size + 1));
+                    for (Object o : array) promoted.add((T) o);
+                    promoted.add(t);
+                    store = promoted;
+                    size++;
+                    modCount++;
+                    return true;
+                }
+                array = Arrays.copyOf(array, Math.min(INLINE_LIMIT, size * 2));
+                store = array;
+            }
+            array[size] = t;
+        } else if(!((HashSet<T>) store).add(t)) {
+            return false;
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if(store instanceof Object[] array) {
+            int i = indexOf(array, o);
+            if(i < 0) return false;
+            removeAt(array, i);
+            return true;
+        }
+        if(store == null || !((HashSet<T>) store).remove(o)) return false;
+        if(--size == 0) store = null;
+        modCount++;
+        return true;
+    }
+
+    private void removeAt(Object[] array, int index){
+        size--;
+        System.arraycopy(array, index + 1, array, index, size - index);
+        array[size] = null;
+        if(size == 0) store = null;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        if(size == 0) return;
+        store = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray() {
+        if(store instanceof Object[] array) return Arrays.copyOf(array, size);
+        return store == null ? new Object[0] : ((HashSet<?>) store).toArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<T> iterator() {
+        if(store instanceof HashSet) return new PromotedIterator(((HashSet<T>) store).iterator());
+        return new InlineIterator();
+    }
+
+    private final class InlineIterator implements Iterator<T> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            if(next >= size) throw new NoSuchElementException();
+            last = next++;
+            return (T) ((Object[]) store)[last];
+        }
+
+        @Override
+        public void remove() {
+            if(last < 0) throw new IllegalStateException();
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            removeAt((Object[]) store, last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Wraps the iterator of the promoted set so the size is kept in sync (and the promoted set is released once it is empty) when elements are removed through the iterator.
+     */
+    private final class PromotedIterator implements Iterator<T> {
+        private final Iterator<T> iterator;
+
+        PromotedIterator(Iterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            iterator.remove();
+            if(--size == 0) store = null;
+            modCount++;
+        }
+    }
+}
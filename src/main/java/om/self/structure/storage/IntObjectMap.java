@@ -0,0 +1,336 @@
+package om.self.structure.storage;
+
+import java.util.*;
+
+/**
+ * A map from primitive {@code int} keys to objects that uses open addressing (linear probing) over a key array and a value array. There are no entry objects and no boxed keys, so the primitive methods ({@link #get(int)}, {@link #put(int, Object)}, {@link #remove(int)} and {@link #containsKey(int)}) never allocate.
+ * <br>
+ * The {@link Map} methods still work with boxed keys so this can be returned from {@link om.self.structure.child.KeyedChildStructure#getChildrenAndKeys()}. Values can not be null and the map is not thread safe.
+ * @param <V> the type of the values
+ */
+public class IntObjectMap<V> extends AbstractMap<Integer, V> {
+    /**
+     * Marks a slot whose entry was removed so lookups keep probing past it.
+     */
+    private static final Object REMOVED = new Object();
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    //null means the slot is free
+    private Object[] values;
+    private int size;
+    //slots that are in use (entries plus removed markers)
+    private int used;
+    private int mask;
+    private int resizeAt;
+    private int modCount;
+
+    private EntrySet entrySet;
+    private Values valuesView;
+
+    /**
+     * Creates an empty map.
+     */
+    public IntObjectMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map that can hold a number of entries without resizing.
+     * @param expectedSize the expected amount of entries
+     */
+    public IntObjectMap(int expectedSize) {
+        allocate(Math.max(4, Integer.highestOneBit(Math.max(1, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1));
+    }
+
+    /**
+     * Creates a copy of the map by copying its arrays (no entries are created and no keys are boxed).
+     * @return a new map with the same entries
+     */
+    public IntObjectMap<V> copy(){
+        IntObjectMap<V> copy = new IntObjectMap<>(0);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        copy.used = used;
+        copy.mask = mask;
+        copy.resizeAt = resizeAt;
+        return copy;
+    }
+
+    private void allocate(int capacity){
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+        used = size;
+    }
+
+    private int slot(int key){
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Finds the slot of a key.
+     * @param key the key
+     * @return the slot of the key or -1 if the key is not in the map
+     */
+    private int find(int key){
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            Object value = values[i];
+            if(value == null) return -1;
+            if(value != REMOVED && keys[i] == key) return i;
+        }
+    }
+
+    /**
+     * Gets the value of a key.
+     * @param key the key
+     * @return the value or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key){
+        int i = find(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    /**
+     * Checks if a key is in the map.
+     * @param key the key
+     * @return if the key is in the map
+     */
+    public boolean containsKey(int key){
+        return find(key) >= 0;
+    }
+
+    /**
+     * Maps a key to a value.
+     * @param key the key
+     * @param value the value (can not be null)
+     * @return the previous value or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value){
+        Objects.requireNonNull(value);
+        int free = -1;
+        int i = slot(key);
+        for (; ; i = (i + 1) & mask) {
+            Object current = values[i];
+            if(current == null) break;
+            if(current == REMOVED) {
+                if(free < 0) free = i;
+            } else if(keys[i] == key) {
+                values[i] = value;
+                return (V) current;
+            }
+        }
+
+        modCount++;
+        if(free >= 0) i = free;
+        else used++;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if(used > resizeAt) rehash(size > resizeAt / 2 ? keys.length << 1 : keys.length);
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     * @param key the key
+     * @return the value of the key or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key){
+        int i = find(key);
+        if(i < 0) return null;
+        return (V) removeSlot(i);
+    }
+
+    /**
+     * Removes every entry the filter matches by walking the slots (no entries are created and no keys are boxed).
+     * @param filter returns true for the entries to remove
+     * @return if any entry was removed
+     */
+    @SuppressWarnings("unchecked")
+    public boolean removeIf(EntryFilter<? super V> filter){
+        int removed = 0;
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if(value == null || value == REMOVED || !filter.test(keys[i], (V) value)) continue;
+            removeSlot(i);
+            removed++;
+        }
+        return removed > 0;
+    }
+
+    private Object removeSlot(int i){
+        Object old = values[i];
+        values[i] = REMOVED;
+        size--;
+        modCount++;
+        return old;
+    }
+
+    private void rehash(int capacity){
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldValues.length; j++) {
+            Object value = oldValues[j];
+            if(value == null || value == REMOVED) continue;
+            int i = slot(oldKeys[j]);
+            while (values[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = value;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer k ? get(k.intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer k && containsKey(k.intValue());
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer k ? remove(k.intValue()) : null;
+    }
+
+    @Override
+    public void clear() {
+        if(size == 0 && used == 0) return;
+        modCount++;
+        Arrays.fill(values, null);
+        size = 0;
+        used = 0;
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        if(entrySet == null) entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    /**
+     * Gets a view of the values that iterates without creating entries.
+     * @return the values
+     */
+    @Override
+    public Collection<V> values() {
+        if(valuesView == null) valuesView = new Values();
+        return valuesView;
+    }
+
+    /**
+     * Tests an entry of the map without boxing its key.
+     * @param <V> the type of the values
+     */
+    @FunctionalInterface
+    public interface EntryFilter<V> {
+        /**
+         * Tests an entry.
+         * @param key the key of the entry
+         * @param value the value of the entry
+         * @return true if the entry matches
+         */
+        boolean test(int key, V value);
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new SlotIterator<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                V get(int slot) {
+                    return (V) values[slot];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            IntObjectMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<Integer, V>> {
+        @Override
+        public Iterator<Entry<Integer, V>> iterator() {
+            return new SlotIterator<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                Entry<Integer, V> get(int slot) {
+                    return new SimpleImmutableEntry<>(keys[slot], (V) values[slot]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            IntObjectMap.this.clear();
+        }
+    }
+
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        private int next = advance(0);
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        abstract E get(int slot);
+
+        private int advance(int from){
+            while (from < values.length && (values[from] == null || values[from] == REMOVED)) from++;
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public E next() {
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            if(!hasNext()) throw new NoSuchElementException();
+            last = next;
+            next = advance(next + 1);
+            return get(last);
+        }
+
+        @Override
+        public void remove() {
+            if(last < 0) throw new IllegalStateException();
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            removeSlot(last);
+            expectedModCount = modCount;
+            last = -1;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package om.self.structure.storage;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A {@link ChildStorage} that creates {@link TreeMap}s sorted with a comparator.
+ * @param comparator the comparator used to sort keys
+ */
+record SortedChildStorage(Comparator<?> comparator) implements ChildStorage {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> createMap(int expectedSize) {
+        return new TreeMap<>((Comparator<? super K>) comparator);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Set<T> createSet(int expectedSize) {
+        return new TreeSet<>((Comparator<? super T>) comparator);
+    }
+}
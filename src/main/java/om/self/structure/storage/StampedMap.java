@@ -0,0 +1,318 @@
+package om.self.structure.storage;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread safe map made for trees that are read much more often than they are changed. Changes take the write lock of a {@link StampedLock}, but lookups ({@link #get(Object)}, {@link #containsKey(Object)}, {@link #size()}) use an optimistic read: they read the table without locking and then check that no change happened in between, so readers never write to memory shared with other readers. Only when a change did happen at the same time does the lookup retry under the read lock.
+ * <br>
+ * Entries are kept in one array using open addressing (linear probing). Iterators work on a copy of the entries taken when they are created (like {@link java.util.concurrent.CopyOnWriteArrayList}), so they never throw {@link ConcurrentModificationException}, and removing through them removes the entry from the map. Null keys and values are allowed.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class StampedMap<K, V> extends AbstractMap<K, V> {
+    /**
+     * Stands for the null key in the table (null means the slot is free).
+     */
+    private static final Object NULL_KEY = new Object();
+    /**
+     * Marks a slot whose entry was removed so lookups keep probing past it.
+     */
+    private static final Object REMOVED = new Object();
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final StampedLock lock = new StampedLock();
+    //keys at even indexes and their values right after them
+    private Object[] table;
+    private int size;
+    //slots that are in use (entries plus removed markers)
+    private int used;
+
+    private EntrySet entrySet;
+
+    /**
+     * Creates an empty map.
+     */
+    public StampedMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map that can hold a number of entries without resizing.
+     * @param expectedSize the expected amount of entries
+     */
+    public StampedMap(int expectedSize) {
+        table = new Object[2 * capacity(expectedSize)];
+    }
+
+    private static int capacity(int expectedSize){
+        return Math.max(4, Integer.highestOneBit(Math.max(1, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1);
+    }
+
+    private static Object mask(Object key){
+        return key == null ? NULL_KEY : key;
+    }
+
+    /**
+     * Finds the index of a key in a table. The probe is bounded by the length of the table so it ends even if the table is changed while an optimistic read is looking at it.
+     * @param table the table
+     * @param key the masked key
+     * @return the index of the key or -1 if the key is not in the table
+     */
+    private static int find(Object[] table, Object key){
+        int slots = table.length >> 1;
+        int h = key.hashCode() * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & (slots - 1);
+        for (int probes = 0; probes < slots; probes++, slot = (slot + 1) & (slots - 1)) {
+            Object current = table[slot << 1];
+            if(current == null) return -1;
+            if(current == key || (current != REMOVED && current.equals(key))) return slot << 1;
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object masked = mask(key);
+        long stamp = lock.tryOptimisticRead();
+        if(stamp != 0) {
+            try{
+                Object[] table = this.table;
+                int index = find(table, masked);
+                Object value = index < 0 ? null : table[index + 1];
+                if(lock.validate(stamp)) return (V) value;
+            } catch(RuntimeException e){} //the table changed during the read (the read is retried below)
+        }
+
+        stamp = lock.readLock();
+        try{
+            int index = find(table, masked);
+            return index < 0 ? null : (V) table[index + 1];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Object masked = mask(key);
+        long stamp = lock.tryOptimisticRead();
+        if(stamp != 0) {
+            try{
+                boolean found = find(table, masked) >= 0;
+                if(lock.validate(stamp)) return found;
+            } catch(RuntimeException e){} //the table changed during the read (the read is retried below)
+        }
+
+        stamp = lock.readLock();
+        try{
+            return find(table, masked) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = this.size;
+        if(stamp != 0 && lock.validate(stamp)) return size;
+
+        stamp = lock.readLock();
+        try{
+            return this.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        long stamp = lock.writeLock();
+        try{
+            return insert(mask(key), value, true);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        long stamp = lock.writeLock();
+        try{
+            return insert(mask(key), value, false);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds or replaces an entry (the write lock must be held).
+     * @return the previous value
+     */
+    @SuppressWarnings("unchecked")
+    private V insert(Object key, Object value, boolean replace){
+        int index = find(table, key);
+        if(index >= 0) {
+            V previous = (V) table[index + 1];
+            if(replace) table[index + 1] = value;
+            return previous;
+        }
+
+        if(used + 1 > (table.length >> 1) * LOAD_FACTOR) rehash(capacity(size + 1));
+        int slots = table.length >> 1;
+        int h = key.hashCode() * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & (slots - 1);
+        while (table[slot << 1] != null && table[slot << 1] != REMOVED)
+            slot = (slot + 1) & (slots - 1);
+        if(table[slot << 1] == null) used++;
+        table[(slot << 1) + 1] = value;
+        table[slot << 1] = key;
+        size++;
+        return null;
+    }
+
+    /**
+     * Moves every entry to a new table (dropping removed markers). The new table is filled before it is published so an optimistic read only ever sees a complete table.
+     */
+    private void rehash(int capacity){
+        Object[] old = table;
+        Object[] fresh = new Object[2 * capacity];
+        int slots = capacity;
+        for (int i = 0; i < old.length; i += 2) {
+            Object key = old[i];
+            if(key == null || key == REMOVED) continue;
+            int h = key.hashCode() * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & (slots - 1);
+            while (fresh[slot << 1] != null)
+                slot = (slot + 1) & (slots - 1);
+            fresh[slot << 1] = key;
+            fresh[(slot << 1) + 1] = old[i + 1];
+        }
+        table = fresh;
+        used = size;
+    }
+
+    @Override
+    public V remove(Object key) {
+        long stamp = lock.writeLock();
+        try{
+            int index = find(table, mask(key));
+            return index < 0 ? null : removeAt(index);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        long stamp = lock.writeLock();
+        try{
+            int index = find(table, mask(key));
+            if(index < 0 || !Objects.equals(table[index + 1], value)) return false;
+            removeAt(index);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeAt(int index){
+        V previous = (V) table[index + 1];
+        table[index] = REMOVED;
+        table[index + 1] = null;
+        size--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try{
+            if(size == 0 && used == 0) return;
+            table = new Object[2 * capacity(0)];
+            size = 0;
+            used = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies the entries under the read lock.
+     * @return the keys and values (keys at even indexes)
+     */
+    private Object[] snapshot(){
+        long stamp = lock.readLock();
+        try{
+            Object[] entries = new Object[2 * size];
+            int next = 0;
+            for (int i = 0; i < table.length; i += 2) {
+                Object key = table[i];
+                if(key == null || key == REMOVED) continue;
+                entries[next++] = key == NULL_KEY ? null : key;
+                entries[next++] = table[i + 1];
+            }
+            return entries;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if(entrySet == null) entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public int size() {
+            return StampedMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            StampedMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Object[] entries = snapshot();
+            return new Iterator<>() {
+                private int next;
+                private Object last = REMOVED;
+
+                @Override
+                public boolean hasNext() {
+                    return next < entries.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Entry<K, V> next() {
+                    if(next >= entries.length) throw new NoSuchElementException();
+                    K key = (K) entries[next];
+                    V value = (V) entries[next + 1];
+                    next += 2;
+                    last = key;
+                    return new SimpleImmutableEntry<>(key, value);
+                }
+
+                @Override
+                public void remove() {
+                    if(last == REMOVED) throw new IllegalStateException();
+                    StampedMap.this.remove(last);
+                    last = REMOVED;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package om.self.structure.storage;
+
+import om.self.structure.snapshot.VersionedMap;
+import om.self.structure.snapshot.VersionedSet;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * The built-in {@link ChildStorage}s that don't need any configuration.
+ */
+enum StandardChildStorage implements ChildStorage {
+    INLINE {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new HashMap<>(capacity(expectedSize));
+        }
+
+        @Override
+        public <T> Set<T> createSet(int expectedSize) {
+            return new InlineSet<>(expectedSize);
+        }
+    },
+    HASH_MAP {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new HashMap<>(capacity(expectedSize));
+        }
+
+        @Override
+        public <T> Set<T> createSet(int expectedSize) {
+            return new HashSet<>(capacity(expectedSize));
+        }
+    },
+    CONCURRENT {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new ConcurrentHashMap<>(expectedSize);
+        }
+
+        @Override
+        public <T> Set<T> createSet(int expectedSize) {
+            return ConcurrentHashMap.newKeySet(expectedSize);
+        }
+    },
+    OPTIMISTIC {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new StampedMap<>(expectedSize);
+        }
+    },
+    COPY_ON_WRITE {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new CopyOnWriteMap<>();
+        }
+
+        @Override
+        public <T> Set<T> createSet(int expectedSize) {
+            return new CopyOnWriteArraySet<>();
+        }
+    },
+    VERSIONED {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new VersionedMap<>();
+        }
+
+        @Override
+        public <T> Set<T> createSet(int expectedSize) {
+            return new VersionedSet<>();
+        }
+    },
+    HASHTABLE {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return expectedSize < 8 ? new Hashtable<>() : new Hashtable<>(capacity(expectedSize));
+        }
+    },
+    IDENTITY {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new IdentityHashMap<>(expectedSize);
+        }
+    },
+    SORTED {
+        @Override
+        public <K, V> Map<K, V> createMap(int expectedSize) {
+            return new TreeMap<>();
+        }
+
+        @Override
+        public <T> Set<T> createSet(int expectedSize) {
+            return new TreeSet<>();
+        }
+    };
+
+    /**
+     * Gets the initial capacity a hash map needs to store a number of entries without resizing.
+     * @param expectedSize the expected amount of entries
+     * @return the initial capacity
+     */
+    static int capacity(int expectedSize){
+        return expectedSize < 12 ? 16 : (int) (expectedSize / 0.75f) + 1;
+    }
+}
@@ -0,0 +1,76 @@
+package om.self.structure.traversal;
+
+import om.self.structure.child.ChildContainer;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * An iterator that returns nodes level by level (all children of the root, then all grandchildren, and so on) using a queue.
+ * <br>
+ * Every node below the root that is a {@link ChildContainer} is descended into and its children are assumed to be of the same type as the children of the root. The root itself is not returned.
+ * @param <T> the type of the nodes
+ * @implNote the tree should not be changed while iterating
+ */
+public class BreadthFirstIterator<T> implements Iterator<T> {
+    private final ArrayDeque<Iterator<?>> queue = new ArrayDeque<>();
+    private final Predicate<? super T> prune;
+    private T next;
+    private boolean hasNext;
+
+    /**
+     * Creates an iterator over all descendants of root.
+     * @param root the root of the subtree
+     */
+    public BreadthFirstIterator(ChildContainer<? extends T> root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates an iterator over the descendants of root that skips pruned nodes and their subtrees.
+     * @param root the root of the subtree
+     * @param prune returns true for nodes that should be skipped along with their subtree (null to not prune)
+     */
+    public BreadthFirstIterator(ChildContainer<? extends T> root, Predicate<? super T> prune) {
+        this.prune = prune;
+        queue.add(root.getChildren().iterator());
+        advance();
+    }
+
+    /**
+     * Finds the next node that isn't pruned. The queue holds the children iterators of the nodes that were already returned, so a level is only expanded when it is reached.
+     */
+    @SuppressWarnings("unchecked")
+    private void advance(){
+        while (!queue.isEmpty()) {
+            Iterator<?> head = queue.peek();
+            if(!head.hasNext()) {
+                queue.poll();
+                continue;
+            }
+            T node = (T) head.next();
+            if(Traversal.pruned(prune, node)) continue;
+            if(node instanceof ChildContainer<?>) queue.add(Traversal.childrenOf(node));
+            next = node;
+            hasNext = true;
+            return;
+        }
+        next = null;
+        hasNext = false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if(!hasNext) throw new NoSuchElementException();
+        T node = next;
+        advance();
+        return node;
+    }
+}
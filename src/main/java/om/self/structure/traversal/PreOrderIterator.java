@@ -0,0 +1,73 @@
+package om.self.structure.traversal;
+
+import om.self.structure.child.ChildContainer;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * A depth first iterator that returns every node before its children. The iterator uses an explicit stack (one children iterator per level) instead of recursion, so deep trees can't overflow the call stack.
+ * <br>
+ * Every node below the root that is a {@link ChildContainer} is descended into and its children are assumed to be of the same type as the children of the root. The root itself is not returned.
+ * @param <T> the type of the nodes
+ * @implNote the tree should not be changed while iterating
+ */
+public class PreOrderIterator<T> implements Iterator<T> {
+    private final ArrayDeque<Iterator<?>> stack = new ArrayDeque<>();
+    private final Predicate<? super T> prune;
+    private T next;
+    private boolean hasNext;
+
+    /**
+     * Creates an iterator over all descendants of root.
+     * @param root the root of the subtree
+     */
+    public PreOrderIterator(ChildContainer<? extends T> root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates an iterator over the descendants of root that skips pruned nodes and their subtrees.
+     * @param root the root of the subtree
+     * @param prune returns true for nodes that should be skipped along with their subtree (null to not prune)
+     */
+    public PreOrderIterator(ChildContainer<? extends T> root, Predicate<? super T> prune) {
+        this.prune = prune;
+        stack.push(root.getChildren().iterator());
+        advance();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void advance(){
+        while (!stack.isEmpty()) {
+            Iterator<?> top = stack.peek();
+            if(!top.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            T node = (T) top.next();
+            if(Traversal.pruned(prune, node)) continue;
+            stack.push(Traversal.childrenOf(node));
+            next = node;
+            hasNext = true;
+            return;
+        }
+        next = null;
+        hasNext = false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if(!hasNext) throw new NoSuchElementException();
+        T node = next;
+        advance();
+        return node;
+    }
+}
@@ -0,0 +1,219 @@
+package om.self.structure.traversal;
+
+import om.self.structure.child.ChildContainer;
+import om.self.structure.child.KeyedChildStructure;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Operations that work on whole subtrees.
+ */
+public final class StructureOps {
+    /**
+     * While a worker has more than this many forked tasks waiting in its queue, child subtrees are folded sequentially instead of being forked (the other workers already have enough to steal).
+     */
+    private static final int SURPLUS_LIMIT = 3;
+    /**
+     * Tasks this deep in the tree fold their children sequentially. A joined task usually runs on the joining thread, so forking without a limit would recurse once per level on deep chains.
+     */
+    private static final int MAX_FORK_DEPTH = 64;
+    /**
+     * The result of a subtree that didn't contain any nodes.
+     */
+    private static final Object NONE = new Object();
+
+    private StructureOps() {
+    }
+
+    /**
+     * Maps every descendant of root and combines the results using the common {@link ForkJoinPool}.
+     * @param root the root of the subtree (it isn't mapped itself)
+     * @param mapper maps a node to a result
+     * @param combiner combines two results (must be associative and commutative because results are not combined in tree order: children folded on the current thread are combined first, then the results of forked subtrees in the reverse of the order they were forked)
+     * @return the combined result or an empty optional if root has no descendants
+     * @param <T> the type of the nodes
+     * @param <R> the type of the result
+     * @see #parallelReduce(ChildContainer, Function, BinaryOperator, ForkJoinPool)
+     */
+    public static <T, R> Optional<R> parallelReduce(ChildContainer<? extends T> root, Function<? super T, ? extends R> mapper, BinaryOperator<R> combiner){
+        return parallelReduce(root, mapper, combiner, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Maps every descendant of root and combines the results. A task is forked for every child that has children of its own, unless the worker already has a surplus of queued tasks or the child is too deep, in which case the subtree is folded on the current thread with a {@link PreOrderIterator}. Leaf children are never forked.
+     * @param root the root of the subtree (it isn't mapped itself)
+     * @param mapper maps a node to a result
+     * @param combiner combines two results (must be associative and commutative because results are not combined in tree order: children folded on the current thread are combined first, then the results of forked subtrees in the reverse of the order they were forked)
+     * @param pool the pool that runs the tasks
+     * @return the combined result or an empty optional if root has no descendants
+     * @param <T> the type of the nodes
+     * @param <R> the type of the result
+     * @implNote only children that are also a {@link ChildContainer} are descended into, and their children are assumed to be of type T. The tree should not be changed during the reduction.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> Optional<R> parallelReduce(ChildContainer<? extends T> root, Function<? super T, ? extends R> mapper, BinaryOperator<R> combiner, ForkJoinPool pool){
+        Object result = pool.invoke(new ReduceTask<>(root, 0, mapper, combiner));
+        return result == NONE ? Optional.empty() : Optional.ofNullable((R) result);
+    }
+
+    /**
+     * Maps every descendant of root along with its key and combines the results using the common {@link ForkJoinPool}.
+     * @param root the root of the subtree (it isn't mapped itself)
+     * @param mapper maps a key and a node to a result
+     * @param combiner combines two results (must be associative and commutative because results are not combined in tree order: children folded on the current thread are combined first, then the results of forked subtrees in the reverse of the order they were forked)
+     * @return the combined result or an empty optional if root has no descendants
+     * @param <K> the type of the keys
+     * @param <V> the type of the nodes
+     * @param <R> the type of the result
+     * @see #parallelReduce(KeyedChildStructure, BiFunction, BinaryOperator, ForkJoinPool)
+     */
+    public static <K, V, R> Optional<R> parallelReduce(KeyedChildStructure<? extends K, ? extends V> root, BiFunction<? super K, ? super V, ? extends R> mapper, BinaryOperator<R> combiner){
+        return parallelReduce(root, mapper, combiner, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Maps every descendant of root along with its key (from {@link KeyedChildStructure#getChildrenAndKeys()}) and combines the results. Subtrees are forked the same way as {@link #parallelReduce(ChildContainer, Function, BinaryOperator, ForkJoinPool)}.
+     * @param root the root of the subtree (it isn't mapped itself)
+     * @param mapper maps a key and a node to a result
+     * @param combiner combines two results (must be associative and commutative because results are not combined in tree order: children folded on the current thread are combined first, then the results of forked subtrees in the reverse of the order they were forked)
+     * @param pool the pool that runs the tasks
+     * @return the combined result or an empty optional if root has no descendants
+     * @param <K> the type of the keys
+     * @param <V> the type of the nodes
+     * @param <R> the type of the result
+     * @implNote only children that are also a {@link KeyedChildStructure} are descended into, and their keys and children are assumed to be of type K and V. The tree should not be changed during the reduction.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V, R> Optional<R> parallelReduce(KeyedChildStructure<? extends K, ? extends V> root, BiFunction<? super K, ? super V, ? extends R> mapper, BinaryOperator<R> combiner, ForkJoinPool pool){
+        Object result = pool.invoke(new KeyedReduceTask<>(root, 0, mapper, combiner));
+        return result == NONE ? Optional.empty() : Optional.ofNullable((R) result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> Object combine(BinaryOperator<R> combiner, Object a, Object b){
+        if(a == NONE) return b;
+        if(b == NONE) return a;
+        return combiner.apply((R) a, (R) b);
+    }
+
+    private static boolean hasChildren(Object node){
+        return node instanceof ChildContainer<?> container && !container.getChildren().isEmpty();
+    }
+
+    @SuppressWarnings("serial") //tasks are never serialized (and their fields can't be)
+    private static final class ReduceTask<T, R> extends RecursiveTask<Object> {
+        private final ChildContainer<?> node;
+        private final int depth;
+        private final Function<? super T, ? extends R> mapper;
+        private final BinaryOperator<R> combiner;
+
+        ReduceTask(ChildContainer<?> node, int depth, Function<? super T, ? extends R> mapper, BinaryOperator<R> combiner) {
+            this.node = node;
+            this.depth = depth;
+            this.mapper = mapper;
+            this.combiner = combiner;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Object compute() {
+            Object result = NONE;
+            List<ReduceTask<T, R>> forked = null;
+
+            for (Object child : node.getChildren()) {
+                result = combine(combiner, result, mapper.apply((T) child));
+                if(!hasChildren(child)) continue;
+
+                if(depth < MAX_FORK_DEPTH && getSurplusQueuedTaskCount() <= SURPLUS_LIMIT) {
+                    if(forked == null) forked = new ArrayList<>();
+                    ReduceTask<T, R> task = new ReduceTask<>((ChildContainer<?>) child, depth + 1, mapper, combiner);
+                    task.fork();
+                    forked.add(task);
+                } else {
+                    for (Iterator<T> iterator = new PreOrderIterator<>((ChildContainer<T>) child); iterator.hasNext(); )
+                        result = combine(combiner, result, mapper.apply(iterator.next()));
+                }
+            }
+
+            //join in reverse so the most recently forked tasks (the ones most likely to still be in this worker's queue) run here
+            if(forked != null)
+                for (int i = forked.size() - 1; i >= 0; i--)
+                    result = combine(combiner, result, forked.get(i).join());
+            return result;
+        }
+    }
+
+    @SuppressWarnings("serial") //tasks are never serialized (and their fields can't be)
+    private static final class KeyedReduceTask<K, V, R> extends RecursiveTask<Object> {
+        private final KeyedChildStructure<?, ?> node;
+        private final int depth;
+        private final BiFunction<? super K, ? super V, ? extends R> mapper;
+        private final BinaryOperator<R> combiner;
+
+        KeyedReduceTask(KeyedChildStructure<?, ?> node, int depth, BiFunction<? super K, ? super V, ? extends R> mapper, BinaryOperator<R> combiner) {
+            this.node = node;
+            this.depth = depth;
+            this.mapper = mapper;
+            this.combiner = combiner;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Object compute() {
+            Object result = NONE;
+            List<KeyedReduceTask<K, V, R>> forked = null;
+
+            for (Map.Entry<?, ?> entry : node.getChildrenAndKeys().entrySet()) {
+                Object child = entry.getValue();
+                result = combine(combiner, result, mapper.apply((K) entry.getKey(), (V) child));
+                if(!(child instanceof KeyedChildStructure<?, ?> keyed) || !hasChildren(child)) continue;
+
+                if(depth < MAX_FORK_DEPTH && getSurplusQueuedTaskCount() <= SURPLUS_LIMIT) {
+                    if(forked == null) forked = new ArrayList<>();
+                    KeyedReduceTask<K, V, R> task = new KeyedReduceTask<>(keyed, depth + 1, mapper, combiner);
+                    task.fork();
+                    forked.add(task);
+                } else {
+                    result = combine(combiner, result, fold(keyed));
+                }
+            }
+
+            if(forked != null)
+                for (int i = forked.size() - 1; i >= 0; i--)
+                    result = combine(combiner, result, forked.get(i).join());
+            return result;
+        }
+
+        /**
+         * Folds the descendants of a node on the current thread using an explicit stack of entry iterators.
+         */
+        @SuppressWarnings("unchecked")
+        private Object fold(KeyedChildStructure<?, ?> root){
+            Object result = NONE;
+            ArrayDeque<Iterator<? extends Map.Entry<?, ?>>> stack = new ArrayDeque<>();
+            stack.push(root.getChildrenAndKeys().entrySet().iterator());
+            while (!stack.isEmpty()) {
+                Iterator<? extends Map.Entry<?, ?>> top = stack.peek();
+                if(!top.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                Map.Entry<?, ?> entry = top.next();
+                result = combine(combiner, result, mapper.apply((K) entry.getKey(), (V) entry.getValue()));
+                if(entry.getValue() instanceof KeyedChildStructure<?, ?> keyed)
+                    stack.push(keyed.getChildrenAndKeys().entrySet().iterator());
+            }
+            return result;
+        }
+    }
+}
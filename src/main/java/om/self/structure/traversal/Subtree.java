@@ -0,0 +1,61 @@
+package om.self.structure.traversal;
+
+import om.self.structure.child.ChildContainer;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+
+/**
+ * A read only view of all descendants of a node (not including the node). The view is backed by the tree, so it always reflects the current structure, and nothing is copied.
+ * <br>
+ * Iterating uses a {@link PreOrderIterator} and {@link #spliterator()} uses a {@link SubtreeSpliterator}, so {@code subtree.parallelStream()} spreads the subtree across cores.
+ * @param <T> the type of the nodes
+ * @implNote {@link #size()} walks the whole subtree
+ */
+public class Subtree<T> extends AbstractCollection<T> {
+    private final ChildContainer<? extends T> root;
+    private final Predicate<? super T> prune;
+
+    /**
+     * Creates a view of all descendants of root.
+     * @param root the root of the subtree
+     */
+    public Subtree(ChildContainer<? extends T> root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates a view of the descendants of root that skips pruned nodes and their subtrees.
+     * @param root the root of the subtree
+     * @param prune returns true for nodes that should be skipped along with their subtree (null to not prune)
+     */
+    public Subtree(ChildContainer<? extends T> root, Predicate<? super T> prune) {
+        this.root = root;
+        this.prune = prune;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PreOrderIterator<>(root, prune);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new SubtreeSpliterator<>(root, prune);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Iterator<T> iterator = iterator(); iterator.hasNext(); iterator.next())
+            size++;
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+}
@@ -0,0 +1,141 @@
+package om.self.structure.traversal;
+
+import om.self.structure.child.ChildContainer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Spliterator} over the descendants of a node that can be split so a subtree can be processed by a parallel stream.
+ * <br>
+ * Each spliterator has a depth first traversal in progress (an explicit stack like {@link PreOrderIterator}) and a range of subtrees that weren't started yet. Splitting hands half of the waiting subtrees to the new spliterator. When there are no waiting subtrees, the remaining siblings at the lowest level of the stack become the waiting subtrees, and a single waiting subtree is opened up by returning its root first and splitting its children.
+ * <br>
+ * The spliterator doesn't report {@link Spliterator#ORDERED} because split off subtrees aren't always a prefix of the traversal, and the size is only estimated.
+ * @param <T> the type of the nodes
+ * @implNote the tree should not be changed while it is being traversed
+ */
+public class SubtreeSpliterator<T> implements Spliterator<T> {
+    private static final Object[] NONE = new Object[0];
+
+    private final ArrayDeque<Iterator<?>> stack = new ArrayDeque<>();
+    private final Predicate<? super T> prune;
+    private Object[] roots = NONE;
+    private int lo;
+    private int hi;
+    private Object head;
+    private boolean hasHead;
+    private long estimate;
+
+    /**
+     * Creates a spliterator over all descendants of root.
+     * @param root the root of the subtree
+     */
+    public SubtreeSpliterator(ChildContainer<? extends T> root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates a spliterator over the descendants of root that skips pruned nodes and their subtrees.
+     * @param root the root of the subtree
+     * @param prune returns true for nodes that should be skipped along with their subtree (null to not prune)
+     */
+    public SubtreeSpliterator(ChildContainer<? extends T> root, Predicate<? super T> prune) {
+        this.prune = prune;
+        this.estimate = Long.MAX_VALUE;
+        stack.push(root.getChildren().iterator());
+    }
+
+    private SubtreeSpliterator(Object[] roots, int lo, int hi, Predicate<? super T> prune, long estimate) {
+        this.prune = prune;
+        this.roots = roots;
+        this.lo = lo;
+        this.hi = hi;
+        this.estimate = estimate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if(hasHead) {
+            hasHead = false;
+            T node = (T) head;
+            head = null;
+            action.accept(node);
+            return true;
+        }
+
+        while (!stack.isEmpty()) {
+            Iterator<?> top = stack.peek();
+            if(!top.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            T node = (T) top.next();
+            if(Traversal.pruned(prune, node)) continue;
+            stack.push(Traversal.childrenOf(node));
+            action.accept(node);
+            return true;
+        }
+
+        if(lo < hi) {
+            T node = (T) roots[lo];
+            roots[lo++] = null;
+            stack.push(Traversal.childrenOf(node));
+            action.accept(node);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if(lo == hi && !stack.isEmpty()) {
+            roots = drain(stack.pollLast());
+            lo = 0;
+            hi = roots.length;
+        }
+        if(hi - lo == 1 && stack.isEmpty() && !hasHead) {
+            head = roots[lo];
+            hasHead = true;
+            roots = drain(Traversal.childrenOf(head));
+            lo = 0;
+            hi = roots.length;
+        }
+        if(hi - lo < 2) return null;
+
+        int mid = (lo + hi) >>> 1;
+        estimate >>>= 1;
+        SubtreeSpliterator<T> split = new SubtreeSpliterator<>(roots, lo, mid, prune, estimate);
+        lo = mid;
+        return split;
+    }
+
+    /**
+     * Collects the remaining nodes of a children iterator that aren't pruned.
+     * @param children the children iterator
+     * @return the nodes
+     */
+    @SuppressWarnings("unchecked")
+    private Object[] drain(Iterator<?> children){
+        ArrayList<Object> nodes = new ArrayList<>();
+        while (children.hasNext()) {
+            Object node = children.next();
+            if(!Traversal.pruned(prune, (T) node)) nodes.add(node);
+        }
+        return nodes.isEmpty() ? NONE : nodes.toArray();
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return 0;
+    }
+}
@@ -0,0 +1,36 @@
+package om.self.structure.traversal;
+
+import om.self.structure.child.ChildContainer;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * Helpers shared by the subtree iterators and the subtree spliterator.
+ */
+final class Traversal {
+    private Traversal() {
+    }
+
+    /**
+     * Gets an iterator over the children of a node.
+     * @param node the node
+     * @return the children of the node or an empty iterator if the node doesn't contain children
+     */
+    static Iterator<?> childrenOf(Object node){
+        if(node instanceof ChildContainer<?> container) return container.getChildren().iterator();
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * Checks if a node (and its subtree) should be skipped.
+     * @param prune the prune predicate (can be null)
+     * @param node the node
+     * @return if the node is pruned
+     * @param <T> the type of the nodes
+     */
+    static <T> boolean pruned(Predicate<? super T> prune, T node){
+        return prune != null && prune.test(node);
+    }
+}
@@ -29,8 +29,8 @@ public class AdvancedBidirectional {
         System.out.println(((File) test.getChild("hello.txt")).getContent()); //this will give us the original file contents
 
         System.out.println("\nRemoving user");
-        //we need to supply the key we used ("usr") because when attaching this object as a child to the root we used a custom key so without it, it won't detach itself from root
-        user.detachParent("user");
+        //the folder remembers the key it was attached to its parent with ("user"), so we don't need to supply it even though we used a custom key when attaching it
+        user.detachParent();
 
         //this will print the folder tree
         System.out.println("Folder Tree New:");
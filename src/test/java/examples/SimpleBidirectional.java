@@ -11,52 +11,50 @@ public class SimpleBidirectional {
         Bidirectional third = new Bidirectional("third");
         Bidirectional fourth = new Bidirectional("fourth");
 
-        //these all run without having to detach anything, but it will create an infinite parent and child loop
+        //these all run without having to detach anything
         first.attachChild(second);
         second.attachChild(third);
         third.attachChild(fourth);
-        fourth.attachChild(first);
         System.out.println();
 
+        //this would create an infinite parent and child loop because first is an ancestor of fourth, so it is ignored
+        fourth.attachChild(first);
+
         //this will break the parent child link between third and fourth and replace it with second
         fourth.attachParent(second);
         System.out.println();
 
-        //This will put all of them in one long link with fourth as the head
-        first.attachParent(second);
-        second.attachParent(third);
-        third.attachParent(fourth);
+        //This will put all of them in one long link with fourth as the head (fourth is detached first so the links don't create a loop)
         fourth.detachParent();
+        third.attachParent(fourth);
+        second.attachParent(third);
+        first.attachParent(second);
 
         //The final output will be:
+        //second attaching parent: first
         //first attaching child: second
         //third attaching parent: second
         //second attaching child: third
         //fourth attaching parent: third
         //third attaching child: fourth
-        //first attaching parent: fourth
-        //fourth attaching child: first
         //
         //third detaching child: fourth
         //fourth detaching parent: third
         //second attaching child: fourth
         //fourth attaching parent: second
         //
-        //fourth detaching child: first
-        //first detaching parent: fourth
-        //second attaching child: first
-        //first attaching parent: second
-        //first detaching child: second
-        //second detaching parent: first
-        //third attaching child: second
-        //second attaching parent: third
+        //second detaching child: fourth
+        //fourth detaching parent: second
         //second detaching child: third
         //third detaching parent: second
         //fourth attaching child: third
         //third attaching parent: fourth
-        //second detaching child: fourth
-        //fourth detaching parent: second
-
+        //first detaching child: second
+        //second detaching parent: first
+        //third attaching child: second
+        //second attaching parent: third
+        //second attaching child: first
+        //first attaching parent: second
     }
 }
 
@@ -0,0 +1,141 @@
+package om.self.structure.bidirectional;
+
+import om.self.structure.Utils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AncestryTest {
+    @Test
+    public void rejectsLinksThatWouldCreateACycle() {
+        BidirectionalStructure<Object, Object> a = new BidirectionalStructure<>();
+        BidirectionalStructure<Object, Object> b = new BidirectionalStructure<>();
+        BidirectionalStructure<Object, Object> c = new BidirectionalStructure<>();
+        a.attachChild(b);
+        b.attachChild(c);
+
+        assertEquals(LinkResult.WOULD_CYCLE, a.tryAttachParent(a));
+        assertEquals(LinkResult.WOULD_CYCLE, c.tryAttachChild(a));
+        assertEquals(LinkResult.WOULD_CYCLE, a.tryAttachParent(c));
+        assertEquals(LinkResult.WOULD_CYCLE, c.tryAttachChild(b));
+        assertNull(a.getParent());
+        assertSame(b, c.getParent());
+        assertTrue(c.getChildren().isEmpty());
+    }
+
+    @Test
+    public void vetoedAttachDoesNotSkipTheNextCycleCheck() {
+        BidirectionalStructure<Object, Object> old = new BidirectionalStructure<>();
+        BidirectionalStructureWithChecks<Object, Object> c = new BidirectionalStructureWithChecks<>();
+        BidirectionalStructure<Object, Object> x = new BidirectionalStructure<>();
+        BidirectionalStructure<Object, Object> p = new BidirectionalStructure<>();
+        boolean[] locked = {true};
+        c.addParentCheck((parent, action) -> !locked[0], Utils.Action.DETACH);
+        old.attachChild(c);
+        c.attachChild(new BidirectionalStructure<>());
+
+        assertEquals(LinkResult.VETOED_BY_CHECK, c.tryAttachParent(p));
+        locked[0] = false;
+        c.detachParent();
+        c.attachChild(x);
+        x.attachChild(p);
+
+        assertEquals(LinkResult.WOULD_CYCLE, p.tryAttachChild(c));
+        assertEquals(LinkResult.WOULD_CYCLE, c.tryAttachParent(p));
+        assertNull(c.getParent());
+        assertFalse(p.getChildren().contains(c));
+    }
+
+    @Test
+    public void vetoedKeyedAttachDoesNotSkipTheNextCycleCheck() {
+        KeyedBidirectionalStructure<String, Object, Object> old = new KeyedBidirectionalStructure<>();
+        KeyedBidirectionalStructureWithChecks<String, Object, Object> c = new KeyedBidirectionalStructureWithChecks<>();
+        KeyedBidirectionalStructure<String, Object, Object> x = new KeyedBidirectionalStructure<>();
+        KeyedBidirectionalStructure<String, Object, Object> p = new KeyedBidirectionalStructure<>();
+        boolean[] locked = {true};
+        c.addParentCheck((key, parent, action) -> !locked[0], Utils.Action.DETACH);
+        old.attachChild("c", c);
+        c.attachChild("leaf", new KeyedBidirectionalStructure<>());
+
+        assertEquals(LinkResult.VETOED_BY_CHECK, c.tryAttachParent("c", p));
+        locked[0] = false;
+        c.detachParent();
+        c.attachChild("x", x);
+        x.attachChild("p", p);
+
+        assertEquals(LinkResult.WOULD_CYCLE, p.tryAttachChild("c", c));
+        assertEquals(LinkResult.WOULD_CYCLE, c.tryAttachParent("c", p));
+        assertNull(c.getParent());
+        assertNull(p.getChild("c"));
+    }
+
+    @Test
+    public void indexStaysCorrectWhileNodesMove() {
+        Random random = new Random(11);
+        List<BidirectionalStructureWithChecks<Object, Object>> nodes = new ArrayList<>();
+        boolean[] locked = {false};
+        for (int i = 0; i < 40; i++) {
+            BidirectionalStructureWithChecks<Object, Object> node = new BidirectionalStructureWithChecks<>();
+            if(i % 5 == 0) node.addParentCheck((parent, action) -> !locked[0], Utils.Action.DETACH);
+            nodes.add(node);
+        }
+
+        for (int step = 0; step < 5000; step++) {
+            BidirectionalStructureWithChecks<Object, Object> a = nodes.get(random.nextInt(nodes.size()));
+            BidirectionalStructureWithChecks<Object, Object> b = nodes.get(random.nextInt(nodes.size()));
+            locked[0] = random.nextInt(4) == 0;
+            switch (random.nextInt(4)) {
+                case 0 -> assertEquals(a == b || isAbove(b, a), a.tryAttachChild(b) == LinkResult.WOULD_CYCLE);
+                case 1 -> {
+                    boolean cycle = a == b || isAbove(a, b);
+                    LinkResult result = a.tryAttachParent(b);
+                    if(result != LinkResult.ALREADY_PRESENT) assertEquals(cycle, result == LinkResult.WOULD_CYCLE);
+                }
+                case 2 -> a.detachChild(b);
+                default -> a.detachParent();
+            }
+
+            if(step % 25 == 0)
+                for (BidirectionalStructureWithChecks<Object, Object> node : nodes) {
+                    assertEquals(depth(node), node.getDepth());
+                    BidirectionalStructureWithChecks<Object, Object> other = nodes.get(random.nextInt(nodes.size()));
+                    assertEquals(isAbove(other, node), Ancestry.isAncestor(other, node));
+                    assertSame(lowestCommonAncestor(node, other), node.lowestCommonAncestor(other));
+                }
+        }
+    }
+
+    /**
+     * Gets the parent of a node if the parent also stores it.
+     */
+    private static Object linkedParent(Object node) {
+        Object parent = ((BidirectionalStructure<?, ?>) node).getParent();
+        return parent instanceof BidirectionalStructure<?, ?> structure && structure.getChildren().contains(node) ? parent : null;
+    }
+
+    private static boolean isAbove(Object ancestor, Object node) {
+        int depth = 0;
+        for (Object current = linkedParent(node); current != null; current = linkedParent(current)) {
+            if(current == ancestor) return true;
+            if(++depth > 1000) fail("the parent chain has a cycle");
+        }
+        return false;
+    }
+
+    private static int depth(Object node) {
+        int depth = 0;
+        for (Object current = linkedParent(node); current != null; current = linkedParent(current))
+            if(++depth > 1000) fail("the parent chain has a cycle");
+        return depth;
+    }
+
+    private static Object lowestCommonAncestor(Object a, Object b) {
+        for (Object current = a; current != null; current = linkedParent(current))
+            if(current == b || isAbove(current, b)) return current;
+        return null;
+    }
+}
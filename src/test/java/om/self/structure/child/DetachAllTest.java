@@ -0,0 +1,83 @@
+package om.self.structure.child;
+
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.storage.ChildStorage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DetachAllTest {
+    private static final List<ChildStorage> STORAGES = List.of(ChildStorage.concurrent(), ChildStorage.copyOnWrite(), ChildStorage.hashMap());
+
+    @Test
+    public void childAttachedAfterTheBatchWasTakenStaysAttached() {
+        for (ChildStorage storage : STORAGES) {
+            List<Object> detachedByCallback = new ArrayList<>();
+            ChildStructureImpl<String> structure = new ChildStructureImpl<>(storage) {
+                @Override
+                public void onChildrenDetach(Collection<String> children) {
+                    detachedByCallback.addAll(children);
+                }
+            };
+            structure.attachChildren(List.of("a", "b"));
+            List<String> batch = new ArrayList<>(structure.getChildren());
+            structure.getChildren().remove("b");
+            structure.attachChild("c"); //same size as the batch again
+
+            structure.detachAll(batch);
+
+            assertEquals(List.of("c"), new ArrayList<>(structure.getChildren()));
+            assertFalse(detachedByCallback.contains("c"));
+        }
+    }
+
+    @Test
+    public void childReplacedAfterTheBatchWasTakenStaysAttached() {
+        for (ChildStorage storage : STORAGES) {
+            KeyedChildStructureImpl<String, String> structure = new KeyedChildStructureImpl<>(storage);
+            structure.attachChild("a", "x");
+            structure.attachChild("b", "y");
+            Map<String, String> batch = new LinkedHashMap<>(structure.getChildrenAndKeys());
+            structure.attachChild("a", "z");
+
+            structure.detachAll(batch);
+
+            assertEquals(Map.of("a", "z"), structure.getChildrenAndKeys());
+        }
+    }
+
+    @Test
+    public void keyedBidirectionalDetachAllKeepsReplacedChild() {
+        for (ChildStorage storage : STORAGES) {
+            Node parent = new Node(storage);
+            Node x = new Node(storage);
+            Node z = new Node(storage);
+            parent.attachChild("a", x);
+            Map<String, Node> batch = new LinkedHashMap<>(parent.getChildrenAndKeys());
+            parent.attachChild("a", z);
+
+            parent.detachAll(batch);
+
+            assertSame(z, parent.getChild("a"));
+            assertSame(parent, z.getParent());
+            assertNull(x.getParent());
+        }
+    }
+
+    private static final class Node extends KeyedBidirectionalStructure<String, Node, Node> {
+        Node(ChildStorage storage) {
+            super(storage);
+        }
+
+        @Override
+        protected void detachAll(Map<String, Node> detached) {
+            super.detachAll(detached);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package om.self.structure.concurrent;
+
+import om.self.structure.bidirectional.LinkResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLinkingTest {
+    private static final int THREADS = 8;
+    private static final int NODES = 64;
+    private static final int MOVES = 20000;
+
+    private static final class Node extends ConcurrentBidirectionalStructure<Node, Node> {}
+
+    private static final class KeyedNode extends ConcurrentKeyedBidirectionalStructure<String, KeyedNode, KeyedNode> {}
+
+    @Test
+    public void concurrentMovesKeepBothSidesOfEveryLink() throws Exception {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++)
+            nodes.add(new Node());
+
+        run(seed -> {
+            Random random = new Random(seed);
+            for (int i = 0; i < MOVES; i++) {
+                Node a = nodes.get(random.nextInt(NODES));
+                Node b = nodes.get(random.nextInt(NODES));
+                switch (random.nextInt(4)) {
+                    case 0 -> a.attachChild(b);
+                    case 1 -> a.attachParent(b);
+                    case 2 -> a.detachChild(b);
+                    default -> {
+                        if(random.nextInt(4) == 0) a.detachParent();
+                        else assertNotEquals(LinkResult.ATTACHED, a.tryAttachChild(a));
+                    }
+                }
+            }
+        });
+
+        Map<Node, Node> storedBy = new IdentityHashMap<>();
+        for (Node node : nodes)
+            for (Node child : node.getChildren()) {
+                assertNull("a child is stored by two parents", storedBy.put(child, node));
+                assertSame(node, child.getParent());
+            }
+        for (Node node : nodes) {
+            assertSame(node.getParent(), storedBy.get(node));
+            assertParentChainEnds(node, Node::getParent);
+        }
+    }
+
+    @Test
+    public void concurrentKeyedMovesKeepBothSidesOfEveryLink() throws Exception {
+        List<KeyedNode> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++)
+            nodes.add(new KeyedNode());
+
+        run(seed -> {
+            Random random = new Random(seed);
+            for (int i = 0; i < MOVES; i++) {
+                KeyedNode a = nodes.get(random.nextInt(NODES));
+                KeyedNode b = nodes.get(random.nextInt(NODES));
+                String key = "k" + random.nextInt(4);
+                switch (random.nextInt(5)) {
+                    case 0 -> a.attachChild(key, b);
+                    case 1 -> a.attachParent(key, b);
+                    case 2 -> a.detachChild(key);
+                    case 3 -> a.renameChild(key, "k" + random.nextInt(4), random.nextBoolean());
+                    default -> a.detachParent();
+                }
+            }
+        });
+
+        Map<KeyedNode, KeyedNode> storedBy = new IdentityHashMap<>();
+        for (KeyedNode node : nodes)
+            for (Map.Entry<String, KeyedNode> entry : node.getChildrenAndKeys().entrySet()) {
+                KeyedNode child = entry.getValue();
+                assertNull("a child is stored by two parents", storedBy.put(child, node));
+                assertSame(node, child.getParent());
+                assertEquals(entry.getKey(), child.getChildKey());
+            }
+        for (KeyedNode node : nodes) {
+            assertSame(node.getParent(), storedBy.get(node));
+            assertParentChainEnds(node, KeyedNode::getParent);
+        }
+    }
+
+    private interface Worker {
+        void run(long seed) throws Exception;
+    }
+
+    /**
+     * Runs a worker on every thread at once with a different seed and rethrows the first failure.
+     */
+    private static void run(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                long seed = thread;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    worker.run(seed);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> void assertParentChainEnds(T node, UnaryOperator<T> parentOf) {
+        int depth = 0;
+        for (T current = parentOf.apply(node); current != null; current = parentOf.apply(current))
+            if(++depth > NODES) fail("the parent chain has a cycle");
+    }
+}
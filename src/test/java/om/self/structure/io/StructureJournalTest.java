@@ -0,0 +1,252 @@
+package om.self.structure.io;
+
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class StructureJournalTest {
+    /**
+     * The record types of the journal format
+     */
+    private static final int MOVE = 3;
+    private static final int DETACH = 4;
+
+    private static final class Node extends KeyedBidirectionalStructure<String, Node, Node> {
+        private final String value;
+
+        Node(String value) {
+            this.value = value;
+        }
+    }
+
+    private static final ValueCodec<Node> VALUES = new ValueCodec<>() {
+        @Override
+        public void write(StructureOutput out, Node node) throws IOException {
+            out.writeString(node.value);
+        }
+
+        @Override
+        public Node read(StructureInput in) throws IOException {
+            return new Node(in.readString());
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void changesSurviveRecoverAndJournalingContinues() throws IOException {
+        Path path = journalPath();
+        Node root = tree();
+        try(StructureJournal<String, Node> journal = StructureJournal.open(path, root, KeyCodec.strings(), VALUES)) {
+            root.getChild("a").attachChild("w", new Node("w"));
+            root.getChild("b").attachChild("moved", root.getChild("a").getChild("x"));
+            root.renameChild("b", "c", false);
+            root.getChild("a").detachChild("y");
+            journal.commit();
+        }
+        assertEquals(describe(root), describe(StructureJournal.replay(path, KeyCodec.strings(), VALUES)));
+
+        String expected;
+        try(StructureJournal<String, Node> journal = StructureJournal.recover(path, KeyCodec.strings(), VALUES)) {
+            Node recovered = journal.getRoot();
+            assertEquals(describe(root), describe(recovered));
+            recovered.getChild("c").attachChild("d", new Node("d"));
+            expected = describe(recovered);
+        }
+        assertEquals(expected, describe(StructureJournal.replay(path, KeyCodec.strings(), VALUES)));
+    }
+
+    @Test
+    public void tornFinalBlockIsDropped() throws IOException {
+        Path path = journalPath();
+        Node root = tree();
+        String committed;
+        long committedLength;
+        try(StructureJournal<String, Node> journal = StructureJournal.open(path, root, KeyCodec.strings(), VALUES)) {
+            root.attachChild("d", new Node("d"));
+            journal.commit();
+            committed = describe(root);
+            committedLength = Files.size(path);
+            root.attachChild("e", new Node("e"));
+        }
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 3);
+        }
+
+        try(StructureJournal<String, Node> journal = StructureJournal.recover(path, KeyCodec.strings(), VALUES)) {
+            assertEquals(committed, describe(journal.getRoot()));
+            assertEquals(committedLength, Files.size(path));
+        }
+    }
+
+    @Test
+    public void blockWithBadChecksumIsDropped() throws IOException {
+        Path path = journalPath();
+        Node root = tree();
+        String committed;
+        try(StructureJournal<String, Node> journal = StructureJournal.open(path, root, KeyCodec.strings(), VALUES)) {
+            root.attachChild("d", new Node("d"));
+            journal.commit();
+            committed = describe(root);
+            root.attachChild("e", new Node("e"));
+        }
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (last.get(0) ^ 1)}), channel.size() - 1);
+        }
+
+        assertEquals(committed, describe(StructureJournal.replay(path, KeyCodec.strings(), VALUES)));
+    }
+
+    @Test
+    public void detachThenAttachIsWrittenAsMove() throws IOException {
+        Path path = journalPath();
+        Node root = tree();
+        try(StructureJournal<String, Node> journal = StructureJournal.open(path, root, KeyCodec.strings(), VALUES)) {
+            long start = Files.size(path);
+            Node a = root.getChild("a");
+            root.detachChild("a");
+            root.getChild("b").attachChild("a", a);
+            journal.commit();
+            assertEquals(MOVE, firstRecord(path, start));
+        }
+        assertEquals(describe(root), describe(StructureJournal.replay(path, KeyCodec.strings(), VALUES)));
+    }
+
+    @Test
+    public void detachIsWrittenWhenTheChildChangesOrIsNotAttachedAgain() throws IOException {
+        Path path = journalPath();
+        Node root = tree();
+        try(StructureJournal<String, Node> journal = StructureJournal.open(path, root, KeyCodec.strings(), VALUES)) {
+            long start = Files.size(path);
+            Node a = root.getChild("a");
+            root.detachChild("a");
+            a.attachChild("new", new Node("new"));
+            root.getChild("b").attachChild("a", a);
+            journal.commit();
+            assertEquals(DETACH, firstRecord(path, start));
+
+            start = Files.size(path);
+            root.detachChild("b");
+            journal.commit();
+            assertEquals(DETACH, firstRecord(path, start));
+        }
+        assertEquals(describe(root), describe(StructureJournal.replay(path, KeyCodec.strings(), VALUES)));
+    }
+
+    @Test
+    public void concurrentCommitsAreAllDurable() throws Exception {
+        Path path = journalPath();
+        Node root = tree();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try(StructureJournal<String, Node> journal = StructureJournal.open(path, root, KeyCodec.strings(), VALUES)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                String name = "t" + thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        synchronized (root) { //the tree is changed from one thread at a time
+                            root.getChild("a").attachChild(name + "-" + i, new Node(name));
+                        }
+                        journal.commit();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+
+            assertEquals(802, root.getChild("a").getChildrenAndKeys().size());
+            assertEquals(describe(root), describe(StructureJournal.replay(path, KeyCodec.strings(), VALUES)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void largeTreeIsSplitIntoBlocks() throws IOException {
+        Path path = journalPath();
+        Node root = new Node("root");
+        String value = "v".repeat(100);
+        for (int i = 0; i < 20000; i++)
+            root.attachChild("k" + i, new Node(value + i));
+        StructureJournal.open(path, root, KeyCodec.strings(), VALUES).close();
+
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+        assertTrue("the first block should continue in the next block", header.getInt(0) < 0);
+        assertEquals(describe(root), describe(StructureJournal.replay(path, KeyCodec.strings(), VALUES)));
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) / 2);
+        }
+        assertThrows(IOException.class, () -> StructureJournal.replay(path, KeyCodec.strings(), VALUES));
+    }
+
+    private Path journalPath() {
+        return folder.getRoot().toPath().resolve("tree.journal");
+    }
+
+    /**
+     * Creates root {a {x, y}, b {z}}.
+     */
+    private static Node tree() {
+        Node root = new Node("root");
+        Node a = new Node("a");
+        Node b = new Node("b");
+        root.attachChild("a", a);
+        root.attachChild("b", b);
+        a.attachChild("x", new Node("x"));
+        a.attachChild("y", new Node("y"));
+        b.attachChild("z", new Node("z"));
+        return root;
+    }
+
+    /**
+     * Describes a subtree with its values and keys (children sorted by key).
+     */
+    private static String describe(Node node) {
+        StringBuilder builder = new StringBuilder(node.value);
+        Map<String, Node> children = new TreeMap<>(node.getChildrenAndKeys());
+        if(children.isEmpty()) return builder.toString();
+
+        builder.append('{');
+        for (Map.Entry<String, Node> entry : children.entrySet()) {
+            assertSame(node, entry.getValue().getParent());
+            builder.append(entry.getKey()).append('=').append(describe(entry.getValue())).append(',');
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Gets the type of the first record in the block that starts at a position.
+     */
+    private static int firstRecord(Path path, long position) throws IOException {
+        ByteBuffer type = ByteBuffer.allocate(1);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.read(type, position + 8);
+        }
+        return type.get(0);
+    }
+}
@@ -0,0 +1,177 @@
+package om.self.structure.snapshot;
+
+import om.self.structure.bidirectional.BidirectionalStructure;
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.storage.ChildStorage;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+    private static final class Node extends KeyedBidirectionalStructure<String, Node, Node> {
+        private final String value;
+
+        Node(String value) {
+            super(ChildStorage.versioned());
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    @Test
+    public void snapshotKeepsTheTreeAsItWasWhenTaken() {
+        Node root = tree();
+        String before = describe(root);
+        try(Snapshot<KeyedBidirectionalStructure<String, Node, Node>> snapshot = root.snapshot()) {
+            Node a = root.getChild("a");
+            a.attachChild("w", new Node("w"));
+            root.getChild("b").attachChild("moved", a.getChild("x"));
+            root.renameChild("b", "c", false);
+            a.detachChild("y");
+
+            assertEquals(before, describe(snapshot, root));
+            assertEquals(6, snapshot.size());
+            assertNotEquals(before, describe(root));
+            assertNull(snapshot.getChild(root, "c"));
+            assertNotNull(snapshot.getChild(root, "b"));
+        }
+    }
+
+    @Test
+    public void snapshotsTakenAtDifferentTimesSeeTheirOwnVersion() {
+        Node root = tree();
+        String first = describe(root);
+        try(Snapshot<KeyedBidirectionalStructure<String, Node, Node>> older = root.snapshot()) {
+            root.getChild("a").attachChild("w", new Node("w"));
+            String second = describe(root);
+            try(Snapshot<KeyedBidirectionalStructure<String, Node, Node>> newer = root.snapshot()) {
+                root.detachChild("a");
+
+                assertEquals(first, describe(older, root));
+                assertEquals(second, describe(newer, root));
+                assertEquals("root{b=b{z=z,},}", describe(root));
+            }
+            assertEquals(first, describe(older, root));
+        }
+    }
+
+    @Test
+    public void snapshotCanBeReadWhileTheTreeChanges() throws Exception {
+        Node root = tree();
+        String before = describe(root);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try(Snapshot<KeyedBidirectionalStructure<String, Node, Node>> snapshot = root.snapshot()) {
+            Future<?> reader = executor.submit(() -> {
+                for (int i = 0; i < 2000; i++)
+                    assertEquals(before, describe(snapshot, root));
+            });
+            for (int i = 0; i < 2000; i++) {
+                root.getChild("a").attachChild("k" + (i % 50), new Node("n" + i));
+                root.getChild("b").detachChild("k" + ((i + 25) % 50));
+            }
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void closedSnapshotCanNotBeRead() {
+        Node root = tree();
+        Snapshot<KeyedBidirectionalStructure<String, Node, Node>> snapshot = root.snapshot();
+        snapshot.close();
+        snapshot.close();
+
+        assertTrue(snapshot.isClosed());
+        assertThrows(IllegalStateException.class, () -> snapshot.getChildrenAndKeys(root));
+        assertThrows(IllegalStateException.class, snapshot::size);
+    }
+
+    @Test
+    public void childrenThatArentVersionedCanNotBeRead() {
+        BidirectionalStructure<Object, Object> root = new BidirectionalStructure<>(ChildStorage.hashMap());
+        root.attachChild(new BidirectionalStructure<>());
+        try(Snapshot<BidirectionalStructure<Object, Object>> snapshot = root.snapshot()) {
+            assertThrows(IllegalStateException.class, () -> snapshot.getChildren(root));
+        }
+
+        BidirectionalStructure<Object, Object> versioned = new BidirectionalStructure<>(ChildStorage.versioned());
+        BidirectionalStructure<Object, Object> child = new BidirectionalStructure<>(ChildStorage.versioned());
+        versioned.attachChild(child);
+        try(Snapshot<BidirectionalStructure<Object, Object>> snapshot = versioned.snapshot()) {
+            versioned.detachChild(child);
+            assertEquals(Set.of(child), Set.copyOf(snapshot.getChildren(versioned)));
+            assertEquals(2, snapshot.size());
+        }
+    }
+
+    @Test
+    public void unloadedLazyChildrenCanNotBeRead() {
+        Node root = new Node("root");
+        root.attachChildrenLazily(() -> Map.of("a", new Node("a")));
+        try(Snapshot<KeyedBidirectionalStructure<String, Node, Node>> snapshot = root.snapshot()) {
+            assertThrows(IllegalStateException.class, () -> snapshot.getChildrenAndKeys(root));
+            assertFalse("reading a snapshot must not load the children", root.areChildrenLoaded());
+        }
+
+        root.getChildrenAndKeys();
+        try(Snapshot<KeyedBidirectionalStructure<String, Node, Node>> snapshot = root.snapshot()) {
+            assertEquals(2, snapshot.size());
+        }
+    }
+
+    /**
+     * Creates root {a {x, y}, b {z}}.
+     */
+    private static Node tree() {
+        Node root = new Node("root");
+        Node a = new Node("a");
+        Node b = new Node("b");
+        root.attachChild("a", a);
+        root.attachChild("b", b);
+        a.attachChild("x", new Node("x"));
+        a.attachChild("y", new Node("y"));
+        b.attachChild("z", new Node("z"));
+        return root;
+    }
+
+    /**
+     * Describes the live subtree with its values and keys (children sorted by key).
+     */
+    private static String describe(Node node) {
+        return describe(node, node.getChildrenAndKeys());
+    }
+
+    /**
+     * Describes a subtree as a snapshot sees it.
+     */
+    private static String describe(Snapshot<?> snapshot, Node node) {
+        Map<String, String> children = new TreeMap<>();
+        snapshot.getChildrenAndKeys(node).forEach((key, child) -> children.put(key, describe(snapshot, child)));
+        return describe(node.value, children);
+    }
+
+    private static String describe(Node node, Map<String, Node> live) {
+        Map<String, String> children = new TreeMap<>();
+        live.forEach((key, child) -> children.put(key, describe(child)));
+        return describe(node.value, children);
+    }
+
+    private static String describe(String value, Map<String, String> children) {
+        if(children.isEmpty()) return value;
+        StringBuilder builder = new StringBuilder(value).append('{');
+        children.forEach((key, child) -> builder.append(key).append('=').append(child).append(','));
+        return builder.append('}').toString();
+    }
+}
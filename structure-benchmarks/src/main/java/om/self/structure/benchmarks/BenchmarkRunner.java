@@ -0,0 +1,24 @@
+package om.self.structure.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. It accepts the normal JMH command line but always enables the {@link GCProfiler} so every run reports allocation rates (gc.alloc.rate.norm) next to the timings.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli);
+        if (cli.getIncludes().isEmpty())
+            options.include(BenchmarkRunner.class.getPackageName() + ".*");
+        options.addProfiler(GCProfiler.class);
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package om.self.structure.benchmarks;
+
+import om.self.structure.bidirectional.BidirectionalStructure;
+import om.self.structure.bidirectional.BidirectionalStructureWithChecks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link BidirectionalStructure} and {@link BidirectionalStructureWithChecks}.
+ * <br>
+ * The tree is a spine of {@code depth} nodes where every spine node also has {@code fanOut} leaf children. All operations happen on the deepest spine node so the cost of anything that depends on the depth of a node shows up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BidirectionalStructureBenchmark {
+    /**
+     * Which implementation is measured: IMPL or WITH_CHECKS_ followed by the amount of child and parent checks registered on every node.
+     */
+    @Param({"IMPL", "WITH_CHECKS_0", "WITH_CHECKS_1", "WITH_CHECKS_5", "WITH_CHECKS_10"})
+    public String variant;
+
+    /**
+     * The amount of leaf children per spine node (also the amount of children attached and detached per invocation).
+     */
+    @Param({"1", "8", "64"})
+    public int fanOut;
+
+    /**
+     * The amount of nodes in the spine of the tree.
+     */
+    @Param({"1", "16", "256"})
+    public int depth;
+
+    private int checks;
+    private BidirectionalStructure<Object, Object> target;
+    private BidirectionalStructure<Object, Object> alternate;
+    private BidirectionalStructure<Object, Object> mover;
+    private BidirectionalStructure<Object, Object>[] fresh;
+    private boolean moveToTarget;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        checks = Fixtures.checks(variant);
+        BidirectionalStructure<Object, Object> spine = null;
+        for (int d = 0; d < depth; d++) {
+            BidirectionalStructure<Object, Object> node = create();
+            if (spine != null) spine.attachChild(node);
+            for (int i = 0; i < fanOut; i++)
+                node.attachChild(create());
+            if (d == Math.max(0, depth - 2)) alternate = (BidirectionalStructure<Object, Object>) node.getChildren().iterator().next();
+            spine = node;
+        }
+        target = spine;
+
+        mover = create();
+        mover.attachChild(create());
+        mover.attachParent(target);
+
+        fresh = new BidirectionalStructure[fanOut];
+        for (int i = 0; i < fanOut; i++)
+            fresh[i] = create();
+    }
+
+    private BidirectionalStructure<Object, Object> create() {
+        if (checks < 0)
+            return new BidirectionalStructure<>();
+
+        BidirectionalStructureWithChecks<Object, Object> withChecks = new BidirectionalStructureWithChecks<>();
+        for (int i = 0; i < checks; i++) {
+            withChecks.addChildCheck(Fixtures.passingCheck(i));
+            withChecks.addParentCheck(Fixtures.passingCheck(i));
+        }
+        return withChecks;
+    }
+
+    @Benchmark
+    public BidirectionalStructure<Object, Object> attachDetachChild() {
+        for (BidirectionalStructure<Object, Object> child : fresh)
+            target.attachChild(child);
+        for (BidirectionalStructure<Object, Object> child : fresh)
+            target.detachChild(child);
+        return target;
+    }
+
+    @Benchmark
+    public BidirectionalStructure<Object, Object> attachParent() {
+        moveToTarget = !moveToTarget;
+        mover.attachParent(moveToTarget ? target : alternate);
+        return mover;
+    }
+}
@@ -0,0 +1,76 @@
+package om.self.structure.benchmarks;
+
+import om.self.structure.child.ChildStructureImpl;
+import om.self.structure.child.ChildStructureWithChecks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ChildStructureImpl} and {@link ChildStructureWithChecks}.
+ * <br>
+ * Every invocation attaches {@code fanOut} children and detaches them again so the structure is in the same state before each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChildStructureBenchmark {
+    /**
+     * Which implementation is measured: IMPL or WITH_CHECKS_ followed by the amount of checks registered.
+     */
+    @Param({"IMPL", "WITH_CHECKS_0", "WITH_CHECKS_1", "WITH_CHECKS_5", "WITH_CHECKS_10"})
+    public String variant;
+
+    /**
+     * The amount of children attached and detached per invocation.
+     */
+    @Param({"1", "8", "64"})
+    public int fanOut;
+
+    /**
+     * The type of the children (they are the keys created by {@link Fixtures.KeyType}).
+     */
+    @Param({"STRING", "INTEGER"})
+    public Fixtures.KeyType keyType;
+
+    private int checks;
+    private ChildStructureImpl<Object> structure;
+    private Object[] children;
+    private List<Object> batch;
+
+    @Setup
+    public void setup() {
+        checks = Fixtures.checks(variant);
+        if (checks >= 0) {
+            ChildStructureWithChecks<Object> withChecks = new ChildStructureWithChecks<>();
+            for (int i = 0; i < checks; i++)
+                withChecks.addCheck(Fixtures.passingCheck(i));
+            structure = withChecks;
+        } else {
+            structure = new ChildStructureImpl<>();
+        }
+        children = keyType.keys(0, fanOut);
+        batch = Arrays.asList(children);
+    }
+
+    @Benchmark
+    public ChildStructureImpl<Object> attachDetachChild() {
+        for (Object child : children)
+            structure.attachChild(child);
+        for (Object child : children)
+            structure.detachChild(child);
+        return structure;
+    }
+
+    @Benchmark
+    public ChildStructureImpl<Object> attachChildrenDetachAll() {
+        structure.attachChildren(batch);
+        structure.detachChildren();
+        return structure;
+    }
+}
@@ -0,0 +1,117 @@
+package om.self.structure.benchmarks;
+
+import om.self.structure.concurrent.ConcurrentKeyedBidirectionalStructure;
+import om.self.structure.storage.ChildStorage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks lookups on a {@link ConcurrentKeyedBidirectionalStructure} shared by many threads, comparing the storages that can be used by more than one thread.
+ * <br>
+ * Every operation is a {@code getChild}, {@code getParent} and {@code isChildKeyAttached} on a random child of the root, and one in every {@code readsPerWrite} operations also attaches and detaches a child under a key owned by the thread (so the tree is the same after every write). The same benchmark runs with 1, 4, 16 and 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentReadBenchmark {
+    /**
+     * The storage used for the children of every node.
+     */
+    @Param({"HASHTABLE", "CONCURRENT", "OPTIMISTIC"})
+    public String storage;
+
+    /**
+     * The amount of children of the root.
+     */
+    @Param({"8", "64", "1024"})
+    public int fanOut;
+
+    /**
+     * The amount of lookups done for every write.
+     */
+    @Param({"1000"})
+    public int readsPerWrite;
+
+    private ConcurrentKeyedBidirectionalStructure<Object, Object, Object> root;
+    private Object[] keys;
+
+    @Setup
+    public void setup() {
+        root = create();
+        keys = Fixtures.KeyType.STRING.keys(0, fanOut);
+        for (Object key : keys)
+            root.attachChild(key, create());
+    }
+
+    private ConcurrentKeyedBidirectionalStructure<Object, Object, Object> create() {
+        ChildStorage childStorage = switch (storage) {
+            case "HASHTABLE" -> ChildStorage.hashtable();
+            case "CONCURRENT" -> ChildStorage.concurrent();
+            case "OPTIMISTIC" -> ChildStorage.optimistic();
+            default -> throw new IllegalArgumentException("unknown storage " + storage);
+        };
+        return new ConcurrentKeyedBidirectionalStructure<>(childStorage);
+    }
+
+    /**
+     * The state of each thread: where it is in the keys and the child it attaches on writes.
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+        private int next;
+        private int untilWrite;
+        private Object ownKey;
+        private ConcurrentKeyedBidirectionalStructure<Object, Object, Object> ownChild;
+
+        @Setup
+        public void setup(ConcurrentReadBenchmark benchmark, ThreadParams thread) {
+            next = thread.getThreadIndex() * 7919;
+            untilWrite = benchmark.readsPerWrite;
+            ownKey = "writer-" + thread.getThreadIndex();
+            ownChild = benchmark.create();
+        }
+    }
+
+    private Object read(Reader reader) {
+        Object key = keys[(reader.next++ & Integer.MAX_VALUE) % keys.length];
+        if(--reader.untilWrite == 0) {
+            reader.untilWrite = readsPerWrite;
+            root.attachChild(reader.ownKey, reader.ownChild);
+            root.detachChild(reader.ownKey);
+        }
+
+        Object child = root.getChild(key);
+        if(child instanceof ConcurrentKeyedBidirectionalStructure<?, ?, ?> node && node.getParent() == root)
+            return root.isChildKeyAttached(key);
+        return child;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object read1Thread(Reader reader) {
+        return read(reader);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object read4Threads(Reader reader) {
+        return read(reader);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object read16Threads(Reader reader) {
+        return read(reader);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object read64Threads(Reader reader) {
+        return read(reader);
+    }
+}
@@ -0,0 +1,81 @@
+package om.self.structure.benchmarks;
+
+import om.self.structure.Utils;
+
+/**
+ * Shared helpers used to build the inputs of every benchmark (keys, checks and children).
+ */
+public final class Fixtures {
+    private Fixtures() {}
+
+    /**
+     * The kind of key used by the keyed benchmarks.
+     */
+    public enum KeyType {
+        /**
+         * {@link String} keys, the most common key in the examples (ex: folder names)
+         */
+        STRING,
+        /**
+         * Boxed {@link Integer} keys, the most common key for id based trees
+         */
+        INTEGER;
+
+        /**
+         * Creates the key with the passed index. Keys are created once during setup so boxing/concatenation is not measured.
+         * @param index the index of the key
+         * @return the key
+         */
+        public Object key(int index) {
+            return switch (this) {
+                case STRING -> "key-" + index;
+                case INTEGER -> index;
+            };
+        }
+
+        /**
+         * Creates {@code count} distinct keys starting at {@code offset}.
+         * @param offset the index of the first key
+         * @param count the amount of keys to create
+         * @return the keys
+         */
+        public Object[] keys(int offset, int count) {
+            Object[] keys = new Object[count];
+            for (int i = 0; i < count; i++)
+                keys[i] = key(offset + i);
+            return keys;
+        }
+    }
+
+    /**
+     * Gets the amount of checks a variant param asks for. The variant is either IMPL (no check support at all) or WITH_CHECKS_ followed by the amount of checks, so the check count is only swept for the implementations that use it.
+     * @param variant the variant param of a benchmark
+     * @return the amount of checks or -1 if the variant is IMPL
+     */
+    public static int checks(String variant) {
+        if (variant.equals("IMPL")) return -1;
+        if (!variant.startsWith("WITH_CHECKS_")) throw new IllegalArgumentException("unknown variant " + variant);
+        return Integer.parseInt(variant.substring("WITH_CHECKS_".length()));
+    }
+
+    /**
+     * Creates a check that always passes but still has to be invoked (and can't be removed by the JIT).
+     * @param seed used to make each check a little different
+     * @return the check
+     * @param <T> the type being checked
+     */
+    public static <T> Utils.Check<T> passingCheck(int seed) {
+        return (value, action) -> value != null || seed < 0;
+    }
+
+    /**
+     * Creates a keyed check that always passes but still has to be invoked (and can't be removed by the JIT).
+     * @param seed used to make each check a little different
+     * @return the check
+     * @param <K> the type of the key being checked
+     * @param <V> the type of the value being checked
+     */
+    public static <K, V> Utils.KeyedCheck<K, V> passingKeyedCheck(int seed) {
+        return (key, value, action) -> key != null || seed < 0;
+    }
+}
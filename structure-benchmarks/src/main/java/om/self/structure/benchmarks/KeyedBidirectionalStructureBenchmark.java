@@ -0,0 +1,143 @@
+package om.self.structure.benchmarks;
+
+import om.self.structure.bidirectional.KeyedBidirectionalStructure;
+import om.self.structure.bidirectional.KeyedBidirectionalStructureWithChecks;
+import om.self.structure.storage.ChildStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link KeyedBidirectionalStructure} and {@link KeyedBidirectionalStructureWithChecks}.
+ * <br>
+ * The tree is a spine of {@code depth} nodes where every spine node also has {@code fanOut} leaf children. All operations happen on the deepest spine node so the cost of anything that depends on the depth of a node shows up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyedBidirectionalStructureBenchmark {
+    /**
+     * Which implementation is measured: IMPL or WITH_CHECKS_ followed by the amount of child and parent checks registered on every node.
+     */
+    @Param({"IMPL", "WITH_CHECKS_0", "WITH_CHECKS_1", "WITH_CHECKS_5", "WITH_CHECKS_10"})
+    public String variant;
+
+    /**
+     * The amount of leaf children per spine node (also the amount of children attached, detached or renamed per invocation).
+     */
+    @Param({"1", "8", "64"})
+    public int fanOut;
+
+    /**
+     * The amount of nodes in the spine of the tree.
+     */
+    @Param({"1", "16", "256"})
+    public int depth;
+
+    /**
+     * The type of the keys.
+     */
+    @Param({"STRING", "INTEGER"})
+    public Fixtures.KeyType keyType;
+
+    /**
+     * The storage used for the children of every node (DEFAULT is the storage picked by the no-arg constructor).
+     */
+    @Param({"DEFAULT", "HASH_MAP", "CONCURRENT"})
+    public String storage;
+
+    private int checks;
+    private KeyedBidirectionalStructure<Object, Object, Object> target;
+    private KeyedBidirectionalStructure<Object, Object, Object> alternate;
+    private KeyedBidirectionalStructure<Object, Object, Object> mover;
+    private KeyedBidirectionalStructure<Object, Object, Object>[] fresh;
+    private Object[] keys;
+    private Object[] freshKeys;
+    private Object[] renamedKeys;
+    private Object moverKey;
+    private boolean moveToTarget;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        checks = Fixtures.checks(variant);
+        keys = keyType.keys(0, fanOut);
+        freshKeys = keyType.keys(fanOut, fanOut);
+        renamedKeys = keyType.keys(2 * fanOut, fanOut);
+        moverKey = keyType.key(3 * fanOut);
+        Object spineKey = keyType.key(3 * fanOut + 1);
+
+        KeyedBidirectionalStructure<Object, Object, Object> spine = null;
+        for (int d = 0; d < depth; d++) {
+            KeyedBidirectionalStructure<Object, Object, Object> node = create();
+            if (spine != null) spine.attachChild(spineKey, node);
+            for (int i = 0; i < fanOut; i++)
+                node.attachChild(keys[i], create());
+            if (d == Math.max(0, depth - 2)) alternate = (KeyedBidirectionalStructure<Object, Object, Object>) node.getChild(keys[0]);
+            spine = node;
+        }
+        target = spine;
+
+        mover = create();
+        mover.attachChild(keys[0], create());
+        mover.attachParent(moverKey, target);
+
+        fresh = new KeyedBidirectionalStructure[fanOut];
+        for (int i = 0; i < fanOut; i++)
+            fresh[i] = create();
+    }
+
+    private KeyedBidirectionalStructure<Object, Object, Object> create() {
+        ChildStorage childStorage = switch (storage) {
+            case "HASH_MAP" -> ChildStorage.hashMap();
+            case "CONCURRENT" -> ChildStorage.concurrent();
+            default -> null;
+        };
+
+        if (checks < 0)
+            return childStorage == null ? new KeyedBidirectionalStructure<>() : new KeyedBidirectionalStructure<>(childStorage);
+
+        KeyedBidirectionalStructureWithChecks<Object, Object, Object> withChecks = childStorage == null ? new KeyedBidirectionalStructureWithChecks<>() : new KeyedBidirectionalStructureWithChecks<>(childStorage);
+        for (int i = 0; i < checks; i++) {
+            withChecks.addChildCheck(Fixtures.passingKeyedCheck(i));
+            withChecks.addParentCheck(Fixtures.passingKeyedCheck(i));
+        }
+        return withChecks;
+    }
+
+    @Benchmark
+    public KeyedBidirectionalStructure<Object, Object, Object> attachDetachChild() {
+        for (int i = 0; i < fresh.length; i++)
+            target.attachChild(freshKeys[i], fresh[i]);
+        for (Object key : freshKeys)
+            target.detachChild(key);
+        return target;
+    }
+
+    @Benchmark
+    public KeyedBidirectionalStructure<Object, Object, Object> renameChild() {
+        for (int i = 0; i < keys.length; i++)
+            target.renameChild(keys[i], renamedKeys[i], false);
+        for (int i = 0; i < keys.length; i++)
+            target.renameChild(renamedKeys[i], keys[i], false);
+        return target;
+    }
+
+    @Benchmark
+    public KeyedBidirectionalStructure<Object, Object, Object> attachParent() {
+        moveToTarget = !moveToTarget;
+        mover.attachParent(moverKey, moveToTarget ? target : alternate);
+        return mover;
+    }
+
+    @Benchmark
+    public Object getChild() {
+        Object last = null;
+        for (Object key : keys)
+            last = target.getChild(key);
+        return last;
+    }
+}
@@ -0,0 +1,95 @@
+package om.self.structure.benchmarks;
+
+import om.self.structure.child.KeyedChildStructureImpl;
+import om.self.structure.child.KeyedChildStructureWithChecks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link KeyedChildStructureImpl} and {@link KeyedChildStructureWithChecks}.
+ * <br>
+ * Every invocation leaves the structure in the same state it started in (children are detached again and renames are reverted).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyedChildStructureBenchmark {
+    /**
+     * Which implementation is measured: IMPL or WITH_CHECKS_ followed by the amount of checks registered.
+     */
+    @Param({"IMPL", "WITH_CHECKS_0", "WITH_CHECKS_1", "WITH_CHECKS_5", "WITH_CHECKS_10"})
+    public String variant;
+
+    /**
+     * The amount of children attached, detached or renamed per invocation.
+     */
+    @Param({"1", "8", "64"})
+    public int fanOut;
+
+    /**
+     * The type of the keys.
+     */
+    @Param({"STRING", "INTEGER"})
+    public Fixtures.KeyType keyType;
+
+    private int checks;
+    private KeyedChildStructureImpl<Object, Object> structure;
+    private KeyedChildStructureImpl<Object, Object> populated;
+    private Object[] keys;
+    private Object[] renamedKeys;
+    private Object[] children;
+
+    @Setup
+    public void setup() {
+        checks = Fixtures.checks(variant);
+        structure = create();
+        populated = create();
+        keys = keyType.keys(0, fanOut);
+        renamedKeys = keyType.keys(fanOut, fanOut);
+        children = new Object[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            children[i] = new Object();
+            populated.attachChild(keys[i], children[i]);
+        }
+    }
+
+    private KeyedChildStructureImpl<Object, Object> create() {
+        if (checks < 0)
+            return new KeyedChildStructureImpl<>();
+
+        KeyedChildStructureWithChecks<Object, Object> withChecks = new KeyedChildStructureWithChecks<>();
+        for (int i = 0; i < checks; i++)
+            withChecks.addCheck(Fixtures.passingKeyedCheck(i));
+        return withChecks;
+    }
+
+    @Benchmark
+    public KeyedChildStructureImpl<Object, Object> attachDetachChild() {
+        for (int i = 0; i < keys.length; i++)
+            structure.attachChild(keys[i], children[i]);
+        for (Object key : keys)
+            structure.detachChild(key);
+        return structure;
+    }
+
+    @Benchmark
+    public KeyedChildStructureImpl<Object, Object> renameChild() {
+        for (int i = 0; i < keys.length; i++)
+            populated.renameChild(keys[i], renamedKeys[i], false);
+        for (int i = 0; i < keys.length; i++)
+            populated.renameChild(renamedKeys[i], keys[i], false);
+        return populated;
+    }
+
+    @Benchmark
+    public Object getChild() {
+        Object last = null;
+        for (Object key : keys)
+            last = populated.getChild(key);
+        return last;
+    }
+}